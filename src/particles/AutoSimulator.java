@@ -0,0 +1,161 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: simulation engine which times the other engines on the running simulation and hands the ticks to the fastest
+ * Created: 10-19-2026
+ * Status: engine class, finished
+ * Dependencies: Environment, Simulator
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.Arrays;
+import java.util.prefs.Preferences;
+
+public final class AutoSimulator extends Simulator {
+
+    //ticks timed for each candidate after an untimed warm up tick
+    private static final int TIMED_TICKS = 3;
+    //share a candidate must be faster by to replace the current engine
+    private static final double HYSTERESIS = 0.15;
+    //ratio the particle count must change by before the engine is chosen again
+    private static final double RECHOOSE_RATIO = 2;
+    //per user store of the calibrations of this machine
+    private static final Preferences PREFS = Preferences.userNodeForPackage( AutoSimulator.class ).node( "auto" );
+
+
+    //engines with bit for bit the same results, so timing them on the live run and switching only changes speed
+    //multi-thread sums the forces in another order and diverges, so it is not a candidate
+    private final Simulator[] candidates;
+    private final String[] names;
+    //engine the ticks are handed to
+    private volatile Simulator delegate;
+    private volatile int chosen;
+    //particle count the current engine was chosen for
+    private int chosenSize;
+    //calibration state, the candidate being timed or -1, read by the status line on the paint thread
+    private volatile int timing;
+    private int timed;
+    private final long[][] times;
+
+
+    //package private constructor - use Simulator.AUTO
+    AutoSimulator() {
+        candidates = new Simulator[]{ Simulator.DEFAULT, Simulator.TILED };
+        names = new String[]{ "Simple", "Tiled" };
+        delegate = candidates[0];
+        chosen = 0;
+        chosenSize = -1;
+        timing = -1;
+        timed = 0;
+        times = new long[candidates.length][TIMED_TICKS];
+    }
+
+
+    //hands the tick to the chosen engine, timing it while calibrating
+    @Override
+    protected void simulate( double timeStep ) {
+        int current = timing;
+        if( current < 0 ) {
+            delegate.simulate( timeStep );
+            return;
+        }
+        long start = System.nanoTime();
+        delegate.simulate( timeStep );
+        long nanos = System.nanoTime() - start;
+        //the first tick of each candidate warms it up and is not timed
+        if( timed > 0 ) {
+            times[current][timed - 1] = nanos;
+        }
+        if( ++timed > TIMED_TICKS ) {
+            timed = 0;
+            if( current + 1 < candidates.length ) {
+                timing = current + 1;
+                use( current + 1 );
+            } else {
+                timing = -1;
+                finishCalibration();
+            }
+        }
+    }
+
+    //chooses again when the particle count changed enough, otherwise keeps the current engine
+    @Override
+    protected void acceptEnv() {
+        int size = environment.particles.size();
+        delegate.environment = environment;
+        if( chosenSize < 0 || size > chosenSize * RECHOOSE_RATIO || size * RECHOOSE_RATIO < chosenSize ) {
+            chosenSize = size;
+            String cached = PREFS.get( key( size, environment.sources ), null );
+            int index = Arrays.asList( names ).indexOf( cached );
+            if( index >= 0 ) {
+                timing = -1;
+                use( index );
+                chosen = index;
+            } else if( size > 1 ) {
+                timing = 0;
+                timed = 0;
+                use( 0 );
+            }
+        }
+        delegate.acceptEnv();
+    }
+
+    @Override
+    protected void disposeEnv() {
+        delegate.disposeEnv();
+        delegate.environment = null;
+        chosenSize = -1;
+        timing = -1;
+    }
+
+    @Override
+    public String getStatus() {
+        String status = delegate.getStatus();
+        int current = timing;
+        String auto = current < 0 ? "Auto Engine: " + names[chosen]
+                : "Auto Engine: Calibrating " + names[current] + " (" + ( current + 1 ) + "/" + candidates.length + ")";
+        return status.isEmpty() ? auto : auto + " --- " + status;
+    }
+
+
+    //private utility methods
+    //switches the ticks to a candidate, stopping the threads of the old one
+    private void use( int index ) {
+        Simulator next = candidates[index];
+        if( next != delegate ) {
+            delegate.disposeEnv();
+            delegate.environment = null;
+            next.environment = environment;
+            next.acceptEnv();
+            delegate = next;
+        }
+    }
+
+    //keeps the fastest candidate if it beats the current engine by the hysteresis margin and stores the choice
+    private void finishCalibration() {
+        int best = chosen;
+        long bestTime = median( times[chosen] );
+        for( int i = 0; i < candidates.length; i++ ) {
+            long time = median( times[i] );
+            if( time < bestTime * ( 1 - HYSTERESIS ) ) {
+                best = i;
+                bestTime = time;
+            }
+        }
+        chosen = best;
+        use( best );
+        PREFS.put( key( environment.particles.size(), environment.sources ), names[best] );
+    }
+
+    //calibrations are stored by core count and the binary magnitudes of the particle and gravity source counts
+    private static String key( int size, int sources ) {
+        return Runtime.getRuntime().availableProcessors() + "-" + ( 32 - Integer.numberOfLeadingZeros( size ) )
+                + "-" + ( 32 - Integer.numberOfLeadingZeros( sources ) );
+    }
+
+    private static long median( long[] values ) {
+        long[] sorted = values.clone();
+        Arrays.sort( sorted );
+        return sorted[sorted.length / 2];
+    }
+}
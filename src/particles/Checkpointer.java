@@ -0,0 +1,278 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for writing periodic checkpoints of a running simulation on a background thread
+ * Created: 10-19-2026
+ * Status: generic class, finished
+ * Dependencies: Environment, Particle, ParticleBuffer, RscLoader
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+public final class Checkpointer implements Consumer<List<Particle>> {
+
+    //constants
+    public static final int CHECKPOINT_MAGIC = 0x5E65C4EC;
+    private static final String PREFIX = "checkpoint-";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final int SNAPSHOTS = 2;//snapshots that may be in memory at once
+    private static final Logger LOGGER = Logger.getLogger( Checkpointer.class.getName() );
+
+
+    //environment and directory to checkpoint
+    private final Environment environment;
+    private final File directory;
+    //snapshots which are not being written, bounding the memory used by pending checkpoints
+    private final ArrayBlockingQueue<ParticleBuffer> freeSnapshots;
+    //single background thread for writing checkpoints
+    private final ExecutorService writer;
+    //checkpoint settings
+    private final long tickInterval;//ticks between checkpoints, disabled if not positive
+    private final long timeInterval;//milliseconds between checkpoints, disabled if not positive
+    private final int keep;//number of checkpoints kept on disk
+    //state of the main thread
+    private long lastTick;
+    private long lastTime;
+    //state of the writer thread
+    private long sequence;
+    private volatile long written;
+    private volatile long skipped;
+
+
+    //constructor
+    public Checkpointer( Environment env, File directory, long tickInterval, double minutes, int keep ) {
+        this.environment = env;
+        this.directory = directory;
+        this.tickInterval = tickInterval;
+        this.timeInterval = (long)( minutes * 60000 );
+        this.keep = Math.max( keep, 1 );
+        freeSnapshots = new ArrayBlockingQueue<>( SNAPSHOTS );
+        for( int i = 0; i < SNAPSHOTS; i++ ) {
+            freeSnapshots.add( new ParticleBuffer() );
+        }
+        writer = Executors.newSingleThreadExecutor( r -> {
+            Thread thread = new Thread( r, "Checkpoint-Writer" );
+            thread.setDaemon( true );
+            thread.setPriority( Thread.NORM_PRIORITY );
+            return thread;
+        } );
+        //the schedule starts on the first tick, after a resume queued before starting has set the counter
+        lastTick = -1;
+        lastTime = 0;
+        long[] sequences = sequences( directory );
+        sequence = sequences.length == 0 ? 0 : sequences[ sequences.length - 1 ];
+        written = skipped = 0;
+    }
+
+
+    //starts checkpointing after every tick interval or time interval
+    public void start() {
+        directory.mkdirs();
+        environment.addTickListener( this );
+    }
+
+    //stops checkpointing, checkpoints already taken are still written
+    public void stop() {
+        environment.removeTickListener( this );
+        writer.shutdown();
+    }
+
+    //queues the latest valid checkpoint in a directory to replace the simulation, returns false if there is none
+    public static boolean resume( Environment environment, File directory ) {
+        long[] sequences = sequences( directory );
+        for( int i = sequences.length - 1; i >= 0; i-- ) {
+            File file = new File( directory, PREFIX + sequences[i] + RscLoader.PSOBJ_EXTENSION );
+            //streams the file twice, once to check the checksum and once to read it, so checkpoints of any size resume
+            try( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+                long len = channel.size() - Long.BYTES;
+                if( len < 0 ) {
+                    throw new IOException( "Truncated checkpoint" );
+                }
+                CRC32 crc = new CRC32();
+                ByteBuffer buffer = ByteBuffer.allocateDirect( 1 << 16 );
+                for( long position = 0; position < len; ) {
+                    buffer.clear().limit( (int)Math.min( buffer.capacity(), len - position ) );
+                    position += read( channel, buffer, position );
+                    buffer.flip();
+                    crc.update( buffer );
+                }
+                buffer.clear().limit( Long.BYTES );
+                read( channel, buffer, len );
+                if( buffer.getLong( 0 ) != crc.getValue() ) {
+                    throw new IOException( "Checksum mismatch" );
+                }
+                channel.position( 0 );
+                DataInputStream stream = new DataInputStream( new BufferedInputStream( Channels.newInputStream( channel ), 1 << 16 ) );
+                Particle[] particles = RscLoader.rsc().readParticles( stream );
+                if( stream.readInt() != CHECKPOINT_MAGIC ) {
+                    throw new IOException( "Missing checkpoint trailer" );
+                }
+                long tick = stream.readLong();
+                double timePassed = stream.readDouble();
+                double timeStep = stream.readDouble();
+                environment.queueOperation( list -> {
+                    list.clear();
+                    list.addAll( Arrays.asList( particles ) );
+                } );
+                environment.setTimePassed( timePassed );
+                environment.setTimeStep( timeStep );
+                environment.setTicks( tick );
+                LOGGER.info( "Resumed from checkpoint " + file );
+                return true;
+            } catch( IOException|IllegalArgumentException e ) {
+                LOGGER.log( Level.WARNING, "Skipping invalid checkpoint " + file, e );
+            }
+        }
+        return false;
+    }
+
+    //takes a checkpoint on the main thread if one is due
+    @Override
+    public void accept( List<Particle> particles ) {
+        long tick = environment.getTicks();
+        long time = System.currentTimeMillis();
+        if( lastTick < 0 ) {
+            lastTick = tick - 1;
+            lastTime = time;
+        }
+        //a counter that went back, after resuming an older checkpoint, restarts the schedule
+        if( ( tickInterval > 0 && ( tick - lastTick >= tickInterval || tick < lastTick ) ) 
+                || ( timeInterval > 0 && time - lastTime >= timeInterval ) ) {
+            lastTick = tick;
+            lastTime = time;
+            checkpoint( particles );
+        }
+    }
+
+    //snapshots the particles and hands them to the writer, skipped if every snapshot is still being written
+    public void checkpoint( List<Particle> particles ) {
+        ParticleBuffer snapshot = freeSnapshots.poll();
+        if( snapshot == null ) {
+            skipped++;
+            return;
+        }
+        snapshot.capture( particles );
+        long tick = environment.getTicks();
+        double timePassed = environment.getTimePassed();
+        double timeStep = environment.getTimeStep();
+        try {
+            writer.execute( () -> {
+                try {
+                    write( snapshot, tick, timePassed, timeStep );
+                    written++;
+                } catch( IOException|RuntimeException e ) {
+                    LOGGER.log( Level.WARNING, "Failed to write checkpoint", e );
+                } finally {
+                    freeSnapshots.add( snapshot );
+                }
+            } );
+        } catch( RejectedExecutionException e ) {
+            //checkpointer was stopped during the tick
+            freeSnapshots.add( snapshot );
+        }
+    }
+
+
+    //accessor methods
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+
+    //private utility methods
+    //writes a snapshot to a temporary file, syncs it to disk, renames it into place and rotates old checkpoints
+    private void write( ParticleBuffer snapshot, long tick, double timePassed, double timeStep ) throws IOException {
+        long seq = ++sequence;
+        File temp = new File( directory, PREFIX + seq + TEMP_EXTENSION );
+        File file = new File( directory, PREFIX + seq + RscLoader.PSOBJ_EXTENSION );
+        try( FileChannel channel = FileChannel.open( temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) ) {
+            CRC32 crc = new CRC32();
+            DataOutputStream stream = new DataOutputStream( new BufferedOutputStream(
+                    new CheckedOutputStream( Channels.newOutputStream( channel ), crc ), 1 << 16 ) );
+            RscLoader.rsc().writeParticles( snapshot, stream );
+            stream.writeInt( CHECKPOINT_MAGIC );
+            stream.writeLong( tick );
+            stream.writeDouble( timePassed );
+            stream.writeDouble( timeStep );
+            stream.flush();
+            ByteBuffer trailer = ByteBuffer.allocate( Long.BYTES ).putLong( 0, crc.getValue() );
+            while( trailer.hasRemaining() ) {
+                channel.write( trailer );
+            }
+            channel.force( true );
+        }
+        Files.move( temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+        syncDirectory();
+        long[] sequences = sequences( directory );
+        for( int i = 0; i < sequences.length - keep; i++ ) {
+            Files.deleteIfExists( new File( directory, PREFIX + sequences[i] + RscLoader.PSOBJ_EXTENSION ).toPath() );
+        }
+    }
+
+    //syncs the directory so the rename survives a crash, platforms which cannot open directories skip it
+    private void syncDirectory() {
+        try( FileChannel channel = FileChannel.open( directory.toPath(), StandardOpenOption.READ ) ) {
+            channel.force( true );
+        } catch( IOException e ) {
+            LOGGER.log( Level.FINE, "Cannot sync checkpoint directory", e );
+        }
+    }
+
+    //reads until a buffer is full from a position of a channel, returns the bytes read
+    private static int read( FileChannel channel, ByteBuffer buffer, long position ) throws IOException {
+        int total = 0;
+        while( buffer.hasRemaining() ) {
+            int read = channel.read( buffer, position + total );
+            if( read < 0 ) {
+                throw new IOException( "Truncated checkpoint" );
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    //returns the sorted sequence numbers of the checkpoints in a directory
+    private static long[] sequences( File directory ) {
+        String[] names = directory.list();
+        if( names == null ) {
+            return new long[0];
+        }
+        return Arrays.stream( names )
+                .filter( n -> n.startsWith( PREFIX ) && n.endsWith( RscLoader.PSOBJ_EXTENSION ) )
+                .map( n -> n.substring( PREFIX.length(), n.length() - RscLoader.PSOBJ_EXTENSION.length() ) )
+                .filter( n -> !n.isEmpty() && n.chars().allMatch( Character::isDigit ) )
+                .mapToLong( Long::parseLong ).sorted().toArray();
+    }
+}
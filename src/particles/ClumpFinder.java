@@ -0,0 +1,254 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for finding touching groups of particles in background snapshots and streaming their catalogs to a file
+ * Created: 10-19-2026
+ * Status: generic class, finished
+ * Dependencies: Environment, Material, Particle, ParticleBuffer, SpatialGrid, UnionFind
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+public final class ClumpFinder implements Consumer<List<Particle>> {
+
+    //constants
+    public static final String HEADER = "tick,time,group,members,mass,x,y,vx,vy,semi_major_axis,eccentricity";
+    private static final int NO_CONTACT = Particle.COLLISIONLESS | Particle.TRACER;
+    private static final int SNAPSHOTS = 2;//snapshots that may be in memory at once
+    private static final int RANGE = 1 << 12;//particles linked by each parallel task
+    private static final Logger LOGGER = Logger.getLogger( ClumpFinder.class.getName() );
+
+
+    //snapshot of the particles of a single catalog
+    private static final class Snapshot {
+        final ParticleBuffer particles = new ParticleBuffer();
+        long tick;
+        double timePassed;
+    }
+
+
+    //environment and catalog file
+    private final Environment environment;
+    private final File file;
+    //snapshots which are not being analyzed
+    private final ArrayBlockingQueue<Snapshot> freeSnapshots;
+    //single background thread for analyzing snapshots and writing catalogs
+    private final ExecutorService analyzer;
+    //settings
+    private final long tickInterval;
+    private final int minMembers;
+    //state of the main thread
+    private long lastTick;
+    private volatile long skipped;
+    //state of the analyzer thread
+    private final SpatialGrid grid;
+    private final UnionFind groups;
+    private BufferedWriter writer;
+    private volatile long catalogs;
+    private volatile int lastGroups;
+
+
+    //constructor
+    public ClumpFinder( Environment env, File file, long tickInterval, int minMembers ) {
+        this.environment = env;
+        this.file = file;
+        this.tickInterval = Math.max( tickInterval, 1 );
+        this.minMembers = Math.max( minMembers, 1 );
+        freeSnapshots = new ArrayBlockingQueue<>( SNAPSHOTS );
+        for( int i = 0; i < SNAPSHOTS; i++ ) {
+            freeSnapshots.add( new Snapshot() );
+        }
+        analyzer = Executors.newSingleThreadExecutor( r -> {
+            Thread thread = new Thread( r, "Clump-Finder" );
+            thread.setDaemon( true );
+            thread.setPriority( Thread.NORM_PRIORITY );
+            return thread;
+        } );
+        lastTick = env.getTicks();
+        skipped = catalogs = 0;
+        lastGroups = 0;
+        grid = new SpatialGrid();
+        groups = new UnionFind();
+        writer = null;
+    }
+
+
+    //opens the catalog file and starts analyzing after every tick interval
+    public void start() throws IOException {
+        boolean fresh = !file.exists() || file.length() == 0;
+        writer = Files.newBufferedWriter( file.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND );
+        if( fresh ) {
+            writer.write( HEADER );
+            writer.newLine();
+            writer.flush();
+        }
+        environment.addTickListener( this );
+    }
+
+    //stops analyzing, waits for the snapshots already taken and closes the catalog file
+    public void stop() throws InterruptedException {
+        environment.removeTickListener( this );
+        analyzer.execute( () -> {
+            try {
+                writer.close();
+            } catch( IOException e ) {
+                LOGGER.log( Level.WARNING, "Failed to close clump catalog", e );
+            }
+        } );
+        analyzer.shutdown();
+        analyzer.awaitTermination( Long.MAX_VALUE, TimeUnit.NANOSECONDS );
+    }
+
+    //takes a snapshot on the main thread if one is due
+    @Override
+    public void accept( List<Particle> particles ) {
+        long tick = environment.getTicks();
+        //a counter that went back, after resuming an older checkpoint, restarts the schedule
+        if( tick - lastTick >= tickInterval || tick < lastTick ) {
+            lastTick = tick;
+            analyze( particles );
+        }
+    }
+
+    //snapshots the particles and hands them to the analyzer, skipped if every snapshot is still being analyzed
+    public void analyze( List<Particle> particles ) {
+        Snapshot snapshot = freeSnapshots.poll();
+        if( snapshot == null ) {
+            skipped++;
+            return;
+        }
+        snapshot.particles.capture( particles );
+        snapshot.tick = environment.getTicks();
+        snapshot.timePassed = environment.getTimePassed();
+        try {
+            analyzer.execute( () -> {
+                try {
+                    write( snapshot );
+                    catalogs++;
+                } catch( IOException|RuntimeException e ) {
+                    LOGGER.log( Level.WARNING, "Failed to write clump catalog", e );
+                } finally {
+                    freeSnapshots.add( snapshot );
+                }
+            } );
+        } catch( RejectedExecutionException e ) {
+            //finder was stopped during the tick
+            freeSnapshots.add( snapshot );
+        }
+    }
+
+
+    //accessor methods
+    public File getFile() {
+        return file;
+    }
+
+    public long getCatalogs() {
+        return catalogs;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    //number of groups with enough members in the last catalog
+    public int getLastGroups() {
+        return lastGroups;
+    }
+
+
+    //private utility methods
+    //links touching particles, totals each group and appends the groups with enough members
+    private void write( Snapshot snapshot ) throws IOException {
+        ParticleBuffer particles = snapshot.particles;
+        int size = particles.size();
+        double[] x = particles.getXPosition(), y = particles.getYPosition();
+        double[] vx = particles.getXVelocity(), vy = particles.getYVelocity();
+        int[] material = particles.getMaterial();
+        //friends of friends with the contact distance as the linking length, ranges are linked in parallel
+        grid.build( particles, 0, NO_CONTACT );
+        groups.reset( size );
+        int ranges = ( size + RANGE - 1 ) / RANGE;
+        IntStream.range( 0, ranges ).parallel().forEach( r -> grid.forEachPair( r * RANGE, Math.min( size, ( r + 1 ) * RANGE ),
+                ( i, j ) -> {
+                    double xDiff = x[i] - x[j];
+                    double yDiff = y[i] - y[j];
+                    double reach = Material.get( material[i] ).getRadius() + Material.get( material[j] ).getRadius();
+                    if( xDiff * xDiff + yDiff * yDiff <= reach * reach ) {
+                        groups.union( i, j );
+                    }
+                } ) );
+        //totals the mass weighted states of each root
+        int[] members = new int[size];
+        double[] mass = new double[size], mx = new double[size], my = new double[size], mvx = new double[size], mvy = new double[size];
+        for( int i = 0; i < size; i++ ) {
+            Material m = Material.get( material[i] );
+            if( ( m.getFlags() & NO_CONTACT ) != 0 ) {
+                continue;
+            }
+            int root = groups.find( i );
+            double w = m.getMass();
+            members[root]++;
+            mass[root] += w;
+            mx[root] += w * x[i];
+            my[root] += w * y[i];
+            mvx[root] += w * vx[i];
+            mvy[root] += w * vy[i];
+        }
+        //orders the groups by mass so the first is the primary the others orbit
+        Integer[] roots = IntStream.range( 0, size ).filter( i -> members[i] >= minMembers )
+                .boxed().toArray( Integer[]::new );
+        Arrays.sort( roots, ( a, b ) -> Double.compare( mass[b], mass[a] ) );
+        lastGroups = roots.length;
+        double px = 0, py = 0, pvx = 0, pvy = 0, pm = 0;
+        StringBuilder line = new StringBuilder();
+        for( int g = 0; g < roots.length; g++ ) {
+            int root = roots[g];
+            double m = mass[root];
+            double cx = mx[root] / m, cy = my[root] / m, cvx = mvx[root] / m, cvy = mvy[root] / m;
+            double semiMajor = Double.NaN, eccentricity = Double.NaN;
+            if( g == 0 ) {
+                px = cx;
+                py = cy;
+                pvx = cvx;
+                pvy = cvy;
+                pm = m;
+            } else {
+                //two body orbit around the primary with the gravitational constant of the engines
+                double rx = cx - px, ry = cy - py, rvx = cvx - pvx, rvy = cvy - pvy;
+                double mu = pm + m;
+                double energy = ( rvx * rvx + rvy * rvy ) / 2 - mu / Math.sqrt( rx * rx + ry * ry );
+                double h = rx * rvy - ry * rvx;
+                semiMajor = -mu / ( 2 * energy );
+                eccentricity = Math.sqrt( Math.max( 1 + 2 * energy * h * h / ( mu * mu ), 0 ) );
+            }
+            line.setLength( 0 );
+            line.append( snapshot.tick ).append( ',' ).append( snapshot.timePassed ).append( ',' ).append( g ).append( ',' )
+                    .append( members[root] ).append( ',' ).append( m ).append( ',' ).append( cx ).append( ',' ).append( cy )
+                    .append( ',' ).append( cvx ).append( ',' ).append( cvy ).append( ',' )
+                    .append( Double.isNaN( semiMajor ) ? "" : Double.toString( semiMajor ) ).append( ',' )
+                    .append( Double.isNaN( eccentricity ) ? "" : Double.toString( eccentricity ) );
+            writer.write( line.toString() );
+            writer.newLine();
+        }
+        writer.flush();
+    }
+}
@@ -0,0 +1,202 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: simulation engine which splits ticks at predicted contact events so fast particles cannot tunnel into each other
+ * Created: 10-19-2026
+ * Status: engine class, finished
+ * Dependencies: Environment, FarField, NeighborList, Particle, Simulator, SpatialGrid, StepController
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.List;
+
+public final class ContinuousSimulator extends Simulator {
+
+    //flags of particles which never take part in contact forces
+    private static final int NO_CONTACT = Particle.COLLISIONLESS | Particle.TRACER;
+    //deepest an approaching pair may press past contact, or further into it, within a sub-step, as a share of the contact distance
+    private static final double DEPTH = 0.1;
+    //shortest sub-step as a share of the tick, bounds the sub-steps of a tick when events pile up
+    private static final double MIN_FRACTION = 1.0 / 256;
+    //weight of the newest tick in the averaged statistics
+    private static final double RATE_WEIGHT = 0.02;
+
+
+    //verlet lists of the contact pairs, reused across sub-steps and ticks
+    private final NeighborList neighbors;
+    //grid used to find the pairs that may meet within the rest of the tick
+    private final SpatialGrid grid;
+    //gravity accelerations from the start of the tick
+    private double[] gravityX, gravityY;
+    //columns of the positions and kicked velocities the events are predicted from
+    private double[] x, y, vx, vy;
+    //earliest event found by the current search and its pair, or -1
+    private double earliest;
+    private int earliestI, earliestJ;
+    //statistics
+    private volatile double averageSubSteps, smallestStep;
+
+
+    //package private constructor - use Simulator.CONTINUOUS
+    ContinuousSimulator() {
+        neighbors = new NeighborList();
+        grid = new SpatialGrid();
+        gravityX = gravityY = x = y = vx = vy = new double[0];
+        earliestI = earliestJ = -1;
+        averageSubSteps = 1;
+        smallestStep = 0;
+    }
+
+
+    //gravity once per tick, then contact forces on sub-steps that each end at the next predicted contact event
+    @Override
+    protected void simulate( double timeStep ) {
+        List<Particle> particles = environment.particles;
+        int size = particles.size();
+        if( gravityX.length < size ) {
+            gravityX = new double[size];
+            gravityY = new double[size];
+        }
+        environment.getFarField().gravitate( particles, environment.sources );
+        for( int i = 0; i < size; i++ ) {
+            Particle p = particles.get( i );
+            gravityX[i] = p.getXAccel();
+            gravityY[i] = p.getYAccel();
+            p.kick( 0 );
+        }
+        double skin = environment.getSkinRatio() * meanRadius( particles );
+        double remaining = timeStep;
+        double minStep = timeStep * MIN_FRACTION;
+        double smallest = timeStep;
+        int steps = 0;
+        boolean measuring = environment.getStepController().isMeasuring();
+        while( remaining > 0 ) {
+            neighbors.update( particles, skin, NO_CONTACT );
+            //only the first sub-step sums the diagnostics, at the positions the gravity was summed at
+            boolean diagnose = measuring && steps == 0;
+            neighbors.forEachPair( ( i, j ) -> particles.get( i ).contact( particles.get( j ), diagnose ) );
+            for( int i = 0; i < size; i++ ) {
+                particles.get( i ).accelerate( gravityX[i], gravityY[i] );
+            }
+            double step = Math.min( Math.max( nextEvent( particles, remaining ), minStep ), remaining );
+            //takes the remainder rather than leaving a sliver of the tick
+            if( remaining - step < minStep / 2 ) {
+                step = remaining;
+            } else if( earliestI >= 0 ) {
+                particles.get( earliestI ).countForcedStep();
+                particles.get( earliestJ ).countForcedStep();
+            }
+            for( int i = 0; i < size; i++ ) {
+                particles.get( i ).update( step );
+            }
+            remaining -= step;
+            smallest = Math.min( smallest, step );
+            steps++;
+        }
+        averageSubSteps += ( steps - averageSubSteps ) * RATE_WEIGHT;
+        smallestStep = smallest;
+    }
+
+    @Override
+    protected void acceptEnv() {
+        neighbors.invalidate();
+    }
+
+    @Override
+    protected void disposeEnv() {
+        neighbors.invalidate();
+    }
+
+    @Override
+    public String getStatus() {
+        String status = String.format( "Contact Events: %.2f sub-steps per tick --- Shortest Sub-Step: %.3g", averageSubSteps, smallestStep );
+        String far = environment == null ? "" : environment.getFarField().getStatus();
+        return far.isEmpty() ? status : status + " --- " + far;
+    }
+
+
+    //private utility methods
+    //returns the mean radius of the particles taking part in contacts
+    private static double meanRadius( List<Particle> particles ) {
+        double total = 0;
+        int count = 0;
+        for( Particle p : particles ) {
+            if( ( p.getFlags() & NO_CONTACT ) == 0 ) {
+                total += p.getRadius();
+                count++;
+            }
+        }
+        return count == 0 ? 0 : total / count;
+    }
+
+    //returns the time until the first approaching pair presses the depth past contact or further into it, within the remaining time
+    private double nextEvent( List<Particle> particles, double remaining ) {
+        int size = particles.size();
+        if( x.length < size ) {
+            int len = Math.max( size, x.length * 2 );
+            x = new double[len];
+            y = new double[len];
+            vx = new double[len];
+            vy = new double[len];
+        }
+        //velocities after the kick of the accumulated forces, which is what the update moves particles with
+        double mass = 0, meanX = 0, meanY = 0;
+        for( int i = 0; i < size; i++ ) {
+            Particle p = particles.get( i );
+            x[i] = p.getXPosition();
+            y[i] = p.getYPosition();
+            vx[i] = p.getXVelocity() + p.getXAccel() * remaining;
+            vy[i] = p.getYVelocity() + p.getYAccel() * remaining;
+            if( ( p.getFlags() & NO_CONTACT ) == 0 ) {
+                double m = p.getMass();
+                mass += m;
+                meanX += m * vx[i];
+                meanY += m * vy[i];
+            }
+        }
+        //speeds relative to the mass weighted mean velocity, so the bulk motion of the system does not widen the cells
+        if( mass > 0 ) {
+            meanX /= mass;
+            meanY /= mass;
+        }
+        double maxSpeed = 0;
+        for( int i = 0; i < size; i++ ) {
+            if( ( particles.get( i ).getFlags() & NO_CONTACT ) == 0 ) {
+                maxSpeed = Math.max( maxSpeed, Math.hypot( vx[i] - meanX, vy[i] - meanY ) );
+            }
+        }
+        earliest = remaining;
+        earliestI = earliestJ = -1;
+        //pairs further apart than the distance both can travel relative to each other cannot meet, and the relative
+        //speed of a pair is at most the sum of their speeds relative to the mean
+        grid.build( particles, maxSpeed * remaining * 2, NO_CONTACT );
+        grid.forEachPair( ( i, j ) -> {
+            double xDiff = x[i] - x[j];
+            double yDiff = y[i] - y[j];
+            double xvDiff = vx[i] - vx[j];
+            double yvDiff = vy[i] - vy[j];
+            double b = xDiff * xvDiff + yDiff * yvDiff;
+            if( b >= 0 ) {
+                return;
+            }
+            double distSq = xDiff * xDiff + yDiff * yDiff;
+            double dist = Math.sqrt( distSq );
+            double totRad = particles.get( i ).getRadius() + particles.get( j ).getRadius();
+            double target = Math.max( Math.min( dist, totRad ) - DEPTH * totRad, dist / 2 );
+            //smallest root of |d + w t| = target
+            double a = xvDiff * xvDiff + yvDiff * yvDiff;
+            double c = distSq - target * target;
+            double disc = b * b - a * c;
+            if( disc < 0 ) {
+                return;
+            }
+            double t = c / ( -b + Math.sqrt( disc ) );
+            if( t < earliest ) {
+                earliest = t;
+                earliestI = i;
+                earliestJ = j;
+            }
+        } );
+        return earliest;
+    }
+}
@@ -0,0 +1,532 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for a local socket server that lets external tools drive a running simulation with a binary protocol
+ * Created: 10-19-2026
+ * Status: generic class, finished
+ * Dependencies: Environment, Material, Particle, ParticleBuffer, ScriptContext, Simulator
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.awt.Color;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+public final class ControlServer implements Consumer<List<Particle>> {
+
+    //request opcodes, every request is a little endian int length, then the opcode and its payload
+    public static final byte START = 1;//no payload
+    public static final byte STOP = 2;//no payload
+    public static final byte STEP = 3;//int ticks, replies once they have run
+    public static final byte SET_TIME_STEP = 4;//double time step
+    public static final byte SET_ENGINE = 5;//utf-8 engine name as shown in the simulators menu
+    public static final byte UPLOAD = 6;//byte 0 to replace or 1 to append, then a particle block, replies int particle count
+    public static final byte DOWNLOAD = 7;//no payload, replies a particle block
+    public static final byte SUBSCRIBE = 8;//int tick interval, 0 to unsubscribe
+    public static final byte STATUS = 9;//no payload, replies long ticks, double time, double time step, int particles, byte active
+    public static final byte SNAPSHOT = 10;//pushed to subscribers: long tick, double time, int block length, deflated particle block
+    //status byte following the opcode in every reply, errors carry a utf-8 message
+    public static final byte OK = 0;
+    public static final byte ERROR = 1;
+    //constants
+    private static final int MAX_FRAME = 1 << 30;
+    private static final int MATERIAL_BYTES = 4 * 8 + 2 * 4;
+    private static final int PARTICLE_BYTES = 4 * 8 + 4;
+    private static final Logger LOGGER = Logger.getLogger( ControlServer.class.getName() );
+
+
+    //state of a single client
+    private final class Connection {
+        final SocketChannel channel;
+        ByteBuffer in;
+        final Queue<ByteBuffer> out;
+        //the next request is not read until the reply to the last one is queued, so replies keep their order
+        volatile boolean pending;
+        //snapshot subscription, only changed on the main thread, the buffer is reused once the last snapshot was compressed
+        volatile long interval;
+        long lastTick;
+        final ParticleBuffer snapshot;
+        volatile boolean compressing;
+
+        Connection( SocketChannel channel ) {
+            this.channel = channel;
+            in = ByteBuffer.allocate( 1 << 16 ).order( ByteOrder.LITTLE_ENDIAN );
+            out = new ConcurrentLinkedQueue<>();
+            pending = false;
+            interval = 0;
+            snapshot = new ParticleBuffer();
+            compressing = false;
+        }
+
+        //queues a reply from any thread and wakes the selector to send it
+        void send( ByteBuffer frame, boolean done ) {
+            out.add( frame.flip() );
+            if( done ) {
+                pending = false;
+            }
+            selector.wakeup();
+        }
+    }
+
+
+    //environment being driven and the address it is served on
+    private final Environment environment;
+    private final ScriptContext context;
+    private final SocketAddress address;
+    //selector thread serving every client
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread thread;
+    private volatile boolean running;
+    private final List<Connection> connections;
+    //thread compressing snapshots so the simulation only waits on the copy
+    private final ExecutorService compressor;
+    private final Deflater deflater;
+
+
+    //constructor
+    public ControlServer( Environment env, SocketAddress address ) {
+        this.environment = env;
+        this.context = new ScriptContext( env );
+        this.address = address;
+        connections = new CopyOnWriteArrayList<>();
+        compressor = Executors.newSingleThreadExecutor( r -> {
+            Thread t = new Thread( r, "Control-Compressor" );
+            t.setDaemon( true );
+            return t;
+        } );
+        deflater = new Deflater( Deflater.BEST_SPEED );
+        running = false;
+    }
+
+
+    //returns a loopback tcp address for a port number, or a unix domain socket address for anything else
+    public static SocketAddress address( String spec ) {
+        if( spec.matches( "\\d+" ) ) {
+            return new InetSocketAddress( InetAddress.getLoopbackAddress(), Integer.parseInt( spec ) );
+        }
+        return UnixDomainSocketAddress.of( spec );
+    }
+
+    //binds the socket and starts serving clients
+    public void start() throws IOException {
+        boolean unix = address instanceof UnixDomainSocketAddress;
+        server = unix ? ServerSocketChannel.open( StandardProtocolFamily.UNIX ) : ServerSocketChannel.open();
+        server.bind( address );
+        server.configureBlocking( false );
+        selector = Selector.open();
+        server.register( selector, SelectionKey.OP_ACCEPT );
+        running = true;
+        thread = new Thread( this::serve, "Control-Server" );
+        thread.setDaemon( true );
+        thread.start();
+        environment.addTickListener( this );
+    }
+
+    //closes every client and the socket
+    public void stop() throws InterruptedException {
+        environment.removeTickListener( this );
+        running = false;
+        selector.wakeup();
+        thread.join();
+        compressor.shutdown();
+        compressor.awaitTermination( Long.MAX_VALUE, TimeUnit.NANOSECONDS );
+        deflater.end();
+    }
+
+    //waits until the server is stopped
+    public void join() throws InterruptedException {
+        thread.join();
+    }
+
+    //takes the snapshots that are due on the main thread and hands them to the compressor
+    @Override
+    public void accept( List<Particle> particles ) {
+        long tick = environment.getTicks();
+        for( Connection c : connections ) {
+            long interval = c.interval;
+            //a counter that went back, after resuming an older checkpoint, restarts the schedule
+            if( interval <= 0 || ( tick - c.lastTick < interval && tick >= c.lastTick ) ) {
+                continue;
+            }
+            c.lastTick = tick;
+            //skipped while the last snapshot of a slow client is still being compressed or sent
+            if( c.compressing || c.out.size() > 1 ) {
+                continue;
+            }
+            c.compressing = true;
+            c.snapshot.capture( particles );
+            double time = environment.getTimePassed();
+            try {
+                compressor.execute( () -> {
+                    try {
+                        c.send( compress( c.snapshot, tick, time ), false );
+                    } finally {
+                        c.compressing = false;
+                    }
+                } );
+            } catch( RejectedExecutionException e ) {
+                //server was stopped during the tick
+                c.compressing = false;
+            }
+        }
+    }
+
+
+    //accessor methods
+    //returns the bound address, which holds the chosen port when bound to port 0
+    public SocketAddress getAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    public int getClients() {
+        return connections.size();
+    }
+
+
+    //private utility methods
+    //selector loop of the server thread
+    private void serve() {
+        try {
+            while( running ) {
+                selector.select();
+                for( SelectionKey key : selector.selectedKeys() ) {
+                    if( !key.isValid() ) {
+                        continue;
+                    }
+                    if( key.isAcceptable() ) {
+                        SocketChannel channel = server.accept();
+                        if( channel != null ) {
+                            channel.configureBlocking( false );
+                            Connection c = new Connection( channel );
+                            channel.register( selector, SelectionKey.OP_READ, c );
+                            connections.add( c );
+                        }
+                        continue;
+                    }
+                    Connection c = (Connection)key.attachment();
+                    try {
+                        if( key.isReadable() && c.channel.read( c.in ) < 0 ) {
+                            close( c );
+                        }
+                    } catch( IOException e ) {
+                        close( c );
+                    }
+                }
+                selector.selectedKeys().clear();
+                //replies are queued by other threads, so every client is checked after each wake up
+                for( Connection c : connections ) {
+                    try {
+                        handle( c );
+                        flush( c );
+                        SelectionKey key = c.channel.keyFor( selector );
+                        if( key != null && key.isValid() ) {
+                            key.interestOps( ( c.pending ? 0 : SelectionKey.OP_READ )
+                                    | ( c.out.isEmpty() ? 0 : SelectionKey.OP_WRITE ) );
+                        }
+                    } catch( IOException|RuntimeException e ) {
+                        LOGGER.log( Level.FINE, "Control client closed", e );
+                        close( c );
+                    }
+                }
+            }
+        } catch( IOException e ) {
+            LOGGER.log( Level.WARNING, "Control server failed", e );
+        } finally {
+            for( Connection c : connections ) {
+                close( c );
+            }
+            try {
+                selector.close();
+                server.close();
+                if( address instanceof UnixDomainSocketAddress unix ) {
+                    Files.deleteIfExists( unix.getPath() );
+                }
+            } catch( IOException e ) {
+                LOGGER.log( Level.WARNING, "Failed to close control server", e );
+            }
+        }
+    }
+
+    //runs the complete requests that have been read, one at a time
+    private void handle( Connection c ) throws IOException {
+        ByteBuffer in = c.in;
+        while( !c.pending && in.position() >= 4 ) {
+            int length = in.getInt( 0 );
+            if( length < 1 || length > MAX_FRAME ) {
+                throw new IOException( "Invalid frame length " + length );
+            }
+            if( in.position() < length + 4 ) {
+                //grows the buffer for large uploads
+                if( in.capacity() < length + 4 ) {
+                    ByteBuffer grown = ByteBuffer.allocate( length + 4 ).order( ByteOrder.LITTLE_ENDIAN );
+                    c.in = in = grown.put( in.flip() );
+                }
+                return;
+            }
+            in.flip();
+            in.getInt();
+            byte opcode = in.get();
+            ByteBuffer payload = in.slice( in.position(), length - 1 ).order( ByteOrder.LITTLE_ENDIAN );
+            in.position( in.position() + length - 1 );
+            c.pending = true;
+            try {
+                request( c, opcode, payload );
+            } catch( RuntimeException e ) {
+                c.send( error( opcode, e ), true );
+            }
+            in.compact();
+        }
+    }
+
+    //starts a request, the reply is queued once the main thread has applied it
+    private void request( Connection c, byte opcode, ByteBuffer payload ) {
+        switch( opcode ) {
+            case START :
+                environment.setActive( true );
+                c.send( reply( opcode, 0 ), true );
+                break;
+            case STOP :
+                environment.setActive( false );
+                environment.queueInPlace( list -> c.send( reply( opcode, 0 ), true ) );
+                break;
+            case STEP :
+                int count = payload.getInt();
+                if( count < 1 ) {
+                    throw new IllegalArgumentException( "Step count must be positive" );
+                }
+                environment.addTickListener( new Consumer<List<Particle>>() {
+                    int left = count;
+
+                    @Override
+                    public void accept( List<Particle> list ) {
+                        if( --left == 0 ) {
+                            environment.setActive( false );
+                            environment.removeTickListener( this );
+                            c.send( reply( opcode, 8 ).putLong( environment.getTicks() ), true );
+                        }
+                    }
+                } );
+                environment.setActive( true );
+                break;
+            case SET_TIME_STEP :
+                double timeStep = payload.getDouble();
+                if( !( timeStep > 0 ) ) {
+                    throw new IllegalArgumentException( "Time step must be positive" );
+                }
+                environment.setTimeStep( timeStep );
+                environment.queueInOrder( list -> c.send( reply( opcode, 0 ), true ) );
+                break;
+            case SET_ENGINE :
+                String name = StandardCharsets.UTF_8.decode( payload ).toString().toLowerCase();
+                Simulator sim = Simulator.ENGINES.get( name );
+                if( sim == null ) {
+                    throw new IllegalArgumentException( "Unknown engine " + name + ", expected one of " + Simulator.ENGINES.keySet() );
+                }
+                environment.setSimManager( sim );
+                environment.queueInOrder( list -> c.send( reply( opcode, 0 ), true ) );
+                break;
+            case UPLOAD :
+                boolean append = payload.get() != 0;
+                Particle[] particles = decode( payload ).toParticles();
+                environment.queueOperation( list -> {
+                    if( !append ) {
+                        list.clear();
+                    }
+                    list.addAll( Arrays.asList( particles ) );
+                    c.send( reply( opcode, 4 ).putInt( list.size() ), true );
+                } );
+                break;
+            case DOWNLOAD :
+                ParticleBuffer buffer = new ParticleBuffer();
+                //encoded on the compressor thread, so the simulation only waits for the copy of the columns
+                context.snapshotAsync( buffer ).thenRunAsync( () -> {
+                    ByteBuffer frame = reply( opcode, blockLength( buffer ) );
+                    encode( buffer, frame );
+                    c.send( frame, true );
+                }, compressor );
+                break;
+            case SUBSCRIBE :
+                int interval = payload.getInt();
+                environment.queueInPlace( list -> {
+                    c.lastTick = environment.getTicks();
+                    c.interval = Math.max( interval, 0 );
+                    c.send( reply( opcode, 0 ), true );
+                } );
+                break;
+            case STATUS :
+                environment.queueInPlace( list -> c.send( reply( opcode, 8 + 8 + 8 + 4 + 1 ).putLong( environment.getTicks() )
+                        .putDouble( environment.getTimePassed() ).putDouble( environment.getTimeStep() )
+                        .putInt( list.size() ).put( (byte)( environment.getActive() ? 1 : 0 ) ), true ) );
+                break;
+            default :
+                throw new IllegalArgumentException( "Unknown opcode " + opcode );
+        }
+    }
+
+    //writes as much of the queued replies as the socket takes
+    private static void flush( Connection c ) throws IOException {
+        ByteBuffer head;
+        while( ( head = c.out.peek() ) != null ) {
+            c.channel.write( head );
+            if( head.hasRemaining() ) {
+                return;
+            }
+            c.out.poll();
+        }
+    }
+
+    private void close( Connection c ) {
+        connections.remove( c );
+        c.interval = 0;
+        try {
+            c.channel.close();
+        } catch( IOException e ) {
+            LOGGER.log( Level.FINE, "Failed to close control client", e );
+        }
+    }
+
+    //allocates a reply frame with its header written, leaving room for the payload
+    private static ByteBuffer reply( byte opcode, int payloadLength ) {
+        ByteBuffer frame = ByteBuffer.allocate( 4 + 2 + payloadLength ).order( ByteOrder.LITTLE_ENDIAN );
+        return frame.putInt( 2 + payloadLength ).put( opcode ).put( OK );
+    }
+
+    private static ByteBuffer error( byte opcode, Exception e ) {
+        byte[] message = String.valueOf( e.getMessage() ).getBytes( StandardCharsets.UTF_8 );
+        ByteBuffer frame = ByteBuffer.allocate( 4 + 2 + message.length ).order( ByteOrder.LITTLE_ENDIAN );
+        return frame.putInt( 2 + message.length ).put( opcode ).put( ERROR ).put( message );
+    }
+
+    //compresses a particle block into a snapshot frame, only called on the compressor thread
+    private ByteBuffer compress( ParticleBuffer particles, long tick, double time ) {
+        ByteBuffer block = ByteBuffer.allocate( blockLength( particles ) ).order( ByteOrder.LITTLE_ENDIAN );
+        encode( particles, block );
+        int raw = block.flip().remaining();
+        deflater.reset();
+        deflater.setInput( block );
+        deflater.finish();
+        ByteBuffer deflated = ByteBuffer.allocate( raw / 2 + 64 );
+        while( !deflater.finished() ) {
+            if( !deflated.hasRemaining() ) {
+                deflated = ByteBuffer.allocate( deflated.capacity() * 2 ).put( deflated.flip() );
+            }
+            deflater.deflate( deflated );
+        }
+        deflated.flip();
+        return reply( SNAPSHOT, 8 + 8 + 4 + deflated.remaining() ).putLong( tick ).putDouble( time ).putInt( raw ).put( deflated );
+    }
+
+    //bytes of a particle block: its material table, then the position, velocity and material index columns
+    private static int blockLength( ParticleBuffer particles ) {
+        int materials = 0;
+        int[] material = particles.getMaterial();
+        boolean[] seen = new boolean[ maxId( material, particles.size() ) + 1 ];
+        for( int i = 0; i < particles.size(); i++ ) {
+            if( !seen[ material[i] ] ) {
+                seen[ material[i] ] = true;
+                materials++;
+            }
+        }
+        return 4 + materials * MATERIAL_BYTES + 4 + particles.size() * PARTICLE_BYTES;
+    }
+
+    //largest material id of a buffer, ids are only bounded by the number of registered materials
+    private static int maxId( int[] material, int size ) {
+        int max = 0;
+        for( int i = 0; i < size; i++ ) {
+            max = Math.max( max, material[i] );
+        }
+        return max;
+    }
+
+    //writes a particle block with the columns copied in bulk through views of the buffer
+    private static void encode( ParticleBuffer particles, ByteBuffer out ) {
+        int size = particles.size();
+        int[] material = particles.getMaterial();
+        int[] index = new int[ maxId( material, size ) + 1 ];
+        Arrays.fill( index, -1 );
+        int[] local = new int[size];
+        int materials = 0;
+        int tableStart = out.position();
+        out.putInt( 0 );
+        for( int i = 0; i < size; i++ ) {
+            int id = material[i];
+            if( index[id] < 0 ) {
+                Material m = Material.get( id );
+                index[id] = materials++;
+                out.putDouble( m.getMass() ).putDouble( m.getRadius() ).putDouble( m.getInvSpring() ).putDouble( m.getDrag() )
+                        .putInt( m.getColor().getRGB() ).putInt( m.getFlags() );
+            }
+            local[i] = index[id];
+        }
+        out.putInt( tableStart, materials );
+        out.putInt( size );
+        for( double[] column : new double[][]{ particles.getXPosition(), particles.getYPosition(),
+                particles.getXVelocity(), particles.getYVelocity() } ) {
+            out.asDoubleBuffer().put( column, 0, size );
+            out.position( out.position() + size * 8 );
+        }
+        out.asIntBuffer().put( local, 0, size );
+        out.position( out.position() + size * 4 );
+    }
+
+    //reads a particle block, registering its materials
+    private static ParticleBuffer decode( ByteBuffer in ) {
+        int materials = in.getInt();
+        if( materials < 0 || (long)materials * MATERIAL_BYTES > in.remaining() ) {
+            throw new IllegalArgumentException( "Invalid material count " + materials );
+        }
+        Material[] table = new Material[materials];
+        for( int i = 0; i < materials; i++ ) {
+            table[i] = Material.intern( in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(),
+                    new Color( in.getInt(), true ), in.getInt() );
+        }
+        int size = in.getInt();
+        if( size < 0 || (long)size * PARTICLE_BYTES > in.remaining() ) {
+            throw new IllegalArgumentException( "Invalid particle count " + size );
+        }
+        ParticleBuffer particles = new ParticleBuffer( size );
+        particles.setSize( size );
+        for( double[] column : new double[][]{ particles.getXPosition(), particles.getYPosition(),
+                particles.getXVelocity(), particles.getYVelocity() } ) {
+            in.asDoubleBuffer().get( column, 0, size );
+            in.position( in.position() + size * 8 );
+        }
+        int[] material = particles.getMaterial();
+        in.asIntBuffer().get( material, 0, size );
+        for( int i = 0; i < size; i++ ) {
+            int m = material[i];
+            if( m < 0 || m >= materials ) {
+                throw new IllegalArgumentException( "Invalid material index " + m );
+            }
+            material[i] = table[m].getId();
+        }
+        return particles;
+    }
+}
@@ -0,0 +1,212 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for attributing the work of every tick to spatial cells, drawn as a heatmap and exported as csv
+ * Created: 10-19-2026
+ * Status: utility class, finished
+ * Dependencies: Environment, Particle, ParticleBuffer
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.function.Consumer;
+
+public final class CostProfiler implements Environment.Overlay, Consumer<List<Particle>> {
+
+    //constants
+    public static final String HEADER = "cell_x,cell_y,min_x,min_y,max_x,max_y,particles,pairs,contacts,forced_steps";
+    //cells across the longer side of the particle bounds when profiling starts
+    private static final int CELLS = 64;
+    //sums kept per cell: particles, pairs, contacts and forced sub-steps
+    private static final int SUMS = 4;
+    //opacity of the coolest and the hottest cells
+    private static final int MIN_ALPHA = 40;
+    private static final int MAX_ALPHA = 160;
+
+
+    private final Environment environment;
+    //sums of each cell over the profiled ticks in rows of the grid, then one overflow cell for particles that left the
+    //starting bounds, every pair is counted in the cells of both of its particles
+    private long[] cells;
+    private volatile double cellSize;
+    private double minX, minY;
+    private int columns, rows;
+    private long ticks;
+    //if the counters of the particles were cleared, the first tick only clears the work counted before profiling
+    private boolean primed;
+
+
+    //constructor
+    public CostProfiler( Environment env ) {
+        environment = env;
+        cells = new long[ SUMS ];
+        cellSize = 1;
+        minX = minY = 0;
+        columns = rows = 0;
+        ticks = 0;
+        primed = false;
+    }
+
+
+    //starts counting after every tick and drawing the heatmap
+    public void start() {
+        environment.addTickListener( this );
+        environment.addOverlay( this );
+    }
+
+    public void stop() {
+        environment.removeTickListener( this );
+        environment.removeOverlay( this );
+    }
+
+    //adds the work each particle counted during the tick to its cell and clears it
+    @Override
+    public void accept( List<Particle> particles ) {
+        if( !primed ) {
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for( Particle p : particles ) {
+                minX = Math.min( minX, p.getXPosition() );
+                minY = Math.min( minY, p.getYPosition() );
+                maxX = Math.max( maxX, p.getXPosition() );
+                maxY = Math.max( maxY, p.getYPosition() );
+                p.clearWork();
+            }
+            double extent = Math.max( maxX - minX, maxY - minY );
+            if( !( extent < Double.POSITIVE_INFINITY ) ) {
+                return;
+            }
+            synchronized( this ) {
+                cellSize = extent > 0 ? extent / CELLS : 1;
+                this.minX = minX;
+                this.minY = minY;
+                columns = Math.min( (int)( ( maxX - minX ) / cellSize ) + 1, CELLS );
+                rows = Math.min( (int)( ( maxY - minY ) / cellSize ) + 1, CELLS );
+                cells = new long[ ( columns * rows + 1 ) * SUMS ];
+            }
+            primed = true;
+            return;
+        }
+        synchronized( this ) {
+            for( Particle p : particles ) {
+                int k = cell( p.getXPosition(), p.getYPosition() ) * SUMS;
+                cells[k]++;
+                cells[ k + 1 ] += p.getPairs();
+                cells[ k + 2 ] += p.getContacts();
+                cells[ k + 3 ] += p.getForcedSteps();
+                p.clearWork();
+            }
+            ticks++;
+        }
+    }
+
+    //tints each cell by its work per tick, green for pair evaluations, red for contacts and blue for forced sub-steps
+    @Override
+    public void paint( Graphics g, ParticleBuffer frame, long structure ) {
+        int width = environment.getWidth(), height = environment.getHeight();
+        double posX = environment.getPosX(), posY = environment.getPosY(), zoom = environment.getZoom();
+        synchronized( this ) {
+            if( ticks == 0 ) {
+                return;
+            }
+            int count = columns * rows;
+            long maxPairs = 1, maxContacts = 1, maxForced = 1;
+            int busiest = 0;
+            for( int c = 0; c < count; c++ ) {
+                int k = c * SUMS;
+                maxPairs = Math.max( maxPairs, cells[ k + 1 ] );
+                maxContacts = Math.max( maxContacts, cells[ k + 2 ] );
+                maxForced = Math.max( maxForced, cells[ k + 3 ] );
+                if( cells[ k + 1 ] > cells[ busiest * SUMS + 1 ] ) {
+                    busiest = c;
+                }
+            }
+            int size = Math.max( (int)Math.ceil( cellSize * zoom ), 1 );
+            for( int c = 0; c < count; c++ ) {
+                int k = c * SUMS;
+                double red = (double)cells[ k + 2 ] / maxContacts, green = (double)cells[ k + 1 ] / maxPairs;
+                double blue = (double)cells[ k + 3 ] / maxForced;
+                double heat = Math.max( red, Math.max( green, blue ) );
+                if( heat == 0 ) {
+                    continue;
+                }
+                double x = minX + c % columns * cellSize, y = minY + ( c / columns + 1 ) * cellSize;
+                g.setColor( new Color( (float)red, (float)green, (float)blue, (float)( MIN_ALPHA + ( MAX_ALPHA - MIN_ALPHA ) * heat ) / 255 ) );
+                g.fillRect( (int)Math.floor( ( x - posX ) * zoom ) + width / 2, (int)Math.floor( ( posY - y ) * zoom ) + height / 2, size, size );
+            }
+            g.setColor( Color.WHITE );
+            g.drawString( String.format( "Cost Profile: %d ticks --- Green: Pairs, Red: Contacts, Blue: Forced Sub-Steps"
+                    + " --- Busiest Cell: ( %.4g, %.4g ) with %.4g pairs per tick --- Outside: %.4g particles", ticks,
+                    minX + ( busiest % columns + 0.5 ) * cellSize, minY + ( busiest / columns + 0.5 ) * cellSize,
+                    cells[ busiest * SUMS + 1 ] / 2.0 / ticks, (double)cells[ count * SUMS ] / ticks ), 0, height - 16 );
+        }
+    }
+
+    //writes the work per tick of every cell that held particles, half of every pair is given to the cell of each of its
+    //particles. the last row is the overflow cell, without coordinates or bounds
+    public void export( File file ) throws IOException {
+        long[] sums;
+        long count;
+        int columns, rows;
+        double minX, minY, cellSize;
+        synchronized( this ) {
+            sums = cells.clone();
+            count = ticks;
+            columns = this.columns;
+            rows = this.rows;
+            minX = this.minX;
+            minY = this.minY;
+            cellSize = this.cellSize;
+        }
+        try( BufferedWriter writer = Files.newBufferedWriter( file.toPath(), StandardCharsets.UTF_8 ) ) {
+            writer.write( HEADER );
+            writer.newLine();
+            double perTick = 1.0 / Math.max( count, 1 );
+            for( int c = 0; c <= columns * rows; c++ ) {
+                int k = c * SUMS;
+                if( sums[k] == 0 ) {
+                    continue;
+                }
+                if( c < columns * rows ) {
+                    int x = c % columns, y = c / columns;
+                    writer.write( x + "," + y + "," + ( minX + x * cellSize ) + "," + ( minY + y * cellSize ) + ","
+                            + ( minX + ( x + 1 ) * cellSize ) + "," + ( minY + ( y + 1 ) * cellSize ) + "," );
+                } else {
+                    writer.write( ",,,,,," );
+                }
+                writer.write( sums[k] * perTick + "," + sums[ k + 1 ] * perTick / 2 + ","
+                        + sums[ k + 2 ] * perTick / 2 + "," + sums[ k + 3 ] * perTick / 2 );
+                writer.newLine();
+            }
+        }
+    }
+
+
+    //accessor methods
+    public synchronized long getTicks() {
+        return ticks;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+
+    //private utility methods
+    //index of the grid cell holding a position, or of the overflow cell past the grid
+    private int cell( double x, double y ) {
+        double cx = Math.floor( ( x - minX ) / cellSize ), cy = Math.floor( ( y - minY ) / cellSize );
+        //also sends positions that are not finite to the overflow cell
+        if( !( cx >= 0 && cx < columns && cy >= 0 && cy < rows ) ) {
+            return columns * rows;
+        }
+        return (int)cy * columns + (int)cx;
+    }
+}
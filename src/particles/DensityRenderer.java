@@ -0,0 +1,98 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for rendering particles too small to see as a density and color map binned per screen pixel
+ * Created: 10-19-2026
+ * Status: utility class, finished
+ * Dependencies: None
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+public final class DensityRenderer {
+
+    //accumulated weight and weighted color channels of each pixel
+    private float[] weight, red, green, blue;
+    //pixels touched this frame so clearing and converting do not scan the whole screen
+    private int[] touched;
+    private int touchedCount;
+    //image and backing pixels of the map
+    private BufferedImage image;
+    private int[] pixels;
+    private int width, height;
+
+
+    //constructor
+    public DensityRenderer() {
+        weight = red = green = blue = new float[0];
+        touched = new int[0];
+        touchedCount = 0;
+        image = null;
+        pixels = new int[0];
+        width = height = 0;
+    }
+
+
+    //starts a frame of the given screen size
+    public void begin( int width, int height ) {
+        if( image == null || width != this.width || height != this.height ) {
+            this.width = width;
+            this.height = height;
+            int len = width * height;
+            weight = new float[len];
+            red = new float[len];
+            green = new float[len];
+            blue = new float[len];
+            touched = new int[len];
+            image = new BufferedImage( Math.max( width, 1 ), Math.max( height, 1 ), BufferedImage.TYPE_INT_ARGB );
+            pixels = ( (DataBufferInt)image.getRaster().getDataBuffer() ).getData();
+        } else {
+            for( int k = 0; k < touchedCount; k++ ) {
+                int i = touched[k];
+                weight[i] = red[i] = green[i] = blue[i] = 0;
+                pixels[i] = 0;
+            }
+        }
+        touchedCount = 0;
+    }
+
+    //adds a particle weighted by the pixels it covers, callers clamp the coverage to at least the 4 pixels of the smallest oval
+    public void add( int x, int y, int argb, float coverage ) {
+        if( x < 0 || y < 0 || x >= width || y >= height ) {
+            return;
+        }
+        int i = y * width + x;
+        float w = ( argb >>> 24 ) / 255f * coverage;
+        //transparent particles add nothing, and a pixel is only listed once its weight leaves zero
+        if( !( w > 0 ) ) {
+            return;
+        }
+        if( weight[i] == 0 ) {
+            touched[ touchedCount++ ] = i;
+        }
+        weight[i] += w;
+        red[i] += ( ( argb >> 16 ) & 0xFF ) * w;
+        green[i] += ( ( argb >> 8 ) & 0xFF ) * w;
+        blue[i] += ( argb & 0xFF ) * w;
+    }
+
+    //draws the map, each pixel takes the weighted mean color and grows opaque as its weight builds up
+    public void draw( Graphics g ) {
+        if( touchedCount == 0 ) {
+            return;
+        }
+        for( int k = 0; k < touchedCount; k++ ) {
+            int i = touched[k];
+            float w = weight[i];
+            if( w > 0 ) {
+                float inv = 1 / w;
+                int a = (int)( ( 1 - Math.exp( -w ) ) * 255 + 0.5 );
+                pixels[i] = a << 24 | (int)( red[i] * inv ) << 16 | (int)( green[i] * inv ) << 8 | (int)( blue[i] * inv );
+            }
+        }
+        g.drawImage( image, 0, 0, null );
+    }
+}
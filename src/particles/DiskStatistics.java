@@ -0,0 +1,298 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for binning background snapshots of a disk into annuli and streaming their statistics to a file
+ * Created: 10-19-2026
+ * Status: generic class, finished
+ * Dependencies: Environment, Material, Particle, ParticleBuffer
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+public final class DiskStatistics implements Consumer<List<Particle>> {
+
+    //constants
+    public static final String HEADER = "tick,time,annulus,inner_radius,outer_radius,particles,surface_density,"
+            + "radial_velocity,rotation_velocity,radial_dispersion,rotation_dispersion,angular_momentum,toomre_q";
+    private static final int SNAPSHOTS = 2;//snapshots that may be in memory at once
+    private static final int RANGE = 1 << 14;//particles binned by each parallel task
+    //sums kept per annulus: particles, mass, mass times radius, radial and rotation velocity, their squares and angular momentum
+    private static final int SUMS = 8;
+    private static final Logger LOGGER = Logger.getLogger( DiskStatistics.class.getName() );
+
+
+    //snapshot of the particles of a single sample
+    private static final class Snapshot {
+        final ParticleBuffer particles = new ParticleBuffer();
+        long tick;
+        double timePassed;
+    }
+
+
+    //environment and statistics file
+    private final Environment environment;
+    private final File file;
+    //snapshots which are not being binned
+    private final ArrayBlockingQueue<Snapshot> freeSnapshots;
+    //single background thread for binning snapshots and writing the series, binning itself runs in parallel
+    private final ExecutorService analyzer;
+    //settings, the center follows the heaviest particle when it is not a number
+    private final long tickInterval;
+    private final int annuli;
+    private final double centerX, centerY;
+    //state of the main thread
+    private long lastTick;
+    private volatile long skipped;
+    //state of the analyzer thread, the outer radius is fixed by the first sample if it was not given
+    private double outerRadius;
+    private BufferedWriter writer;
+    private volatile long samples;
+
+
+    //constructor
+    public DiskStatistics( Environment env, File file, long tickInterval, int annuli, double outerRadius, double centerX, double centerY ) {
+        this.environment = env;
+        this.file = file;
+        this.tickInterval = Math.max( tickInterval, 1 );
+        this.annuli = Math.max( annuli, 1 );
+        this.outerRadius = Math.max( outerRadius, 0 );
+        this.centerX = centerX;
+        this.centerY = centerY;
+        freeSnapshots = new ArrayBlockingQueue<>( SNAPSHOTS );
+        for( int i = 0; i < SNAPSHOTS; i++ ) {
+            freeSnapshots.add( new Snapshot() );
+        }
+        analyzer = Executors.newSingleThreadExecutor( r -> {
+            Thread thread = new Thread( r, "Disk-Statistics" );
+            thread.setDaemon( true );
+            thread.setPriority( Thread.NORM_PRIORITY );
+            return thread;
+        } );
+        lastTick = env.getTicks();
+        skipped = samples = 0;
+        writer = null;
+    }
+
+
+    //opens the statistics file and starts sampling after every tick interval
+    public void start() throws IOException {
+        boolean fresh = !file.exists() || file.length() == 0;
+        writer = Files.newBufferedWriter( file.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND );
+        if( fresh ) {
+            writer.write( HEADER );
+            writer.newLine();
+            writer.flush();
+        }
+        environment.addTickListener( this );
+    }
+
+    //stops sampling, waits for the snapshots already taken and closes the statistics file
+    public void stop() throws InterruptedException {
+        environment.removeTickListener( this );
+        analyzer.execute( () -> {
+            try {
+                writer.close();
+            } catch( IOException e ) {
+                LOGGER.log( Level.WARNING, "Failed to close disk statistics", e );
+            }
+        } );
+        analyzer.shutdown();
+        analyzer.awaitTermination( Long.MAX_VALUE, TimeUnit.NANOSECONDS );
+    }
+
+    //takes a snapshot on the main thread if one is due
+    @Override
+    public void accept( List<Particle> particles ) {
+        long tick = environment.getTicks();
+        //a counter that went back, after resuming an older checkpoint, restarts the schedule
+        if( tick - lastTick >= tickInterval || tick < lastTick ) {
+            lastTick = tick;
+            sample( particles );
+        }
+    }
+
+    //snapshots the particles and hands them to the analyzer, skipped if every snapshot is still being binned
+    public void sample( List<Particle> particles ) {
+        Snapshot snapshot = freeSnapshots.poll();
+        if( snapshot == null ) {
+            skipped++;
+            return;
+        }
+        snapshot.particles.capture( particles );
+        snapshot.tick = environment.getTicks();
+        snapshot.timePassed = environment.getTimePassed();
+        try {
+            analyzer.execute( () -> {
+                try {
+                    write( snapshot );
+                    samples++;
+                } catch( IOException|RuntimeException e ) {
+                    LOGGER.log( Level.WARNING, "Failed to write disk statistics", e );
+                } finally {
+                    freeSnapshots.add( snapshot );
+                }
+            } );
+        } catch( RejectedExecutionException e ) {
+            //statistics were stopped during the tick
+            freeSnapshots.add( snapshot );
+        }
+    }
+
+
+    //accessor methods
+    public File getFile() {
+        return file;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+
+    //private utility methods
+    //bins the particles around the center into annuli in parallel and appends one line per annulus holding particles
+    private void write( Snapshot snapshot ) throws IOException {
+        ParticleBuffer particles = snapshot.particles;
+        int size = particles.size();
+        double[] x = particles.getXPosition(), y = particles.getYPosition();
+        double[] vx = particles.getXVelocity(), vy = particles.getYVelocity();
+        int[] material = particles.getMaterial();
+        //the center moves with the heaviest particle, which is left out of the disk
+        int central = -1;
+        double cx = centerX, cy = centerY, cvx = 0, cvy = 0;
+        if( Double.isNaN( centerX ) || Double.isNaN( centerY ) ) {
+            double heaviest = Double.NEGATIVE_INFINITY;
+            for( int i = 0; i < size; i++ ) {
+                double m = Material.get( material[i] ).getMass();
+                if( m > heaviest ) {
+                    heaviest = m;
+                    central = i;
+                }
+            }
+            if( central < 0 ) {
+                return;
+            }
+            cx = x[central];
+            cy = y[central];
+            cvx = vx[central];
+            cvy = vy[central];
+        }
+        if( outerRadius == 0 ) {
+            double farthest = 0;
+            for( int i = 0; i < size; i++ ) {
+                double radius = Math.hypot( x[i] - cx, y[i] - cy );
+                if( radius < Double.POSITIVE_INFINITY ) {
+                    farthest = Math.max( farthest, radius );
+                }
+            }
+            if( farthest == 0 ) {
+                return;
+            }
+            outerRadius = farthest;
+        }
+        //each task sums its range into its own annuli, the partial sums are added up afterwards
+        double width = outerRadius / annuli;
+        int skip = central;
+        double ox = cx, oy = cy, ovx = cvx, ovy = cvy;
+        int ranges = ( size + RANGE - 1 ) / RANGE;
+        double[] sums = IntStream.range( 0, ranges ).parallel().mapToObj( r -> {
+            double[] bins = new double[ annuli * SUMS ];
+            for( int i = r * RANGE, end = Math.min( size, ( r + 1 ) * RANGE ); i < end; i++ ) {
+                Material m = Material.get( material[i] );
+                if( i == skip || ( m.getFlags() & Particle.TRACER ) != 0 ) {
+                    continue;
+                }
+                double rx = x[i] - ox, ry = y[i] - oy;
+                double radius = Math.sqrt( rx * rx + ry * ry );
+                int a = (int)( radius / width );
+                //also skips particles whose position is not finite
+                if( !( radius > 0 ) || a >= annuli ) {
+                    continue;
+                }
+                double rvx = vx[i] - ovx, rvy = vy[i] - ovy;
+                double radial = ( rx * rvx + ry * rvy ) / radius;
+                double rotation = ( rx * rvy - ry * rvx ) / radius;
+                double w = m.getMass();
+                int k = a * SUMS;
+                bins[k]++;
+                bins[ k + 1 ] += w;
+                bins[ k + 2 ] += w * radius;
+                bins[ k + 3 ] += w * radial;
+                bins[ k + 4 ] += w * rotation;
+                bins[ k + 5 ] += w * radial * radial;
+                bins[ k + 6 ] += w * rotation * rotation;
+                bins[ k + 7 ] += w * radius * rotation;
+            }
+            return bins;
+        } ).reduce( new double[ annuli * SUMS ], ( a, b ) -> {
+            double[] c = new double[ a.length ];
+            for( int k = 0; k < c.length; k++ ) {
+                c[k] = a[k] + b[k];
+            }
+            return c;
+        } );
+        //specific angular momentum at the mass weighted radius of each annulus, for the epicyclic frequency
+        double[] radius = new double[annuli], specific = new double[annuli];
+        for( int a = 0; a < annuli; a++ ) {
+            int k = a * SUMS;
+            double w = sums[ k + 1 ];
+            radius[a] = w > 0 ? sums[ k + 2 ] / w : Double.NaN;
+            specific[a] = w > 0 ? radius[a] * sums[ k + 4 ] / w : Double.NaN;
+        }
+        StringBuilder line = new StringBuilder();
+        for( int a = 0; a < annuli; a++ ) {
+            int k = a * SUMS;
+            double w = sums[ k + 1 ];
+            if( w == 0 ) {
+                continue;
+            }
+            double inner = a * width, outer = inner + width;
+            double density = w / ( Math.PI * ( outer * outer - inner * inner ) );
+            double radial = sums[ k + 3 ] / w, rotation = sums[ k + 4 ] / w;
+            double radialDispersion = Math.sqrt( Math.max( sums[ k + 5 ] / w - radial * radial, 0 ) );
+            double rotationDispersion = Math.sqrt( Math.max( sums[ k + 6 ] / w - rotation * rotation, 0 ) );
+            //kappa squared is d( j^2 )/dr / r^3, taken across the nearest annuli that hold particles, with the
+            //gravitational constant of the engines Q = sigma kappa / ( 3.36 surface density )
+            int lo = a > 0 && !Double.isNaN( radius[ a - 1 ] ) ? a - 1 : a;
+            int hi = a + 1 < annuli && !Double.isNaN( radius[ a + 1 ] ) ? a + 1 : a;
+            double toomre = Double.NaN;
+            if( lo != hi ) {
+                double kappaSq = ( specific[hi] * specific[hi] - specific[lo] * specific[lo] )
+                        / ( radius[hi] - radius[lo] ) / ( radius[a] * radius[a] * radius[a] );
+                if( kappaSq > 0 ) {
+                    toomre = radialDispersion * Math.sqrt( kappaSq ) / ( 3.36 * density );
+                }
+            }
+            line.setLength( 0 );
+            line.append( snapshot.tick ).append( ',' ).append( snapshot.timePassed ).append( ',' ).append( a ).append( ',' )
+                    .append( inner ).append( ',' ).append( outer ).append( ',' ).append( (long)sums[k] ).append( ',' )
+                    .append( density ).append( ',' ).append( radial ).append( ',' ).append( rotation ).append( ',' )
+                    .append( radialDispersion ).append( ',' ).append( rotationDispersion ).append( ',' )
+                    .append( sums[ k + 7 ] ).append( ',' ).append( Double.isNaN( toomre ) ? "" : Double.toString( toomre ) );
+            writer.write( line.toString() );
+            writer.newLine();
+        }
+        writer.flush();
+    }
+}
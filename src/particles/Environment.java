@@ -4,7 +4,7 @@ package particles;
  * Description: class for holding and rendering simulation states of particles
  * Created: 3-25-2022
  * Status: generic class, finished
- * Dependencies: Particle, Simulator
+ * Dependencies: DensityRenderer, FarField, Material, Particle, ParticleBuffer, ParticleStore, RenderGovernor, Simulator, StepController
  * Licensed under GNU v3, see src/particles/Particles.java for more details
  */
 
@@ -16,21 +16,47 @@ import java.awt.event.MouseMotionListener;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
 public final class Environment extends Component implements Runnable, MouseMotionListener {
     
     //serial version uid
     private static final long serialVersionUID = -1205743849784754339L;
+    
+    //functional interface for drawing over the particles of each frame on the event thread
+    public interface Overlay {
+        void paint( Graphics g, ParticleBuffer frame, long structure );//structure of the particle list the frame was copied from
+    }
+
+    //operation kept in order with the particle list operations, which leaves the list and the engine state alone
+    private interface Unchanged extends Consumer<List<Particle>> { }
 
     //lists of spaceobjects in the simulation
     final List<Particle> particles;
+    //number of gravity sources at the front of the particle list, tracers are kept behind them
+    int sources;
+    //store simulated in place of the particle list, so a run can be larger than the heap, null for particle runs
+    private final ParticleStore store;
     //queue of external operations queued to the spaceObjects list
     private final List<Consumer<List<Particle>>> operationQueue;
+    //queue of external operations which may change particle states but never add, remove or reorder particles
+    private final List<Consumer<List<Particle>>> inPlaceQueue;
+    //listeners called on the main thread after every tick
+    private final List<Consumer<List<Particle>>> tickListeners;
+    //overlays drawn after the particles of every frame
+    private final List<Overlay> overlays;
     //main thread of the environment
     private final Thread mainThread;
     //simulation manager for optimizations
     private Simulator simulator;
+    //renderer for particles too small to draw individually
+    private final DensityRenderer densityRenderer;
+    private final ParticleBuffer frame;//copy of the particles drawn by the last frame
+    //governor choosing when to repaint
+    private final RenderGovernor governor;
+    //controller adjusting the time step to the drift of conserved quantities
+    private final StepController stepController;
 
     //environment variables
     private double posX;//camera x coordinate
@@ -38,7 +64,14 @@ public final class Environment extends Component implements Runnable, MouseMotio
     private double zoom;//scale modifier
     private double timePassed;//indicates days passed in simulation
     private double timeStep;//indicates the time passed per tick of simulation
+    private long ticks;//number of ticks simulated
+    private long structure;//incremented after every queued operation that may have changed the particle list
     private double ratioThresh;//required accuracy threshold modifier for when using the antisingularity simulator
+    private int subSteps;//number of contact force sub-steps per time step for the multi-step simulator
+    private double skinRatio;//verlet list skin distance as a multiple of the mean particle radius
+    private double sleepSpeed;//relative speed below which settled contact islands sleep in the multi-step simulator, 0 disables
+    private FarField farField;//long range gravity method of the engines that compute it apart from contact forces
+    private double detailRadius;//on screen radius in pixels below which particles are binned into the density map
     //mouseevent storage
     private MouseEvent lastPos;
     //status checkers
@@ -48,10 +81,25 @@ public final class Environment extends Component implements Runnable, MouseMotio
     
     //constructor
     public Environment() {
+        this( null );
+    }
+    
+    //constructor for an environment whose engine simulates a store in place, only engines that read stores can run it
+    //and the particle list handed to listeners and the step controller stays empty
+    public Environment( ParticleStore store ) {
         //initializes final fields
         particles = new ArrayList<>();
+        sources = 0;
+        this.store = store;
         operationQueue = Collections.synchronizedList( new ArrayList<>() );
+        inPlaceQueue = Collections.synchronizedList( new ArrayList<>() );
+        tickListeners = new CopyOnWriteArrayList<>();
+        overlays = new CopyOnWriteArrayList<>();
         mainThread = new Thread( this, "Simulation-Main" );
+        densityRenderer = new DensityRenderer();
+        frame = new ParticleBuffer();
+        governor = new RenderGovernor();
+        stepController = new StepController( this );
 
         //initializes other fields
         simulator = Simulator.DEFAULT;
@@ -60,7 +108,14 @@ public final class Environment extends Component implements Runnable, MouseMotio
         zoom = 1;
         timePassed = 0;
         timeStep = 1;
+        ticks = 0;
+        structure = 0;
         ratioThresh = 0.49;
+        subSteps = 4;
+        skinRatio = 0.5;
+        sleepSpeed = 0;
+        farField = FarField.DIRECT;
+        detailRadius = 1;
         lastPos = new MouseEvent( this, MouseEvent.MOUSE_MOVED, System.currentTimeMillis(), 0, 0, 0, 0, false );
         tickLength = 16;
         frameLength = 16;
@@ -74,8 +129,12 @@ public final class Environment extends Component implements Runnable, MouseMotio
     }
 
     //mutator methods
+    //the scalar setters stay in order with queued particle operations, but keep the structure and pending batches valid
     public void setSimManager( Simulator sim ) {
-        operationQueue.add( list -> {
+        if( store != null && !sim.simulatesStores() ) {
+            throw new IllegalArgumentException( "Engine cannot simulate a particle store" );
+        }
+        queueInOrder( list -> {
             simulator.disposeEnv();
             simulator.environment = null;
             sim.environment = this;
@@ -89,17 +148,47 @@ public final class Environment extends Component implements Runnable, MouseMotio
     }
 
     public void setTimePassed( double timePassed ) {
-        operationQueue.add( list -> this.timePassed = timePassed );
+        queueInOrder( list -> this.timePassed = timePassed );
     }
 
     public void setTimeStep( double timeStep ) {
-        operationQueue.add( list -> this.timeStep = timeStep );
+        queueInOrder( list -> this.timeStep = timeStep );
+    }
+
+    //continues the tick counter of a resumed checkpoint, so tick based schedules keep their place
+    public void setTicks( long ticks ) {
+        queueInOrder( list -> this.ticks = ticks );
+    }
+    
+    //changes the time step without the engine accepting the particles again, used by the step controller
+    void adjustTimeStep( double timeStep ) {
+        inPlaceQueue.add( list -> this.timeStep = timeStep );
     }
 
     public void setRatioThresh( double ratioThresh ) {
         this.ratioThresh = ratioThresh;
     }
     
+    public void setSubSteps( int subSteps ) {
+        this.subSteps = subSteps;
+    }
+    
+    public void setSkinRatio( double skinRatio ) {
+        this.skinRatio = skinRatio;
+    }
+    
+    public void setSleepSpeed( double sleepSpeed ) {
+        this.sleepSpeed = sleepSpeed;
+    }
+    
+    public void setFarField( FarField farField ) {
+        this.farField = farField;
+    }
+    
+    public void setDetailRadius( double detailRadius ) {
+        this.detailRadius = detailRadius;
+    }
+    
     public void setTickLength( long tickLength ) {
         this.tickLength = tickLength;
     }
@@ -110,14 +199,17 @@ public final class Environment extends Component implements Runnable, MouseMotio
 
     public void setPosX( double posX ) {
         this.posX = posX;
+        governor.requestRender();
     }
 
     public void setPosY( double posY ) {
         this.posY = posY;
+        governor.requestRender();
     }
     
     public void setZoom( double zoom ) {
         this.zoom = zoom;
+        governor.requestRender();
     }
     
 
@@ -129,6 +221,18 @@ public final class Environment extends Component implements Runnable, MouseMotio
     public Simulator getSimulator() {
         return simulator;
     }
+    
+    public ParticleStore getStore() {
+        return store;
+    }
+    
+    public RenderGovernor getGovernor() {
+        return governor;
+    }
+    
+    public StepController getStepController() {
+        return stepController;
+    }
 
     public boolean getActive() {
         return simActive;
@@ -141,11 +245,39 @@ public final class Environment extends Component implements Runnable, MouseMotio
     public double getTimeStep() {
         return timeStep;
     }
+    
+    public long getTicks() {
+        return ticks;
+    }
+    
+    public long getStructure() {
+        return structure;
+    }
 
     public double getRatioThresh() {
         return ratioThresh;
     }
     
+    public int getSubSteps() {
+        return subSteps;
+    }
+    
+    public double getSkinRatio() {
+        return skinRatio;
+    }
+    
+    public double getSleepSpeed() {
+        return sleepSpeed;
+    }
+    
+    public FarField getFarField() {
+        return farField;
+    }
+    
+    public double getDetailRadius() {
+        return detailRadius;
+    }
+    
     public long getTickLength() {
         return tickLength;
     }
@@ -170,6 +302,35 @@ public final class Environment extends Component implements Runnable, MouseMotio
     public void queueOperation( Consumer<List<Particle>> operation ) {
         operationQueue.add( operation );
     }
+    
+    //queues an operation in order with the particle list operations, for changes to settings rather than particles, so
+    //neither the structure nor the engine state is renewed
+    public void queueInOrder( Consumer<List<Particle>> operation ) {
+        operationQueue.add( (Unchanged)operation::accept );
+    }
+    
+    //queues an operation which never adds, removes or reorders particles, so engines do not need to accept it again
+    public void queueInPlace( Consumer<List<Particle>> operation ) {
+        inPlaceQueue.add( operation );
+    }
+    
+    //adds a listener called after every tick, listeners may read the list but changes must be queued
+    public void addTickListener( Consumer<List<Particle>> listener ) {
+        tickListeners.add( listener );
+    }
+    
+    public void removeTickListener( Consumer<List<Particle>> listener ) {
+        tickListeners.remove( listener );
+    }
+    
+    //adds an overlay drawn over the particles of every frame
+    public void addOverlay( Overlay overlay ) {
+        overlays.add( overlay );
+    }
+    
+    public void removeOverlay( Overlay overlay ) {
+        overlays.remove( overlay );
+    }
 
     
     //overridden methods
@@ -186,19 +347,16 @@ public final class Environment extends Component implements Runnable, MouseMotio
     //renders simulation as image
     @Override
     public void paint( Graphics g ) {
-        //paints particle objects
-        g.setColor( Color.BLACK );
-        g.fillRect( 0, 0, super.getWidth(), super.getHeight() );
+        long start = System.nanoTime();
+        //copies the particles so the simulation only waits on the copy, not the drawing
+        long frameStructure;
         synchronized( particles ) {
-            particles.forEach( obj -> {
-                if( obj != null ) {
-                    g.setColor( obj.getColor() );
-                    double radius = obj.getRadius();
-                    int s = Math.max( (int)( radius * 2 * zoom ), 2 );
-                    g.fillOval( (int)( ( obj.getXPosition() - radius - posX ) * zoom ) + super.getWidth() / 2, 
-                            (int)( ( posY - obj.getYPosition() - radius ) * zoom ) + super.getHeight() / 2, s, s );
-                }
-            } );
+            frame.capture( particles );
+            frameStructure = structure;
+        }
+        render( g, frame, super.getWidth(), super.getHeight(), posX, posY, zoom, detailRadius, densityRenderer );
+        for( Overlay overlay : overlays ) {
+            overlay.paint( g, frame, frameStructure );
         }
         //paints environment status
         g.setColor( Color.WHITE );
@@ -206,6 +364,52 @@ public final class Environment extends Component implements Runnable, MouseMotio
                 ( posY - ( lastPos.getY() - super.getHeight() / 2 ) / zoom ) +
                 ") --- Simulation Time: " + timePassed +
                 " --- Zoom Magnitude: " + (int)( zoom * 100 ) + "%", 0, 10 );
+        int line = 22;
+        if( simActive ) {
+            g.drawString( governor.getStatus(), 0, line );
+            line += 12;
+        }
+        if( stepController.getTolerance() > 0 ) {
+            g.drawString( stepController.getStatus(), 0, line );
+            line += 12;
+        }
+        String status = simulator.getStatus();
+        if( !status.isEmpty() ) {
+            g.drawString( status, 0, line );
+        }
+        governor.recordRender( System.nanoTime() - start );
+    }
+
+    //draws particle states through a camera, shared by the screen and offscreen exports
+    static void render( Graphics g, ParticleStore store, int width, int height, 
+            double posX, double posY, double zoom, double detailRadius, DensityRenderer densityRenderer ) {
+        g.setColor( Color.BLACK );
+        g.fillRect( 0, 0, width, height );
+        int size = store.size();
+        //bins particles smaller than the detail radius per pixel, so zoomed out frames cost a pass over the screen
+        //each one weighs at least the 2 by 2 pixels of the smallest oval so sparse regions keep their brightness
+        densityRenderer.begin( width, height );
+        for( int i = 0; i < size; i++ ) {
+            Material m = Material.get( store.getMaterialId( i ) );
+            double r = m.getRadius() * zoom;
+            if( ( m.getFlags() & Particle.HIDDEN ) == 0 && r < detailRadius ) {
+                densityRenderer.add( (int)Math.floor( ( store.getXPosition( i ) - posX ) * zoom ) + width / 2, 
+                        (int)Math.floor( ( posY - store.getYPosition( i ) ) * zoom ) + height / 2, 
+                        m.getColor().getRGB(), (float)Math.max( Math.PI * r * r, 4 ) );
+            }
+        }
+        densityRenderer.draw( g );
+        //draws the remaining particles as exact ovals
+        for( int i = 0; i < size; i++ ) {
+            Material m = Material.get( store.getMaterialId( i ) );
+            double radius = m.getRadius();
+            if( ( m.getFlags() & Particle.HIDDEN ) == 0 && radius * zoom >= detailRadius ) {
+                g.setColor( m.getColor() );
+                int s = Math.max( (int)( radius * 2 * zoom ), 2 );
+                g.fillOval( (int)( ( store.getXPosition( i ) - radius - posX ) * zoom ) + width / 2, 
+                        (int)( ( posY - store.getYPosition( i ) - radius ) * zoom ) + height / 2, s, s );
+            }
+        }
     }
 
     //implemented method for main simulation thread to run
@@ -214,27 +418,79 @@ public final class Environment extends Component implements Runnable, MouseMotio
         long repaintTime = 0;
         long simTime = 0;
         long currentTime;
+        boolean wasActive = false;
         while( true ) {
             currentTime = System.currentTimeMillis();
-            //repaints simulation and consumes queued operations
-            if( currentTime > repaintTime + frameLength ) {
+            //repaints simulation when the governor decides a frame is due
+            if( governor.shouldRender( currentTime - repaintTime, frameLength, simActive && tickLength < 0 ) ) {
                 super.repaint();
-                if( !operationQueue.isEmpty() ) {
-                    synchronized( particles ) {
-                        do {
-                            operationQueue.remove( 0 ).accept( particles );
-                        } while( !operationQueue.isEmpty() );
+                repaintTime = currentTime;
+            }
+            //consumes queued operations every pass so they do not wait on frames
+            if( !operationQueue.isEmpty() ) {
+                boolean changed = false;
+                synchronized( particles ) {
+                    do {
+                        Consumer<List<Particle>> operation = operationQueue.remove( 0 );
+                        operation.accept( particles );
+                        if( !( operation instanceof Unchanged ) ) {
+                            structure++;
+                            changed = true;
+                        }
+                    } while( !operationQueue.isEmpty() );
+                    if( changed ) {
+                        groupSources();
                     }
+                }
+                if( changed ) {
                     simulator.acceptEnv();
                 }
-                repaintTime = currentTime;
+                governor.requestRender();
+            }
+            if( !inPlaceQueue.isEmpty() ) {
+                synchronized( particles ) {
+                    do {
+                        inPlaceQueue.remove( 0 ).accept( particles );
+                    } while( !inPlaceQueue.isEmpty() );
+                }
+            }
+            if( simActive != wasActive ) {
+                governor.reset( currentTime );
+                wasActive = simActive;
             }
             //simulates a single tick of the simulation
             if( simActive && currentTime > simTime + tickLength ) {
+                long start = System.nanoTime();
                 simulator.simulate( timeStep );
                 timePassed += timeStep;
+                ticks++;
+                stepController.recordTick( particles );
+                for( Consumer<List<Particle>> listener : tickListeners ) {
+                    listener.accept( particles );
+                }
+                governor.recordTick( System.nanoTime() - start, currentTime );
                 simTime = currentTime;
             }
         }
     }
+    
+    
+    //moves tracers behind the gravity sources so engines can skip tracer-tracer pairs
+    private void groupSources() {
+        int size = particles.size();
+        List<Particle> tracers = new ArrayList<>();
+        int count = 0;
+        for( int i = 0; i < size; i++ ) {
+            Particle p = particles.get( i );
+            if( ( p.getFlags() & Particle.TRACER ) == 0 ) {
+                particles.set( count++, p );
+            } else {
+                tracers.add( p );
+            }
+        }
+        for( Particle p : tracers ) {
+            particles.set( count++, p );
+        }
+        sources = size - tracers.size();
+    }
 }
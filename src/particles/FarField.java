@@ -0,0 +1,34 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: interface for long range gravity methods that engines handling short range forces can be paired with
+ * Created: 10-19-2026
+ * Status: interface, finished
+ * Dependencies: Particle
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.List;
+
+public interface FarField {
+
+    //direct sum over every pair with a gravity source, with the softened core when particles overlap
+    FarField DIRECT = ( particles, sources ) -> {
+        int size = particles.size();
+        for( int i = 0; i < sources; i++ ) {
+            Particle obj = particles.get( i );
+            for( int j = i + 1; j < size; j++ ) {
+                obj.gravitate( particles.get( j ) );
+            }
+        }
+    };
+
+
+    //adds the gravity of the sources at the front of the list to the accumulated acceleration of every particle
+    void gravitate( List<Particle> particles, int sources );
+
+    //returns statistics to show in the status line, empty if there are none
+    default String getStatus() {
+        return "";
+    }
+}
@@ -0,0 +1,184 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for rendering offscreen frames of a running simulation into png sequences on background threads
+ * Created: 10-19-2026
+ * Status: generic class, finished
+ * Dependencies: DensityRenderer, Environment, Particle, ParticleBuffer
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+
+public final class FrameExporter implements Consumer<List<Particle>> {
+
+    //constants
+    private static final String PREFIX = "frame-";
+    private static final String EXTENSION = ".png";
+    private static final Logger LOGGER = Logger.getLogger( FrameExporter.class.getName() );
+
+
+    //snapshot of the particles and camera of a single frame
+    private static final class Frame {
+        final ParticleBuffer particles = new ParticleBuffer();
+        long number;
+        double posX, posY, zoom, detailRadius;
+    }
+
+
+    //environment and directory to export
+    private final Environment environment;
+    private final File directory;
+    //frames which are not being rendered, waiting on this queue is the back-pressure on the simulation
+    private final ArrayBlockingQueue<Frame> freeFrames;
+    //threads rendering and encoding the frames, each with its own image and density map
+    private final ExecutorService encoders;
+    private final ThreadLocal<BufferedImage> images;
+    private final ThreadLocal<DensityRenderer> densityRenderers;
+    //export settings
+    private final long tickInterval;
+    private final int width, height;
+    //state of the main thread
+    private long lastTick;
+    private long frameNumber;
+    private long stallNanos;
+    //state of the encoder threads
+    private final AtomicInteger written;
+
+
+    //constructor
+    public FrameExporter( Environment env, File directory, long tickInterval, int width, int height, int threads ) {
+        this.environment = env;
+        this.directory = directory;
+        this.tickInterval = Math.max( tickInterval, 1 );
+        this.width = width;
+        this.height = height;
+        freeFrames = new ArrayBlockingQueue<>( threads * 2 );
+        for( int i = 0; i < threads * 2; i++ ) {
+            freeFrames.add( new Frame() );
+        }
+        AtomicInteger count = new AtomicInteger();
+        encoders = Executors.newFixedThreadPool( threads, r -> {
+            Thread thread = new Thread( r, "Frame-Encoder-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            thread.setPriority( Thread.NORM_PRIORITY - 1 );
+            return thread;
+        } );
+        images = ThreadLocal.withInitial( () -> new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB ) );
+        densityRenderers = ThreadLocal.withInitial( DensityRenderer::new );
+        lastTick = env.getTicks();
+        frameNumber = 0;
+        stallNanos = 0;
+        written = new AtomicInteger();
+    }
+
+
+    //starts exporting a frame after every tick interval
+    public void start() {
+        directory.mkdirs();
+        environment.addTickListener( this );
+    }
+
+    //stops exporting and waits for the frames already taken to be written
+    public void stop() throws InterruptedException {
+        environment.removeTickListener( this );
+        encoders.shutdown();
+        encoders.awaitTermination( Long.MAX_VALUE, TimeUnit.NANOSECONDS );
+    }
+
+    //takes a frame on the main thread if one is due
+    @Override
+    public void accept( List<Particle> particles ) {
+        long tick = environment.getTicks();
+        //a counter that went back, after resuming an older checkpoint, restarts the schedule
+        if( tick - lastTick >= tickInterval || tick < lastTick ) {
+            lastTick = tick;
+            export( particles );
+        }
+    }
+
+    //snapshots the particles and camera and hands them to an encoder, waiting while every frame is still being encoded
+    public void export( List<Particle> particles ) {
+        Frame frame = freeFrames.poll();
+        if( frame == null ) {
+            long start = System.nanoTime();
+            try {
+                frame = freeFrames.take();
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                stallNanos += System.nanoTime() - start;
+            }
+        }
+        frame.particles.capture( particles );
+        frame.number = frameNumber++;
+        frame.posX = environment.getPosX();
+        frame.posY = environment.getPosY();
+        frame.zoom = environment.getZoom();
+        frame.detailRadius = environment.getDetailRadius();
+        Frame toEncode = frame;
+        try {
+            encoders.execute( () -> {
+                try {
+                    encode( toEncode );
+                    written.incrementAndGet();
+                } catch( IOException|RuntimeException e ) {
+                    LOGGER.log( Level.WARNING, "Failed to export frame " + toEncode.number, e );
+                } finally {
+                    freeFrames.add( toEncode );
+                }
+            } );
+        } catch( RejectedExecutionException e ) {
+            //exporter was stopped during the tick
+            freeFrames.add( frame );
+        }
+    }
+
+
+    //accessor methods
+    public File getDirectory() {
+        return directory;
+    }
+
+    public int getWritten() {
+        return written.get();
+    }
+
+    //total time the simulation waited on the encoders, in milliseconds
+    public long getStallTime() {
+        return stallNanos / 1000000;
+    }
+
+
+    //private utility methods
+    //renders a frame with the camera of the screen and writes it as a png
+    private void encode( Frame frame ) throws IOException {
+        BufferedImage image = images.get();
+        Graphics2D g = image.createGraphics();
+        try {
+            Environment.render( g, frame.particles, width, height, frame.posX, frame.posY, frame.zoom,
+                    frame.detailRadius, densityRenderers.get() );
+        } finally {
+            g.dispose();
+        }
+        File file = new File( directory, String.format( "%s%08d%s", PREFIX, frame.number, EXTENSION ) );
+        if( !ImageIO.write( image, "png", file ) ) {
+            throw new IOException( "No png encoder" );
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for generating seeded initial conditions in parallel chunks of a particle store
+ * Created: 10-19-2026
+ * Status: static class, finished
+ * Dependencies: Particle, ParticleStore
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+public final class Generator {
+
+    //number of particles generated by each task, fixed so the output does not depend on the thread count
+    public static final int CHUNK_SIZE = 1 << 14;
+
+
+    //functional interface for generating the particle at an index, called in index order within each chunk
+    public interface Kernel {
+        void generate( int i, SplittableRandom random, ParticleStore out );
+    }
+
+
+    //private constructor
+    private Generator() {
+        throw new AssertionError();
+    }
+
+
+    //appends count particles to a store, each chunk draws from its own stream derived from the seed
+    public static void generate( ParticleStore out, int count, long seed, Kernel kernel ) {
+        int base = out.size();
+        out.setSize( base + count );
+        int chunks = ( count + CHUNK_SIZE - 1 ) / CHUNK_SIZE;
+        IntStream stream = IntStream.range( 0, chunks );
+        ( chunks > 1 ? stream.parallel() : stream ).forEach( c -> {
+            SplittableRandom random = new SplittableRandom( chunkSeed( seed, c ) );
+            int end = base + Math.min( count, ( c + 1 ) * CHUNK_SIZE );
+            for( int i = base + c * CHUNK_SIZE; i < end; i++ ) {
+                kernel.generate( i, random, out );
+            }
+        } );
+    }
+
+    //creates the particles of a store in parallel chunks
+    public static Particle[] toParticles( ParticleStore buffer ) {
+        int size = buffer.size();
+        Particle[] out = new Particle[size];
+        int chunks = ( size + CHUNK_SIZE - 1 ) / CHUNK_SIZE;
+        IntStream stream = IntStream.range( 0, chunks );
+        ( chunks > 1 ? stream.parallel() : stream ).forEach(
+                c -> buffer.toParticles( out, c * CHUNK_SIZE, Math.min( size, ( c + 1 ) * CHUNK_SIZE ) ) );
+        return out;
+    }
+
+    //derives the seed of a chunk, mixed so neighboring seeds and chunks give unrelated streams
+    public static long chunkSeed( long seed, int chunk ) {
+        long z = seed + ( chunk + 1 ) * 0x9E3779B97F4A7C15L;
+        z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+        z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+        return z ^ ( z >>> 31 );
+    }
+}
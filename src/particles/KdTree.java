@@ -0,0 +1,188 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for indexing particle positions in a balanced 2d tree for nearest point and region queries
+ * Created: 10-19-2026
+ * Status: utility class, finished
+ * Dependencies: Material, ParticleStore
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.function.IntConsumer;
+
+public final class KdTree {
+
+    //ranges at most this long are not split further and are scanned linearly
+    private static final int LEAF_SIZE = 8;
+
+
+    //points in tree order, every range is split at its middle point, on x at even depths and y at odd depths
+    private int[] order;//particle index of each point
+    private double[] xPosition, yPosition;
+    private int size;
+    //state of the current nearest point search
+    private int nearest;
+    private double nearestDistSq;
+
+
+    //constructor
+    public KdTree() {
+        order = new int[0];
+        xPosition = yPosition = new double[0];
+        size = 0;
+    }
+
+
+    //indexes the particle states of a store, leaving out particles with any of the flags
+    public void build( ParticleStore store, int excludeFlags ) {
+        int len = store.size();
+        if( order.length < len ) {
+            int capacity = Math.max( len, order.length * 2 );
+            order = new int[capacity];
+            xPosition = new double[capacity];
+            yPosition = new double[capacity];
+        }
+        int count = 0;
+        for( int i = 0; i < len; i++ ) {
+            if( ( Material.get( store.getMaterialId( i ) ).getFlags() & excludeFlags ) == 0 ) {
+                order[count] = i;
+                xPosition[count] = store.getXPosition( i );
+                yPosition[count] = store.getYPosition( i );
+                count++;
+            }
+        }
+        size = count;
+        split( 0, count, 0 );
+    }
+
+    //returns the particle index closest to a point, or -1 if the tree is empty
+    public int nearest( double x, double y ) {
+        nearest = -1;
+        nearestDistSq = Double.POSITIVE_INFINITY;
+        nearest( 0, size, 0, x, y );
+        return nearest;
+    }
+
+    //passes the particle index of every point inside a rectangle, in no particular order
+    public void forEachInRect( double minX, double minY, double maxX, double maxY, IntConsumer action ) {
+        forEachInRect( 0, size, 0, minX, minY, maxX, maxY, action );
+    }
+
+
+    //accessor methods
+    public int size() {
+        return size;
+    }
+
+
+    //private utility methods
+    //arranges a range so its middle point splits it on the axis of the depth, then splits both halves
+    private void split( int from, int to, int depth ) {
+        while( to - from > LEAF_SIZE ) {
+            int mid = ( from + to ) >>> 1;
+            select( from, to, mid, ( depth & 1 ) == 0 ? xPosition : yPosition );
+            split( mid + 1, to, depth + 1 );
+            to = mid;
+            depth++;
+        }
+    }
+
+    //moves the k-th smallest coordinate of a range to k, with smaller ones before it and larger ones after it
+    private void select( int from, int to, int k, double[] key ) {
+        int lo = from, hi = to - 1;
+        while( lo < hi ) {
+            double pivot = key[ ( lo + hi ) >>> 1 ];
+            int i = lo, j = hi;
+            while( i <= j ) {
+                while( key[i] < pivot ) {
+                    i++;
+                }
+                while( key[j] > pivot ) {
+                    j--;
+                }
+                if( i <= j ) {
+                    swap( i++, j-- );
+                }
+            }
+            if( k <= j ) {
+                hi = j;
+            } else if( k >= i ) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap( int i, int j ) {
+        int o = order[i];
+        order[i] = order[j];
+        order[j] = o;
+        double t = xPosition[i];
+        xPosition[i] = xPosition[j];
+        xPosition[j] = t;
+        t = yPosition[i];
+        yPosition[i] = yPosition[j];
+        yPosition[j] = t;
+    }
+
+    //descends into the half holding the point first, then the other half only if it can hold a closer point
+    private void nearest( int from, int to, int depth, double x, double y ) {
+        if( to - from <= LEAF_SIZE ) {
+            for( int i = from; i < to; i++ ) {
+                consider( i, x, y );
+            }
+            return;
+        }
+        int mid = ( from + to ) >>> 1;
+        consider( mid, x, y );
+        double diff = ( depth & 1 ) == 0 ? x - xPosition[mid] : y - yPosition[mid];
+        if( diff < 0 ) {
+            nearest( from, mid, depth + 1, x, y );
+            if( diff * diff < nearestDistSq ) {
+                nearest( mid + 1, to, depth + 1, x, y );
+            }
+        } else {
+            nearest( mid + 1, to, depth + 1, x, y );
+            if( diff * diff < nearestDistSq ) {
+                nearest( from, mid, depth + 1, x, y );
+            }
+        }
+    }
+
+    private void consider( int i, double x, double y ) {
+        double xDiff = xPosition[i] - x;
+        double yDiff = yPosition[i] - y;
+        double distSq = xDiff * xDiff + yDiff * yDiff;
+        if( distSq < nearestDistSq ) {
+            nearestDistSq = distSq;
+            nearest = order[i];
+        }
+    }
+
+    //visits only the halves of each range that overlap the rectangle
+    private void forEachInRect( int from, int to, int depth, double minX, double minY, double maxX, double maxY, IntConsumer action ) {
+        if( to - from <= LEAF_SIZE ) {
+            for( int i = from; i < to; i++ ) {
+                if( xPosition[i] >= minX && xPosition[i] <= maxX && yPosition[i] >= minY && yPosition[i] <= maxY ) {
+                    action.accept( order[i] );
+                }
+            }
+            return;
+        }
+        int mid = ( from + to ) >>> 1;
+        double x = xPosition[mid], y = yPosition[mid];
+        if( x >= minX && x <= maxX && y >= minY && y <= maxY ) {
+            action.accept( order[mid] );
+        }
+        double split = ( depth & 1 ) == 0 ? x : y;
+        double min = ( depth & 1 ) == 0 ? minX : minY;
+        double max = ( depth & 1 ) == 0 ? maxX : maxY;
+        if( min <= split ) {
+            forEachInRect( from, mid, depth + 1, minX, minY, maxX, maxY, action );
+        }
+        if( max >= split ) {
+            forEachInRect( mid + 1, to, depth + 1, minX, minY, maxX, maxY, action );
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for registering particle materials and their precomputed pairwise coefficients
+ * Created: 10-19-2026
+ * Status: registry class, finished
+ * Dependencies: Particle
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public final class Material {
+
+    //materials given a row of the dense pair table, the table holds at most this many squared pairs
+    //later materials and one-off overrides of single particles get ids past it and compute their pair coefficients on contact
+    public static final int DENSE_MATERIALS = 1 << 8;
+
+    //registry of every interned material
+    private static final HashMap<Material,Material> REGISTRY = new HashMap<>();
+    //materials by id, and the next ids inside and past the dense table
+    private static volatile Material[] materials = new Material[ DENSE_MATERIALS * 2 ];
+    private static int nextDense = 0, nextSparse = DENSE_MATERIALS;
+    //current coefficient table, replaced with a larger copy when it runs out of rows
+    //new entries reach the simulation thread through the queued operation that hands it their particles
+    static Table table = new Table( 4 );
+
+
+    //immutable properties of the material
+    private final int id;
+    private final double mass, radius, invSpring, drag;
+    private final Color color;
+    private final int flags;
+
+
+    //private constructor - materials are only created through the registry
+    private Material( int id, double mass, double radius, double invSpring, double drag, Color color, int flags ) {
+        this.id = id;
+        this.mass = mass;
+        this.radius = radius;
+        this.invSpring = invSpring;
+        this.drag = drag;
+        this.color = color;
+        this.flags = flags;
+    }
+
+
+    //returns the registered material with the given properties, registering it if it does not exist
+    public static Material of( double mass, double radius, double spring, double drag, Color color, int flags ) {
+        return intern( mass, radius, 1 / spring, drag, color, flags );
+    }
+
+    //returns the material with a given id
+    public static Material get( int id ) {
+        return materials[id];
+    }
+
+    //returns the number of registered materials
+    public static synchronized int count() {
+        return REGISTRY.size();
+    }
+
+
+    //derives materials from this one with a single property overridden
+    public Material withMass( double mass ) {
+        return intern( mass, radius, invSpring, drag, color, flags );
+    }
+
+    public Material withRadius( double radius ) {
+        return intern( mass, radius, invSpring, drag, color, flags );
+    }
+
+    public Material withSpring( double spring ) {
+        return intern( mass, radius, 1 / spring, drag, color, flags );
+    }
+
+    public Material withDrag( double drag ) {
+        return intern( mass, radius, invSpring, drag, color, flags );
+    }
+
+    public Material withColor( Color color ) {
+        return intern( mass, radius, invSpring, drag, color, flags );
+    }
+
+    public Material withFlags( int flags ) {
+        return intern( mass, radius, invSpring, drag, color, flags );
+    }
+
+
+    //derives a material for a single particle with its properties overridden, kept out of the dense pair table unless
+    //an identical shared material already has a row
+    Material override( double mass, double radius, double invSpring, double drag, Color color, int flags ) {
+        return intern( mass, radius, invSpring, drag, color, flags, false );
+    }
+
+
+    //accessor methods
+    public int getId() {
+        return id;
+    }
+
+    public double getMass() {
+        return mass;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    public double getInvSpring() {
+        return invSpring;
+    }
+
+    public double getDrag() {
+        return drag;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+
+    //overridden object methods, the id is not part of a material's identity
+    @Override
+    public boolean equals( Object obj ) {
+        if( !( obj instanceof Material ) ) {
+            return false;
+        }
+        Material m = (Material)obj;
+        return Double.compare( mass, m.mass ) == 0 && Double.compare( radius, m.radius ) == 0 &&
+                Double.compare( invSpring, m.invSpring ) == 0 && Double.compare( drag, m.drag ) == 0 &&
+                color.getRGB() == m.color.getRGB() && flags == m.flags;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Double.hashCode( mass );
+        hash = hash * 31 + Double.hashCode( radius );
+        hash = hash * 31 + Double.hashCode( invSpring );
+        hash = hash * 31 + Double.hashCode( drag );
+        hash = hash * 31 + color.getRGB();
+        return hash * 31 + flags;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder bldr = new StringBuilder();
+        bldr.append( super.toString() ).append( '[' );
+        bldr.append( "id=" ).append( id ).append( ',' );
+        bldr.append( "mass=" ).append( mass ).append( ',' );
+        bldr.append( "radius=" ).append( radius ).append( ',' );
+        bldr.append( "spring=" ).append( 1 / invSpring ).append( ',' );
+        bldr.append( "drag=" ).append( drag ).append( ',' );
+        bldr.append( "color=" ).append( color.getRGB() ).append( ',' );
+        bldr.append( "flags=" ).append( flags ).append( ']' );
+        return bldr.toString();
+    }
+
+
+    //interns a shared material, filling its row and column of the pair table when it is new and the table has room
+    static Material intern( double mass, double radius, double invSpring, double drag, Color color, int flags ) {
+        return intern( mass, radius, invSpring, drag, color, flags, true );
+    }
+
+    //interns a material, only shared materials are given rows of the pair table
+    private static synchronized Material intern( double mass, double radius, double invSpring, double drag, Color color,
+            int flags, boolean shared ) {
+        Material key = new Material( -1, mass, radius, invSpring, drag, color, flags );
+        Material material = REGISTRY.get( key );
+        if( material == null ) {
+            boolean dense = shared && nextDense < DENSE_MATERIALS;
+            if( !dense && nextSparse == Integer.MAX_VALUE ) {
+                throw new IllegalStateException( "Material ids are exhausted" );
+            }
+            int id = dense ? nextDense++ : nextSparse++;
+            material = new Material( id, mass, radius, invSpring, drag, color, flags );
+            Material[] current = materials;
+            if( id >= current.length ) {
+                current = Arrays.copyOf( current, (int)Math.min( current.length * 2L, Integer.MAX_VALUE ) );
+            }
+            current[id] = material;
+            if( dense ) {
+                Table t = table;
+                if( id >> t.shift != 0 ) {
+                    t = new Table( t );
+                }
+                t.register( material );
+                table = t;
+            }
+            REGISTRY.put( material, material );
+            materials = current;
+        }
+        return material;
+    }
+
+    //spring coefficient of a pair, 1 / ( mass * n.mass * ( invSpring + n.invSpring ) ), zero for collisionless pairs
+    static double spring( Material m, Material n ) {
+        if( ( ( m.flags | n.flags ) & ( Particle.COLLISIONLESS | Particle.TRACER ) ) != 0 ) {
+            return 0;
+        }
+        return 1 / ( m.mass * n.mass * ( m.invSpring + n.invSpring ) );
+    }
+
+    //drag coefficient of a pair, drag * n.drag, zero for collisionless pairs
+    static double drag( Material m, Material n ) {
+        if( ( ( m.flags | n.flags ) & ( Particle.COLLISIONLESS | Particle.TRACER ) ) != 0 ) {
+            return 0;
+        }
+        return m.drag * n.drag;
+    }
+
+
+    //table of per material pair coefficients read by the engines, for materials with ids below the dense limit
+    static final class Table {
+
+        final int shift;//pair index is ( a << shift ) | b
+        final Material[] materials;
+        final double[] spring;//per pair 1 / ( mass * p.mass * ( invSpring + p.invSpring ) ), zero for collisionless pairs
+        final double[] drag;//per pair drag * p.drag, zero for collisionless pairs
+        final double[] core;//per pair 1 / ( radius + p.radius )^3 used for the decreasing gravity when overlapping
+
+
+        //constructor for an empty table
+        private Table( int shift ) {
+            this.shift = shift;
+            int rows = 1 << shift;
+            materials = new Material[rows];
+            spring = new double[rows * rows];
+            drag = new double[rows * rows];
+            core = new double[rows * rows];
+        }
+
+        //constructor for a copy of a table with twice the rows
+        private Table( Table t ) {
+            this( t.shift + 1 );
+            int rows = 1 << t.shift;
+            for( int i = 0; i < rows && t.materials[i] != null; i++ ) {
+                register( t.materials[i] );
+            }
+        }
+
+        //returns the pair index of two materials, or -1 if either has no row, in which case the coefficients are
+        //computed from the materials themselves
+        int pair( int a, int b ) {
+            return ( a | b ) >> shift == 0 ? a << shift | b : -1;
+        }
+
+        //writes a material's coefficients against every registered material
+        private void register( Material m ) {
+            int a = m.id;
+            materials[a] = m;
+            for( int b = 0; b <= a; b++ ) {
+                Material n = materials[b];
+                double totRad = m.radius + n.radius;
+                double cr = 1 / ( totRad * totRad * totRad );
+                double sp = spring( m, n ), dr = drag( m, n );
+                int ab = a << shift | b, ba = b << shift | a;
+                spring[ab] = spring[ba] = sp;
+                drag[ab] = drag[ba] = dr;
+                core[ab] = core[ba] = cr;
+            }
+        }
+    }
+}
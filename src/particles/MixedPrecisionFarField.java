@@ -0,0 +1,215 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: far field gravity method which computes pair forces in float from block relative positions and sums them in double
+ * Created: 10-19-2026
+ * Status: utility class, finished
+ * Dependencies: FarField, Material, Particle
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+public final class MixedPrecisionFarField implements FarField {
+
+    //particles per block, every block stores its positions relative to its own origin
+    private static final int BLOCK = 128;
+    //bits per axis of the morton codes particles are ordered by before they are cut into blocks, kept clear of the sign bit of the sort keys
+    private static final int MORTON_BITS = 15;
+
+
+    //columns in block order, positions and radii in float relative to the origin of their block
+    private float[] x, y, radius, source;
+    //double accumulators of the accelerations and potentials in block order
+    private double[] xAccel, yAccel, potential;
+    //float copies and sums of the target block, short enough to stay in cache and flushed to the double sums after every source block
+    private final float[] tileX, tileY, tileRadius, tileXAccel, tileYAccel, tilePotential;
+    //block origins and bounds into the columns, source blocks come first and tracer blocks after them
+    private double[] originX, originY;
+    private int[] blockStart;
+    private int blocks, sourceBlocks;
+    //particle index of each column entry and the sort keys that produced the order
+    private int[] order;
+    private long[] keys;
+    //largest distance of a particle from its block origin in the last tick, shows how compact the blocks were
+    private volatile double maxOffset;
+
+
+    //constructor
+    public MixedPrecisionFarField() {
+        x = y = radius = source = new float[0];
+        tileX = new float[BLOCK];
+        tileY = new float[BLOCK];
+        tileRadius = new float[BLOCK];
+        tileXAccel = new float[BLOCK];
+        tileYAccel = new float[BLOCK];
+        tilePotential = new float[BLOCK];
+        xAccel = yAccel = potential = originX = originY = new double[0];
+        blockStart = order = new int[0];
+        keys = new long[0];
+        blocks = sourceBlocks = 0;
+        maxOffset = 0;
+    }
+
+
+    //sums the gravity of every source block on every block, mirroring the softened core of the direct sum
+    @Override
+    public void gravitate( List<Particle> particles, int sources ) {
+        int size = particles.size();
+        if( size == 0 ) {
+            return;
+        }
+        load( particles, sources );
+        Arrays.fill( xAccel, 0, size, 0 );
+        Arrays.fill( yAccel, 0, size, 0 );
+        Arrays.fill( potential, 0, size, 0 );
+        for( int b = 0; b < blocks; b++ ) {
+            gather( b );
+        }
+        //every source pair was summed from both sides, tracers hold no potential like in the direct sum
+        int sourceEnd = blockStart[sourceBlocks];
+        for( int k = 0; k < size; k++ ) {
+            particles.get( order[k] ).accelerate( xAccel[k], yAccel[k], k < sourceEnd ? potential[k] / 2 : 0 );
+        }
+    }
+
+    @Override
+    public String getStatus() {
+        return String.format( "Mixed Precision Gravity: %d blocks --- Largest Block Offset: %.3g", blocks, maxOffset );
+    }
+
+
+    //private utility methods
+    //orders sources and tracers along a morton curve, cuts them into blocks and stores positions relative to each block origin
+    private void load( List<Particle> particles, int sources ) {
+        int size = particles.size();
+        if( order.length < size ) {
+            int len = Math.max( size, order.length * 2 );
+            x = new float[len];
+            y = new float[len];
+            radius = new float[len];
+            source = new float[len];
+            xAccel = new double[len];
+            yAccel = new double[len];
+            potential = new double[len];
+            order = new int[len];
+            keys = new long[len];
+            int maxBlocks = len / BLOCK + 2;
+            originX = new double[maxBlocks];
+            originY = new double[maxBlocks];
+            blockStart = new int[ maxBlocks + 1 ];
+        }
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for( int i = 0; i < size; i++ ) {
+            Particle p = particles.get( i );
+            minX = Math.min( minX, p.getXPosition() );
+            minY = Math.min( minY, p.getYPosition() );
+            maxX = Math.max( maxX, p.getXPosition() );
+            maxY = Math.max( maxY, p.getYPosition() );
+        }
+        double scale = ( ( 1 << MORTON_BITS ) - 1 ) / Math.max( Math.max( maxX - minX, maxY - minY ), Double.MIN_NORMAL );
+        for( int i = 0; i < size; i++ ) {
+            Particle p = particles.get( i );
+            long code = interleave( (int)( ( p.getXPosition() - minX ) * scale ) ) | interleave( (int)( ( p.getYPosition() - minY ) * scale ) ) << 1;
+            keys[i] = code << 32 | i;
+        }
+        //sources and tracers are sorted apart so no block mixes them
+        Arrays.sort( keys, 0, sources );
+        Arrays.sort( keys, sources, size );
+        blocks = 0;
+        cut( 0, sources );
+        sourceBlocks = blocks;
+        cut( sources, size );
+        blockStart[blocks] = size;
+        double offset = 0;
+        for( int b = 0; b < blocks; b++ ) {
+            int from = blockStart[b], to = blockStart[ b + 1 ];
+            double cx = 0, cy = 0;
+            for( int k = from; k < to; k++ ) {
+                int i = (int)keys[k];
+                order[k] = i;
+                Particle p = particles.get( i );
+                cx += p.getXPosition();
+                cy += p.getYPosition();
+            }
+            cx /= to - from;
+            cy /= to - from;
+            originX[b] = cx;
+            originY[b] = cy;
+            for( int k = from; k < to; k++ ) {
+                Particle p = particles.get( order[k] );
+                Material m = p.getMaterial();
+                x[k] = (float)( p.getXPosition() - cx );
+                y[k] = (float)( p.getYPosition() - cy );
+                radius[k] = (float)m.getRadius();
+                source[k] = ( m.getFlags() & Particle.TRACER ) == 0 ? (float)m.getMass() : 0;
+                offset = Math.max( offset, Math.hypot( x[k], y[k] ) );
+            }
+        }
+        maxOffset = offset;
+    }
+
+    //starts blocks of at most the block size over a range of the sorted keys
+    private void cut( int from, int to ) {
+        for( int k = from; k < to; k += BLOCK ) {
+            blockStart[ blocks++ ] = k;
+        }
+    }
+
+    //adds the gravity of every source block to one target block, each pair is computed from both sides instead of
+    //sharing it, so the inner loop only writes its own target and runs over plain float columns
+    private void gather( int b ) {
+        int from = blockStart[b], len = blockStart[ b + 1 ] - from;
+        System.arraycopy( x, from, tileX, 0, len );
+        System.arraycopy( y, from, tileY, 0, len );
+        System.arraycopy( radius, from, tileRadius, 0, len );
+        for( int a = 0; a < sourceBlocks; a++ ) {
+            Arrays.fill( tileXAccel, 0 );
+            Arrays.fill( tileYAccel, 0 );
+            Arrays.fill( tilePotential, 0 );
+            //the blocks are compact, so the origin difference carries the large part of every separation
+            float xOffset = (float)( originX[a] - originX[b] );
+            float yOffset = (float)( originY[a] - originY[b] );
+            for( int i = blockStart[a], to = blockStart[ a + 1 ]; i < to; i++ ) {
+                float xi = x[i] + xOffset, yi = y[i] + yOffset, ri = radius[i], si = source[i];
+                //the block on itself skips each particle's pair with itself, splitting the range keeps the loops branch free
+                int self = a == b ? i - from : len;
+                add( xi, yi, ri, si, 0, self );
+                add( xi, yi, ri, si, self + 1, len );
+            }
+            for( int j = 0; j < len; j++ ) {
+                xAccel[ from + j ] += tileXAccel[j];
+                yAccel[ from + j ] += tileYAccel[j];
+                potential[ from + j ] += tilePotential[j];
+            }
+        }
+    }
+
+    //adds the gravity of one source particle to a range of the target block
+    private void add( float xi, float yi, float ri, float si, int from, int to ) {
+        for( int j = from; j < to; j++ ) {
+            float xDiff = tileX[j] - xi;
+            float yDiff = tileY[j] - yi;
+            float distSq = xDiff * xDiff + yDiff * yDiff;
+            //overlapping pairs use the contact distance, which gives the softened core without a branch
+            float inv = 1 / Math.max( (float)Math.sqrt( distSq ), ri + tileRadius[j] );
+            float force = -inv * inv * inv * si;
+            tileXAccel[j] += force * xDiff;
+            tileYAccel[j] += force * yDiff;
+            tilePotential[j] += ( distSq * inv * inv - 3 ) * inv / 2 * si;
+        }
+    }
+
+    //spreads the low bits of a value to the even bits of a long
+    private static long interleave( int value ) {
+        long v = value & 0xFFFFFFFFL;
+        v = ( v | v << 16 ) & 0x0000FFFF0000FFFFL;
+        v = ( v | v << 8 ) & 0x00FF00FF00FF00FFL;
+        v = ( v | v << 4 ) & 0x0F0F0F0F0F0F0F0FL;
+        v = ( v | v << 2 ) & 0x3333333333333333L;
+        v = ( v | v << 1 ) & 0x5555555555555555L;
+        return v;
+    }
+}
@@ -0,0 +1,147 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: simulation engine which steps the contact forces on inner sub-steps and the gravity on the outer step
+ * Created: 10-19-2026
+ * Status: engine class, finished
+ * Dependencies: Environment, FarField, NeighborList, Particle, Simulator, SleepIslands, StepController
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.List;
+
+public final class MultiStepSimulator extends Simulator {
+
+    //flags of particles which never take part in contact forces
+    private static final int NO_CONTACT = Particle.COLLISIONLESS | Particle.TRACER;
+
+
+    //verlet lists of the contact pairs, reused across sub-steps and ticks
+    private final NeighborList neighbors;
+    //settled groups of touching particles that skip their contact forces
+    private final SleepIslands islands;
+    //gravity accelerations from the end of the last outer step
+    private double[] slowX, slowY;
+    //if the stored gravity no longer matches the particle list
+    private boolean stale;
+
+
+    //package private constructor - use Simulator.MULTI_STEP
+    MultiStepSimulator() {
+        neighbors = new NeighborList();
+        islands = new SleepIslands();
+        slowX = slowY = new double[0];
+        stale = true;
+    }
+
+
+    //r-respa impulse integration: half kick with gravity, contact sub-steps, half kick with the new gravity
+    @Override
+    protected void simulate( double timeStep ) {
+        List<Particle> particles = environment.particles;
+        int size = particles.size();
+        double half = timeStep / 2;
+        double sleepSpeed = environment.getSleepSpeed();
+        islands.begin( size, sleepSpeed );
+        if( stale || slowX.length < size ) {
+            environment.getFarField().gravitate( particles, environment.sources );
+            storeAndKick( particles, half, timeStep );
+            stale = false;
+        } else {
+            for( int i = 0; i < size; i++ ) {
+                if( !islands.asleep( i ) ) {
+                    Particle p = particles.get( i );
+                    p.accelerate( slowX[i], slowY[i] );
+                    p.kick( half );
+                }
+            }
+            islands.kick( particles, slowX, slowY, half, timeStep );
+        }
+        int subSteps = environment.getSubSteps();
+        boolean measuring = environment.getStepController().isMeasuring();
+        double subStep = timeStep / subSteps;
+        double skin = environment.getSkinRatio() * meanRadius( particles );
+        for( int k = 0; k < subSteps; k++ ) {
+            neighbors.update( particles, skin, NO_CONTACT );
+            //only the last sub-step sums the diagnostics, closest to the positions the gravity is summed at
+            boolean diagnose = measuring && k == subSteps - 1;
+            if( islands.getSleepingParticles() > 0 ) {
+                neighbors.forEachPair( ( i, j ) -> islands.contact( particles, i, j, diagnose ) );
+                islands.wakeMarked();
+                //sleeping particles drop the forces of contacts too slow to wake them and drift with their island
+                for( int i = 0; i < size; i++ ) {
+                    Particle p = particles.get( i );
+                    if( islands.asleep( i ) ) {
+                        p.kick( 0 );
+                    }
+                    p.update( subStep );
+                }
+            } else {
+                neighbors.forEachPair( ( i, j ) -> particles.get( i ).contact( particles.get( j ), diagnose ) );
+                for( int i = 0; i < size; i++ ) {
+                    particles.get( i ).update( subStep );
+                }
+            }
+        }
+        environment.getFarField().gravitate( particles, environment.sources );
+        storeAndKick( particles, half, timeStep );
+        islands.settle( particles, neighbors, slowX, slowY );
+    }
+
+    @Override
+    protected void acceptEnv() {
+        stale = true;
+        neighbors.invalidate();
+        islands.reset( environment.particles.size() );
+    }
+
+    @Override
+    protected void disposeEnv() {
+        slowX = slowY = new double[0];
+        stale = true;
+        neighbors.invalidate();
+        islands.reset( 0 );
+    }
+
+    @Override
+    public String getStatus() {
+        String status = String.format( "Neighbor List Rebuilds: %.1f%% of sub-steps --- Average Neighbors: %.2f", 
+                neighbors.getRebuildRate() * 100, neighbors.getAverageLength() );
+        if( environment != null && environment.getSleepSpeed() > 0 ) {
+            status += String.format( " --- Sleeping: %d particles in %d islands", islands.getSleepingParticles(), islands.getSleepingIslands() );
+        }
+        String far = environment == null ? "" : environment.getFarField().getStatus();
+        return far.isEmpty() ? status : status + " --- " + far;
+    }
+
+
+    //private utility methods
+    //returns the mean radius of the particles taking part in contacts
+    private static double meanRadius( List<Particle> particles ) {
+        double total = 0;
+        int count = 0;
+        for( Particle p : particles ) {
+            if( ( p.getFlags() & NO_CONTACT ) == 0 ) {
+                total += p.getRadius();
+                count++;
+            }
+        }
+        return count == 0 ? 0 : total / count;
+    }
+
+    //stores the accumulated gravity for the next outer step and applies half of it, rigidly to sleeping islands
+    private void storeAndKick( List<Particle> particles, double half, double timeStep ) {
+        int size = particles.size();
+        if( slowX.length < size ) {
+            slowX = new double[size];
+            slowY = new double[size];
+        }
+        for( int i = 0; i < size; i++ ) {
+            Particle p = particles.get( i );
+            slowX[i] = p.getXAccel();
+            slowY[i] = p.getYAccel();
+            p.kick( islands.asleep( i ) ? 0 : half );
+        }
+        islands.kick( particles, slowX, slowY, half, timeStep );
+    }
+}
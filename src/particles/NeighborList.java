@@ -0,0 +1,153 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for verlet neighbor lists which are reused across ticks until particles move past the skin distance
+ * Created: 10-19-2026
+ * Status: utility class, finished
+ * Dependencies: Particle, SpatialGrid
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+public final class NeighborList {
+
+    //weight of the newest tick in the averaged rebuild rate
+    private static final double RATE_WEIGHT = 0.02;
+
+
+    //grid used to find the candidate pairs of each rebuild
+    private final SpatialGrid grid;
+    //pairs within a multiple of the contact distance plus the skin at the last rebuild
+    private int[] pairI, pairJ;
+    private int pairCount;
+    //positions at the last rebuild
+    private double[] refX, refY;
+    private int size;
+    private boolean valid;
+    //statistics
+    private double scale, skin;
+    private long rebuilds, checks;
+    private double rebuildRate;
+
+
+    //constructor
+    public NeighborList() {
+        grid = new SpatialGrid();
+        pairI = pairJ = new int[0];
+        refX = refY = new double[0];
+        pairCount = size = 0;
+        valid = false;
+        scale = 1;
+        skin = 0;
+        rebuilds = checks = 0;
+        rebuildRate = 0;
+    }
+
+
+    //rebuilds the lists if the particles changed or any particle moved more than half the skin, returns if it rebuilt
+    public boolean update( List<Particle> particles, double skin, int excludeFlags ) {
+        return update( particles, 1, skin, excludeFlags );
+    }
+
+    //same as above with pairs listed within a multiple of their contact distance, used for smoothing kernels
+    public boolean update( List<Particle> particles, double scale, double skin, int excludeFlags ) {
+        int size = particles.size();
+        boolean rebuild = !valid || size != this.size || skin != this.skin || scale != this.scale;
+        if( !rebuild ) {
+            double limitSq = skin * skin / 4;
+            for( int i = 0; i < size; i++ ) {
+                Particle p = particles.get( i );
+                double xDiff = p.getXPosition() - refX[i];
+                double yDiff = p.getYPosition() - refY[i];
+                if( xDiff * xDiff + yDiff * yDiff > limitSq ) {
+                    rebuild = true;
+                    break;
+                }
+            }
+        }
+        if( rebuild ) {
+            build( particles, scale, skin, excludeFlags );
+        }
+        checks++;
+        rebuildRate += ( ( rebuild ? 1 : 0 ) - rebuildRate ) * RATE_WEIGHT;
+        return rebuild;
+    }
+
+    //forces a rebuild on the next update, used when the particle list is changed
+    public void invalidate() {
+        valid = false;
+    }
+
+    //passes every listed pair once
+    public void forEachPair( SpatialGrid.PairAction action ) {
+        int[] pi = pairI, pj = pairJ;
+        for( int k = 0, n = pairCount; k < n; k++ ) {
+            action.accept( pi[k], pj[k] );
+        }
+    }
+
+
+    //accessor methods
+    public int getPairCount() {
+        return pairCount;
+    }
+
+    //average number of neighbors in each particle's list
+    public double getAverageLength() {
+        return size == 0 ? 0 : 2.0 * pairCount / size;
+    }
+
+    //averaged fraction of updates which rebuilt the lists
+    public double getRebuildRate() {
+        return rebuildRate;
+    }
+
+    public long getRebuilds() {
+        return rebuilds;
+    }
+
+    public long getChecks() {
+        return checks;
+    }
+
+
+    //private utility methods
+    //collects the pairs within the scaled contact distance plus the skin and records the positions
+    private void build( List<Particle> particles, double scale, double skin, int excludeFlags ) {
+        size = particles.size();
+        this.scale = scale;
+        this.skin = skin;
+        if( refX.length < size ) {
+            refX = new double[size];
+            refY = new double[size];
+        }
+        for( int i = 0; i < size; i++ ) {
+            Particle p = particles.get( i );
+            refX[i] = p.getXPosition();
+            refY[i] = p.getYPosition();
+        }
+        pairCount = 0;
+        grid.buildScaled( particles, scale, skin, excludeFlags );
+        grid.forEachPair( ( i, j ) -> {
+            Particle p1 = particles.get( i );
+            Particle p2 = particles.get( j );
+            double xDiff = refX[i] - refX[j];
+            double yDiff = refY[i] - refY[j];
+            double reach = ( p1.getRadius() + p2.getRadius() ) * scale + skin;
+            if( xDiff * xDiff + yDiff * yDiff <= reach * reach ) {
+                if( pairCount == pairI.length ) {
+                    int len = Math.max( 16, pairCount * 2 );
+                    pairI = Arrays.copyOf( pairI, len );
+                    pairJ = Arrays.copyOf( pairJ, len );
+                }
+                pairI[pairCount] = i;
+                pairJ[pairCount] = j;
+                pairCount++;
+            }
+        } );
+        valid = true;
+        rebuilds++;
+    }
+}
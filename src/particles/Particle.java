@@ -4,7 +4,7 @@ package particles;
  * Description: class for holding the coordinates and state for a single simulation particle
  * Created: 3-27-2022
  * Status: entity class, finished
- * Dependencies: none
+ * Dependencies: Material, ParticleStore, RscLoader
  * Licensed under GNU v3, see src/particles/Particles.java for more details
  */
 
@@ -21,12 +21,19 @@ public final class Particle implements Cloneable, Externalizable {
     //serial version uid
     private static final long serialVersionUID = 5348502945034859632L;
     
+    //species flags which engines and renderers honor
+    public static final int COLLISIONLESS = 1;//skips contact spring and drag forces
+    public static final int TRACER = 2;//feels gravity but does not source it, implies collisionless
+    public static final int HIDDEN = 4;//skipped by the renderer
     
-    //private fields for holding data abount the particle
-    private double mass, radius, invSpring, drag;
-    private Color color;
+    
+    //private fields for holding data abount the particle, physical properties are shared through its material table entry
+    private int material;
+    private transient double radius, source;//copies of the material radius and gravity source mass for the pair loop
     private double xPosition, yPosition, xVelocity, yVelocity;
     private transient double xAccel, yAccel;
+    private transient double potential, dissipation, torque;//pair potential, drag power and drag torque per unit mass
+    private transient int pairs, contacts, forcedSteps;//contact list pairs, touching pairs and forced sub-steps for the cost profiler
     
     
     //constructor  0.00066
@@ -42,11 +49,12 @@ public final class Particle implements Cloneable, Externalizable {
     //constructor
     public Particle( double mass, double radius, double spring, double drag, Color color, 
             double xPosition, double yPosition, double xVelocity, double yVelocity ) {
-        this.mass = mass;
-        this.radius = radius;
-        this.invSpring = 1 / spring;
-        this.drag = drag;
-        this.color = color;
+        this( Material.of( mass, radius, spring, drag, color, 0 ), xPosition, yPosition, xVelocity, yVelocity );
+    }
+    
+    //constructor
+    public Particle( Material material, double xPosition, double yPosition, double xVelocity, double yVelocity ) {
+        setMaterial( material );
         this.xPosition = xPosition;
         this.yPosition = yPosition;
         this.xVelocity = xVelocity;
@@ -56,6 +64,13 @@ public final class Particle implements Cloneable, Externalizable {
     
     //calculates interaction between two particles and returns the distance squared
     public double interact( Particle p ) {
+        return interact( p, true );
+    }
+    
+    //calculates interaction between two particles, summing the potential, drag power and torque only if asked to, so
+    //engines which evaluate the pairs more than once per tick count them once
+    double interact( Particle p, boolean diagnose ) {
+        Material.Table table = Material.table;
         double xDiff = xPosition - p.xPosition;
 	double yDiff = yPosition - p.yPosition;
         double distSq = xDiff * xDiff + yDiff * yDiff;
@@ -64,24 +79,176 @@ public final class Particle implements Cloneable, Externalizable {
         double force, forceX, forceY;
         //test for contact between particles
         if( dist <= totRad ) {
-            //linear restoring spring force and decreasign gravity
-            force = ( totRad / dist - 1 ) / ( mass * p.mass * ( invSpring + p.invSpring ) ) - 1 / ( totRad * totRad * totRad );
+            contacts++;
+            p.contacts++;
+            //linear restoring spring force and decreasign gravity, coefficients are zero for collisionless pairs
+            int pair = table.pair( material, p.material );
+            double spring, totDrag, core;
+            if( pair >= 0 ) {
+                spring = table.spring[pair];
+                totDrag = table.drag[pair];
+                core = table.core[pair];
+            } else {
+                //materials without a table row are rare one-offs, their coefficients are computed per contact
+                Material m = Material.get( material ), n = Material.get( p.material );
+                spring = Material.spring( m, n );
+                totDrag = Material.drag( m, n );
+                core = 1 / ( totRad * totRad * totRad );
+            }
+            force = ( totRad / dist - 1 ) * spring - core;
             /*implemented simple drag calculations - drag calculation which takes into account contact area and rVelocity
             is too computationally heavy, so it was not added to this simulation. this simpler implementation is slightly
             less accurate, which results in the simulation system losing any angular velocity due to this drag calcuation*/
-            double totDrag = drag * p.drag;
-            forceX = ( force * xDiff + totDrag * ( p.xVelocity - xVelocity ) );
-            forceY = ( force * yDiff + totDrag * ( p.yVelocity - yVelocity ) );
+            double xvDiff = p.xVelocity - xVelocity;
+            double yvDiff = p.yVelocity - yVelocity;
+            forceX = ( force * xDiff + totDrag * xvDiff );
+            forceY = ( force * yDiff + totDrag * yvDiff );
+            //stored spring energy plus the overlapping gravity well, which meets -1 / dist at the contact distance
+            if( diagnose ) {
+                double compression = totRad - dist;
+                potential += ( compression * compression * spring + ( distSq - totRad * totRad ) * core ) / 2 * p.source
+                        - p.source / totRad;
+                dissipation += totDrag * ( xvDiff * xvDiff + yvDiff * yvDiff ) * p.source;
+                torque += totDrag * ( xDiff * yvDiff - yDiff * xvDiff ) * p.source;
+            }
         } else {
-            //normal gravity calculations
+            //normal gravity calculations, the potential -1 / dist reuses the force term
             force = -1 / ( distSq * dist );
             forceX = force * xDiff;
             forceY = force * yDiff;
+            if( diagnose ) {
+                potential += force * distSq * p.source;
+            }
+        }
+        xAccel += forceX * p.source;
+        yAccel += forceY * p.source;
+        p.xAccel -= forceX * source;
+        p.yAccel -= forceY * source;
+        return dist;
+    }
+    
+    //calculates the interactions of a particle state of a store with a range of the states after it, with the same forces
+    //and summing order as interact, so engines can simulate stores without particle objects. the row state and its
+    //acceleration are read once, pairs of tracers are skipped and the diagnostics are left to particles
+    static void interact( ParticleStore store, int i, int from, int to ) {
+        int material = store.getMaterialId( i );
+        Material m = Material.get( material );
+        boolean tracer = ( m.getFlags() & TRACER ) != 0;
+        double radius = m.getRadius(), source = tracer ? 0 : m.getMass();
+        double xPosition = store.getXPosition( i ), yPosition = store.getYPosition( i );
+        double xVelocity = store.getXVelocity( i ), yVelocity = store.getYVelocity( i );
+        double xAccel = store.getXAccel( i ), yAccel = store.getYAccel( i );
+        Material.Table table = Material.table;
+        for( int j = from; j < to; j++ ) {
+            int pMaterial = store.getMaterialId( j );
+            Material n = Material.get( pMaterial );
+            boolean pTracer = ( n.getFlags() & TRACER ) != 0;
+            if( tracer && pTracer ) {
+                continue;
+            }
+            double pSource = pTracer ? 0 : n.getMass();
+            double xDiff = xPosition - store.getXPosition( j );
+            double yDiff = yPosition - store.getYPosition( j );
+            double distSq = xDiff * xDiff + yDiff * yDiff;
+            double dist = Math.sqrt( distSq );
+            double totRad = radius + n.getRadius();
+            double force, forceX, forceY;
+            if( dist <= totRad ) {
+                int pair = table.pair( material, pMaterial );
+                double spring, totDrag, core;
+                if( pair >= 0 ) {
+                    spring = table.spring[pair];
+                    totDrag = table.drag[pair];
+                    core = table.core[pair];
+                } else {
+                    spring = Material.spring( m, n );
+                    totDrag = Material.drag( m, n );
+                    core = 1 / ( totRad * totRad * totRad );
+                }
+                force = ( totRad / dist - 1 ) * spring - core;
+                forceX = ( force * xDiff + totDrag * ( store.getXVelocity( j ) - xVelocity ) );
+                forceY = ( force * yDiff + totDrag * ( store.getYVelocity( j ) - yVelocity ) );
+            } else {
+                force = -1 / ( distSq * dist );
+                forceX = force * xDiff;
+                forceY = force * yDiff;
+            }
+            xAccel += forceX * pSource;
+            yAccel += forceY * pSource;
+            store.accelerate( j, -forceX * source, -forceY * source );
+        }
+        store.setAccel( i, xAccel, yAccel );
+    }
+    
+    //calculates only the long range gravity between two particles and returns the distance
+    public double gravitate( Particle p ) {
+        double xDiff = xPosition - p.xPosition;
+        double yDiff = yPosition - p.yPosition;
+        double distSq = xDiff * xDiff + yDiff * yDiff;
+        double dist = Math.sqrt( distSq );
+        double totRad = radius + p.radius;
+        //decreasing gravity when overlapping, the same term as the contact branch of interact
+        double force;
+        if( dist <= totRad ) {
+            force = -1 / ( totRad * totRad * totRad );
+            potential += ( ( distSq - totRad * totRad ) * -force / 2 - 1 / totRad ) * p.source;
+        } else {
+            force = -1 / ( distSq * dist );
+            potential += force * distSq * p.source;
+        }
+        double forceX = force * xDiff;
+        double forceY = force * yDiff;
+        xAccel += forceX * p.source;
+        yAccel += forceY * p.source;
+        p.xAccel -= forceX * source;
+        p.yAccel -= forceY * source;
+        return dist;
+    }
+    
+    //calculates only the spring and drag forces between two particles in contact and returns the distance
+    public double contact( Particle p ) {
+        return contact( p, true );
+    }
+    
+    //calculates only the spring and drag forces, summing the spring potential, drag power and torque only if asked to
+    double contact( Particle p, boolean diagnose ) {
+        double xDiff = xPosition - p.xPosition;
+        double yDiff = yPosition - p.yPosition;
+        double dist = Math.sqrt( xDiff * xDiff + yDiff * yDiff );
+        double totRad = radius + p.radius;
+        pairs++;
+        p.pairs++;
+        if( dist <= totRad ) {
+            contacts++;
+            p.contacts++;
+            Material.Table table = Material.table;
+            int pair = table.pair( material, p.material );
+            double spring, totDrag;
+            if( pair >= 0 ) {
+                spring = table.spring[pair];
+                totDrag = table.drag[pair];
+            } else {
+                Material m = Material.get( material ), n = Material.get( p.material );
+                spring = Material.spring( m, n );
+                totDrag = Material.drag( m, n );
+            }
+            double force = ( totRad / dist - 1 ) * spring;
+            double xvDiff = p.xVelocity - xVelocity;
+            double yvDiff = p.yVelocity - yVelocity;
+            double forceX = ( force * xDiff + totDrag * xvDiff );
+            double forceY = ( force * yDiff + totDrag * yvDiff );
+            //the gravity of the pair is summed apart from the contact forces, so only the spring energy is stored here
+            if( diagnose ) {
+                double compression = totRad - dist;
+                potential += compression * compression * spring / 2 * p.source;
+                dissipation += totDrag * ( xvDiff * xvDiff + yvDiff * yvDiff ) * p.source;
+                torque += totDrag * ( xDiff * yvDiff - yDiff * xvDiff ) * p.source;
+            }
+            xAccel += forceX * p.source;
+            yAccel += forceY * p.source;
+            p.xAccel -= forceX * source;
+            p.yAccel -= forceY * source;
         }
-        xAccel += forceX * p.mass;
-        yAccel += forceY * p.mass;
-        p.xAccel -= forceX * mass;
-        p.yAccel -= forceY * mass;
         return dist;
     }
     
@@ -99,52 +266,133 @@ public final class Particle implements Cloneable, Externalizable {
         xAccel = yAccel = 0;
     }
     
+    //applies the accumulated acceleration to the velocity without moving the particle
+    public void kick( double timeStep ) {
+        xVelocity += xAccel * timeStep;
+        yVelocity += yAccel * timeStep;
+        xAccel = yAccel = 0;
+    }
+    
+    //adds to the accumulated acceleration
+    public void accelerate( double xAccel, double yAccel ) {
+        this.xAccel += xAccel;
+        this.yAccel += yAccel;
+    }
+    
+    //adds to the accumulated acceleration and pair potential, for far field methods that sum gravity outside of particles
+    void accelerate( double xAccel, double yAccel, double potential ) {
+        this.xAccel += xAccel;
+        this.yAccel += yAccel;
+        this.potential += potential;
+    }
+    
+    //clears the potential, drag power and drag torque summed by the pair loop
+    public void clearDiagnostics() {
+        potential = dissipation = torque = 0;
+    }
+    
+    //counts a sub-step that this particle's pair forced the engine to take
+    void countForcedStep() {
+        forcedSteps++;
+    }
+    
+    //clears the pair evaluations, contacts and forced sub-steps counted since the last call
+    public void clearWork() {
+        pairs = contacts = forcedSteps = 0;
+    }
+    
     //serializes particle
     public void write( DataOutput out ) throws IOException {
-        out.writeDouble( mass );
-        out.writeDouble( radius );
-        out.writeDouble( invSpring );
-        out.writeDouble( drag );
-        out.writeInt( color.getRGB() );
+        write( out, getMaterial(), xPosition, yPosition, xVelocity, yVelocity );
+    }
+    
+    //serializes a particle state, shared with packed snapshots
+    static void write( DataOutput out, Material m, double xPosition, double yPosition, 
+            double xVelocity, double yVelocity ) throws IOException {
+        out.writeDouble( m.getMass() );
+        out.writeDouble( m.getRadius() );
+        out.writeDouble( m.getInvSpring() );
+        out.writeDouble( m.getDrag() );
+        out.writeInt( m.getColor().getRGB() );
         out.writeDouble( xPosition );
         out.writeDouble( yPosition );
         out.writeDouble( xVelocity );
         out.writeDouble( yVelocity );
+        out.writeInt( m.getFlags() );
+    }
+    
+    //deserializes a particle state into a store, shared with packed snapshots
+    static void read( DataInput in, int version, ParticleStore out, int i ) throws IOException {
+        double mass = in.readDouble();
+        double radius = in.readDouble();
+        double invSpring = in.readDouble();
+        double drag = in.readDouble();
+        Color color = new Color( in.readInt(), true );
+        double xPosition = in.readDouble();
+        double yPosition = in.readDouble();
+        double xVelocity = in.readDouble();
+        double yVelocity = in.readDouble();
+        int flags = version >= RscLoader.CURRENT_PSOBJ_VERSION ? in.readInt() : 0;
+        out.set( i, Material.intern( mass, radius, invSpring, drag, color, flags ), xPosition, yPosition, xVelocity, yVelocity );
     }
     
     //deserialized particle
     public void read( DataInput in ) throws IOException {
-        mass = in.readDouble();
-        radius = in.readDouble();
-        invSpring = in.readDouble();
-        drag = in.readDouble();
-        color = new Color( in.readInt(), true );
+        read( in, RscLoader.CURRENT_PSOBJ_VERSION );
+    }
+    
+    //deserialized particle stored with a given psobj version
+    public void read( DataInput in, int version ) throws IOException {
+        double mass = in.readDouble();
+        double radius = in.readDouble();
+        double invSpring = in.readDouble();
+        double drag = in.readDouble();
+        Color color = new Color( in.readInt(), true );
         xPosition = in.readDouble();
         yPosition = in.readDouble();
         xVelocity = in.readDouble();
         yVelocity = in.readDouble();
+        int flags = version >= RscLoader.CURRENT_PSOBJ_VERSION ? in.readInt() : 0;
+        setMaterial( Material.intern( mass, radius, invSpring, drag, color, flags ) );
     }
     
     
-    //mutator methods
+    //mutator methods, physical properties are overridden by switching to a derived one-off material
+    public void setMaterial( Material material ) {
+        this.material = material.getId();
+        this.radius = material.getRadius();
+        this.source = ( material.getFlags() & TRACER ) == 0 ? material.getMass() : 0;
+    }
+    
     public void setMass( double mass ) {
-        this.mass = mass;
+        Material m = getMaterial();
+        setMaterial( m.override( mass, m.getRadius(), m.getInvSpring(), m.getDrag(), m.getColor(), m.getFlags() ) );
     }
     
     public void setRadius( double radius ) {
-        this.radius = radius;
+        Material m = getMaterial();
+        setMaterial( m.override( m.getMass(), radius, m.getInvSpring(), m.getDrag(), m.getColor(), m.getFlags() ) );
     }
     
     public void setSpring( double spring ) {
-        this.invSpring = 1 / spring;
+        Material m = getMaterial();
+        setMaterial( m.override( m.getMass(), m.getRadius(), 1 / spring, m.getDrag(), m.getColor(), m.getFlags() ) );
     }
     
     public void setDrag( double drag ) {
-        this.drag = drag;
+        Material m = getMaterial();
+        setMaterial( m.override( m.getMass(), m.getRadius(), m.getInvSpring(), drag, m.getColor(), m.getFlags() ) );
     }
 
     public void setColor( Color color ) {
-        this.color = color;
+        Material m = getMaterial();
+        setMaterial( m.override( m.getMass(), m.getRadius(), m.getInvSpring(), m.getDrag(), color, m.getFlags() ) );
+    }
+    
+    //flags should only be changed through queued operations so engines can regroup gravity sources
+    public void setFlags( int flags ) {
+        Material m = getMaterial();
+        setMaterial( m.override( m.getMass(), m.getRadius(), m.getInvSpring(), m.getDrag(), m.getColor(), flags ) );
     }
     
     public void setXPosition( double xPosition ) {
@@ -164,8 +412,16 @@ public final class Particle implements Cloneable, Externalizable {
     }
 
     //accessor methods
+    public Material getMaterial() {
+        return Material.get( material );
+    }
+    
+    public int getMaterialId() {
+        return material;
+    }
+    
     public double getMass() {
-        return mass;
+        return getMaterial().getMass();
     }
     
     public double getRadius() {
@@ -173,15 +429,19 @@ public final class Particle implements Cloneable, Externalizable {
     }
 
     public double getSpring() {
-        return invSpring;
+        return getMaterial().getInvSpring();
     }
     
     public double getDrag() {
-        return drag;
+        return getMaterial().getDrag();
     }
 
     public Color getColor() {
-        return color;
+        return getMaterial().getColor();
+    }
+    
+    public int getFlags() {
+        return getMaterial().getFlags();
     }
     
     public double getXPosition() {
@@ -200,17 +460,52 @@ public final class Particle implements Cloneable, Externalizable {
         return yVelocity;
     }
     
+    public double getXAccel() {
+        return xAccel;
+    }
+    
+    public double getYAccel() {
+        return yAccel;
+    }
+    
+    //potential energy per unit mass from the pairs where this particle came first, so each pair is counted once
+    public double getPotential() {
+        return potential;
+    }
+    
+    //power lost to drag per unit mass from the pairs where this particle came first
+    public double getDissipation() {
+        return dissipation;
+    }
+    
+    //torque of the drag about the origin per unit mass from the pairs where this particle came first
+    public double getTorque() {
+        return torque;
+    }
+    
+    //pairs with this particle evaluated by contact since the work was last cleared, the all pairs engines are not counted
+    //since they evaluate every particle against every other
+    public int getPairs() {
+        return pairs;
+    }
+    
+    //evaluated pairs that were touching
+    public int getContacts() {
+        return contacts;
+    }
+    
+    //sub-steps the engine shortened because of a pair with this particle
+    public int getForcedSteps() {
+        return forcedSteps;
+    }
+    
     
     //overridden externalizable, cloneable, and object methods
     @Override
     public final String toString() {
         StringBuilder bldr = new StringBuilder();
         bldr.append( super.toString() ).append( '[' );
-        bldr.append( "mass=" ).append( mass ).append( ',' );
-        bldr.append( "radius=" ).append( radius ).append( ',' );
-        bldr.append( "spring=" ).append( 1 / invSpring ).append( ',' );
-        bldr.append( "drag=" ).append( drag ).append( ',' );
-        bldr.append( "color=" ).append( color.getRGB() ).append( ',' );
+        bldr.append( "material=" ).append( getMaterial() ).append( ',' );
         bldr.append( "xPosition=" ).append( xPosition ).append( ',' );
         bldr.append( "yPosition=" ).append( yPosition ).append( ',' );
         bldr.append( "xVelocity=" ).append( xVelocity ).append( ',' );
@@ -0,0 +1,350 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for storing particle states off the java heap, optionally backed by a memory mapped file
+ * Created: 10-19-2026
+ * Status: entity class, finished
+ * Dependencies: Material, ParticleStore
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+public final class ParticleArena implements ParticleStore, AutoCloseable {
+
+    //record layout, every field is aligned to its size
+    private static final int X_POSITION = 0, Y_POSITION = 8, X_VELOCITY = 16, Y_VELOCITY = 24, MATERIAL = 32;
+    public static final int RECORD_BYTES = 40;
+    //records per segment, a power of two so indices split with a shift and a mask
+    //segments are 2.5 MB, so memory and file length follow the particle count closely
+    private static final int SEGMENT_SHIFT = 16;
+    private static final int SEGMENT_RECORDS = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_RECORDS - 1;
+    private static final long SEGMENT_BYTES = (long)SEGMENT_RECORDS * RECORD_BYTES;
+    //accelerations summed by the engines during a tick, kept beside each segment in direct memory and never saved
+    private static final int ACCEL_BYTES = 16;
+    //file header: magic, version, particle count, material count and the offset of the material table after the segments
+    public static final int ARENA_MAGIC = 0x5E65A4E4;
+    public static final int ARENA_VERSION = 0x01-0000-00;
+    private static final int HEADER_BYTES = 24;
+    //material table entry: id, mass, radius, inverse spring, drag, color and flags
+    private static final int MATERIAL_BYTES = 4 + 4 * 8 + 2 * 4;
+
+
+    //segments of records, each small enough for a single buffer
+    private ByteBuffer[] segments;
+    private ByteBuffer[] accels;
+    private int segmentCount;
+    private int size;
+    //file channel of a mapped arena, null for a direct arena
+    private final FileChannel channel;
+
+
+    //constructor for an arena in direct memory
+    public ParticleArena() {
+        segments = new ByteBuffer[4];
+        accels = new ByteBuffer[4];
+        segmentCount = 0;
+        size = 0;
+        channel = null;
+    }
+
+    //constructor for an empty arena mapped to a file, so the working set can be larger than memory
+    public ParticleArena( File file ) throws IOException {
+        this( file, false );
+    }
+
+    //constructor for an arena mapped to a file, either emptied or reopened with the particles it held when last saved
+    public ParticleArena( File file, boolean reopen ) throws IOException {
+        segments = new ByteBuffer[4];
+        accels = new ByteBuffer[4];
+        segmentCount = 0;
+        size = 0;
+        if( !reopen ) {
+            channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING );
+            writeHeader( 0, 0, HEADER_BYTES );
+            return;
+        }
+        channel = FileChannel.open( file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE );
+        try {
+            reopen();
+        } catch( IOException|RuntimeException e ) {
+            channel.close();
+            throw e;
+        }
+    }
+
+
+    //if a file starts with an arena header
+    public static boolean isArena( File file ) throws IOException {
+        if( file.length() < HEADER_BYTES ) {
+            return false;
+        }
+        try( FileChannel in = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+            ByteBuffer header = ByteBuffer.allocate( 4 ).order( ByteOrder.nativeOrder() );
+            read( in, header, 0 );
+            return header.getInt( 0 ) == ARENA_MAGIC;
+        }
+    }
+
+    //resizes the arena, adding segments as needed
+    @Override
+    public void setSize( int size ) {
+        int needed = ( size + SEGMENT_MASK ) >>> SEGMENT_SHIFT;
+        if( needed > segmentCount ) {
+            if( needed > segments.length ) {
+                segments = Arrays.copyOf( segments, Math.max( needed, segments.length * 2 ) );
+                accels = Arrays.copyOf( accels, segments.length );
+            }
+            for( int s = segmentCount; s < needed; s++ ) {
+                segments[s] = allocate( s );
+                accels[s] = ByteBuffer.allocateDirect( SEGMENT_RECORDS * ACCEL_BYTES ).order( ByteOrder.nativeOrder() );
+            }
+            segmentCount = needed;
+        }
+        this.size = size;
+    }
+
+    @Override
+    public void set( int i, Material m, double xPosition, double yPosition, double xVelocity, double yVelocity ) {
+        ByteBuffer segment = segments[ i >>> SEGMENT_SHIFT ];
+        int offset = ( i & SEGMENT_MASK ) * RECORD_BYTES;
+        segment.putDouble( offset + X_POSITION, xPosition );
+        segment.putDouble( offset + Y_POSITION, yPosition );
+        segment.putDouble( offset + X_VELOCITY, xVelocity );
+        segment.putDouble( offset + Y_VELOCITY, yVelocity );
+        segment.putInt( offset + MATERIAL, m.getId() );
+    }
+
+    @Override
+    public void setPosition( int i, double xPosition, double yPosition ) {
+        ByteBuffer segment = segments[ i >>> SEGMENT_SHIFT ];
+        int offset = ( i & SEGMENT_MASK ) * RECORD_BYTES;
+        segment.putDouble( offset + X_POSITION, xPosition );
+        segment.putDouble( offset + Y_POSITION, yPosition );
+    }
+
+    @Override
+    public void setVelocity( int i, double xVelocity, double yVelocity ) {
+        ByteBuffer segment = segments[ i >>> SEGMENT_SHIFT ];
+        int offset = ( i & SEGMENT_MASK ) * RECORD_BYTES;
+        segment.putDouble( offset + X_VELOCITY, xVelocity );
+        segment.putDouble( offset + Y_VELOCITY, yVelocity );
+    }
+
+    @Override
+    public void setAccel( int i, double xAccel, double yAccel ) {
+        ByteBuffer accel = accels[ i >>> SEGMENT_SHIFT ];
+        int offset = ( i & SEGMENT_MASK ) * ACCEL_BYTES;
+        accel.putDouble( offset, xAccel );
+        accel.putDouble( offset + 8, yAccel );
+    }
+
+    @Override
+    public void accelerate( int i, double xAccel, double yAccel ) {
+        ByteBuffer accel = accels[ i >>> SEGMENT_SHIFT ];
+        int offset = ( i & SEGMENT_MASK ) * ACCEL_BYTES;
+        accel.putDouble( offset, accel.getDouble( offset ) + xAccel );
+        accel.putDouble( offset + 8, accel.getDouble( offset + 8 ) + yAccel );
+    }
+
+    @Override
+    public void update( int i, double timeStep ) {
+        ByteBuffer segment = segments[ i >>> SEGMENT_SHIFT ];
+        ByteBuffer accel = accels[ i >>> SEGMENT_SHIFT ];
+        int offset = ( i & SEGMENT_MASK ) * RECORD_BYTES;
+        int a = ( i & SEGMENT_MASK ) * ACCEL_BYTES;
+        double xVelocity = segment.getDouble( offset + X_VELOCITY ) + accel.getDouble( a ) * timeStep;
+        double yVelocity = segment.getDouble( offset + Y_VELOCITY ) + accel.getDouble( a + 8 ) * timeStep;
+        segment.putDouble( offset + X_VELOCITY, xVelocity );
+        segment.putDouble( offset + Y_VELOCITY, yVelocity );
+        segment.putDouble( offset + X_POSITION, segment.getDouble( offset + X_POSITION ) + xVelocity * timeStep );
+        segment.putDouble( offset + Y_POSITION, segment.getDouble( offset + Y_POSITION ) + yVelocity * timeStep );
+        accel.putDouble( a, 0 );
+        accel.putDouble( a + 8, 0 );
+    }
+
+    //writes mapped segments back to the file, then the materials they use and the header, so the file can be reopened
+    //material ids only hold within a process, the table lets a reopening process map them to its own materials
+    public void force() throws IOException {
+        if( channel != null ) {
+            for( int s = 0; s < segmentCount; s++ ) {
+                ( (MappedByteBuffer)segments[s] ).force();
+            }
+            BitSet used = new BitSet();
+            for( int i = 0; i < size; i++ ) {
+                used.set( getMaterialId( i ) );
+            }
+            long tableOffset = HEADER_BYTES + segmentCount * SEGMENT_BYTES;
+            ByteBuffer table = ByteBuffer.allocate( used.cardinality() * MATERIAL_BYTES ).order( ByteOrder.nativeOrder() );
+            for( int id = used.nextSetBit( 0 ); id >= 0; id = used.nextSetBit( id + 1 ) ) {
+                Material m = Material.get( id );
+                table.putInt( id ).putDouble( m.getMass() ).putDouble( m.getRadius() ).putDouble( m.getInvSpring() )
+                        .putDouble( m.getDrag() ).putInt( m.getColor().getRGB() ).putInt( m.getFlags() );
+            }
+            table.flip();
+            write( table, tableOffset );
+            channel.truncate( tableOffset + used.cardinality() * MATERIAL_BYTES );
+            channel.force( false );
+            //the header goes last, so it is only updated once the records and their materials are on disk
+            writeHeader( size, used.cardinality(), tableOffset );
+            channel.force( false );
+        }
+    }
+
+    //releases the segments, the memory is returned once the buffers are collected, a mapped arena is saved first
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+        } finally {
+            Arrays.fill( segments, null );
+            Arrays.fill( accels, null );
+            segmentCount = size = 0;
+            if( channel != null ) {
+                channel.close();
+            }
+        }
+    }
+
+
+    //accessor methods
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getXPosition( int i ) {
+        return segments[ i >>> SEGMENT_SHIFT ].getDouble( ( i & SEGMENT_MASK ) * RECORD_BYTES + X_POSITION );
+    }
+
+    @Override
+    public double getYPosition( int i ) {
+        return segments[ i >>> SEGMENT_SHIFT ].getDouble( ( i & SEGMENT_MASK ) * RECORD_BYTES + Y_POSITION );
+    }
+
+    @Override
+    public double getXVelocity( int i ) {
+        return segments[ i >>> SEGMENT_SHIFT ].getDouble( ( i & SEGMENT_MASK ) * RECORD_BYTES + X_VELOCITY );
+    }
+
+    @Override
+    public double getYVelocity( int i ) {
+        return segments[ i >>> SEGMENT_SHIFT ].getDouble( ( i & SEGMENT_MASK ) * RECORD_BYTES + Y_VELOCITY );
+    }
+
+    @Override
+    public double getXAccel( int i ) {
+        return accels[ i >>> SEGMENT_SHIFT ].getDouble( ( i & SEGMENT_MASK ) * ACCEL_BYTES );
+    }
+
+    @Override
+    public double getYAccel( int i ) {
+        return accels[ i >>> SEGMENT_SHIFT ].getDouble( ( i & SEGMENT_MASK ) * ACCEL_BYTES + 8 );
+    }
+
+    @Override
+    public int getMaterialId( int i ) {
+        return segments[ i >>> SEGMENT_SHIFT ].getInt( ( i & SEGMENT_MASK ) * RECORD_BYTES + MATERIAL );
+    }
+
+    //if the arena is backed by a file
+    public boolean isMapped() {
+        return channel != null;
+    }
+
+
+    //private utility methods
+    //allocates a segment in direct memory or maps the next region of the file
+    private ByteBuffer allocate( int s ) {
+        try {
+            ByteBuffer segment = channel == null ? ByteBuffer.allocateDirect( (int)SEGMENT_BYTES )
+                    : channel.map( FileChannel.MapMode.READ_WRITE, HEADER_BYTES + s * SEGMENT_BYTES, SEGMENT_BYTES );
+            return segment.order( ByteOrder.nativeOrder() );
+        } catch( IOException e ) {
+            throw new IllegalStateException( "Failed to map arena segment", e );
+        }
+    }
+
+    //reads the header and material table of a saved arena, maps its segments and rewrites the saved material ids
+    //to the ids of this process, which are usually the same when the materials were created in the same order
+    private void reopen() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate( HEADER_BYTES ).order( ByteOrder.nativeOrder() );
+        read( channel, header, 0 );
+        if( header.getInt( 0 ) != ARENA_MAGIC ) {
+            throw new IOException( "Not a particle arena" );
+        }
+        if( header.getInt( 4 ) != ARENA_VERSION ) {
+            throw new IOException( "Unsupported arena version" );
+        }
+        int saved = header.getInt( 8 );
+        int materials = header.getInt( 12 );
+        long tableOffset = header.getLong( 16 );
+        long records = ( (long)saved + SEGMENT_MASK >>> SEGMENT_SHIFT ) * SEGMENT_BYTES;
+        if( saved < 0 || materials < 0 || tableOffset < HEADER_BYTES + records
+                || tableOffset + (long)materials * MATERIAL_BYTES > channel.size() ) {
+            throw new IOException( "Corrupt arena header" );
+        }
+        ByteBuffer table = ByteBuffer.allocate( materials * MATERIAL_BYTES ).order( ByteOrder.nativeOrder() );
+        read( channel, table, tableOffset );
+        table.flip();
+        int[] savedIds = new int[materials], ids = new int[materials];
+        boolean same = true;
+        for( int k = 0; k < materials; k++ ) {
+            savedIds[k] = table.getInt();
+            Material m = Material.intern( table.getDouble(), table.getDouble(), table.getDouble(), table.getDouble(),
+                    new Color( table.getInt(), true ), table.getInt() );
+            ids[k] = m.getId();
+            same &= ids[k] == savedIds[k];
+            if( k > 0 && savedIds[k] <= savedIds[ k - 1 ] ) {
+                throw new IOException( "Corrupt arena material table" );
+            }
+        }
+        setSize( saved );
+        if( same ) {
+            return;
+        }
+        for( int i = 0; i < saved; i++ ) {
+            int k = Arrays.binarySearch( savedIds, getMaterialId( i ) );
+            if( k < 0 ) {
+                throw new IOException( "Invalid material id " + getMaterialId( i ) );
+            }
+            segments[ i >>> SEGMENT_SHIFT ].putInt( ( i & SEGMENT_MASK ) * RECORD_BYTES + MATERIAL, ids[k] );
+        }
+    }
+
+    //writes the header at the start of the file
+    private void writeHeader( int size, int materials, long tableOffset ) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate( HEADER_BYTES ).order( ByteOrder.nativeOrder() );
+        header.putInt( ARENA_MAGIC ).putInt( ARENA_VERSION ).putInt( size ).putInt( materials ).putLong( tableOffset ).flip();
+        write( header, 0 );
+    }
+
+    //writes a whole buffer at a position of the file
+    private void write( ByteBuffer buffer, long position ) throws IOException {
+        while( buffer.hasRemaining() ) {
+            position += channel.write( buffer, position );
+        }
+    }
+
+    //fills a buffer from a position of a file
+    private static void read( FileChannel in, ByteBuffer buffer, long position ) throws IOException {
+        while( buffer.hasRemaining() ) {
+            int n = in.read( buffer, position + buffer.position() );
+            if( n < 0 ) {
+                throw new IOException( "Unexpected end of arena" );
+            }
+        }
+    }
+}
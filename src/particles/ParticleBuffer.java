@@ -0,0 +1,213 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for holding a packed column snapshot of particle states
+ * Created: 10-19-2026
+ * Status: entity class, finished
+ * Dependencies: Material, Particle, ParticleStore
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public final class ParticleBuffer implements ParticleStore {
+
+    //packed columns, only the first size entries are in use
+    private double[] xPosition, yPosition, xVelocity, yVelocity;
+    private double[] xAccel, yAccel;
+    private int[] material;
+    private int size;
+
+
+    //constructor
+    public ParticleBuffer() {
+        this( 16 );
+    }
+
+    //constructor
+    public ParticleBuffer( int capacity ) {
+        xPosition = new double[capacity];
+        yPosition = new double[capacity];
+        xVelocity = new double[capacity];
+        yVelocity = new double[capacity];
+        xAccel = new double[capacity];
+        yAccel = new double[capacity];
+        material = new int[capacity];
+        size = 0;
+    }
+
+
+    //replaces the contents with the current state of a list of particles
+    public void capture( List<Particle> particles ) {
+        int len = particles.size();
+        setSize( len );
+        for( int i = 0; i < len; i++ ) {
+            Particle p = particles.get( i );
+            xPosition[i] = p.getXPosition();
+            yPosition[i] = p.getYPosition();
+            xVelocity[i] = p.getXVelocity();
+            yVelocity[i] = p.getYVelocity();
+            material[i] = p.getMaterialId();
+        }
+    }
+
+    //appends a particle state
+    @Override
+    public void add( Material m, double xPosition, double yPosition, double xVelocity, double yVelocity ) {
+        int i = size;
+        setSize( i + 1 );
+        set( i, m, xPosition, yPosition, xVelocity, yVelocity );
+    }
+
+    //replaces a particle state
+    @Override
+    public void set( int i, Material m, double xPosition, double yPosition, double xVelocity, double yVelocity ) {
+        this.xPosition[i] = xPosition;
+        this.yPosition[i] = yPosition;
+        this.xVelocity[i] = xVelocity;
+        this.yVelocity[i] = yVelocity;
+        this.material[i] = m.getId();
+    }
+
+    @Override
+    public void setPosition( int i, double xPosition, double yPosition ) {
+        this.xPosition[i] = xPosition;
+        this.yPosition[i] = yPosition;
+    }
+
+    @Override
+    public void setVelocity( int i, double xVelocity, double yVelocity ) {
+        this.xVelocity[i] = xVelocity;
+        this.yVelocity[i] = yVelocity;
+    }
+
+    @Override
+    public void setAccel( int i, double xAccel, double yAccel ) {
+        this.xAccel[i] = xAccel;
+        this.yAccel[i] = yAccel;
+    }
+
+    @Override
+    public void accelerate( int i, double xAccel, double yAccel ) {
+        this.xAccel[i] += xAccel;
+        this.yAccel[i] += yAccel;
+    }
+
+    @Override
+    public void update( int i, double timeStep ) {
+        xPosition[i] += ( xVelocity[i] += xAccel[i] * timeStep ) * timeStep;
+        yPosition[i] += ( yVelocity[i] += yAccel[i] * timeStep ) * timeStep;
+        xAccel[i] = yAccel[i] = 0;
+    }
+
+    //resizes the buffer, keeping the states below the new size
+    @Override
+    public void setSize( int size ) {
+        if( size > xPosition.length ) {
+            int len = Math.max( size, xPosition.length * 2 );
+            xPosition = Arrays.copyOf( xPosition, len );
+            yPosition = Arrays.copyOf( yPosition, len );
+            xVelocity = Arrays.copyOf( xVelocity, len );
+            yVelocity = Arrays.copyOf( yVelocity, len );
+            xAccel = Arrays.copyOf( xAccel, len );
+            yAccel = Arrays.copyOf( yAccel, len );
+            material = Arrays.copyOf( material, len );
+        }
+        this.size = size;
+    }
+
+    //creates particles for a range of the buffer
+    @Override
+    public void toParticles( Particle[] out, int from, int to ) {
+        for( int i = from; i < to; i++ ) {
+            out[i] = new Particle( Material.get( material[i] ), xPosition[i], yPosition[i], xVelocity[i], yVelocity[i] );
+        }
+    }
+
+    //creates particles for the whole buffer
+    public Particle[] toParticles() {
+        Particle[] out = new Particle[size];
+        toParticles( out, 0, size );
+        return out;
+    }
+
+    //returns the masses of the particles in the buffer
+    public double[] masses() {
+        double[] masses = new double[size];
+        for( int i = 0; i < size; i++ ) {
+            masses[i] = Material.get( material[i] ).getMass();
+        }
+        return masses;
+    }
+
+    //serializes a single particle state in the same format as Particle.write
+    @Override
+    public void write( DataOutput out, int i ) throws IOException {
+        Particle.write( out, Material.get( material[i] ), xPosition[i], yPosition[i], xVelocity[i], yVelocity[i] );
+    }
+
+
+    //accessor methods, the column arrays are backing arrays and may be longer than the size
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getXPosition( int i ) {
+        return xPosition[i];
+    }
+
+    @Override
+    public double getYPosition( int i ) {
+        return yPosition[i];
+    }
+
+    @Override
+    public double getXVelocity( int i ) {
+        return xVelocity[i];
+    }
+
+    @Override
+    public double getYVelocity( int i ) {
+        return yVelocity[i];
+    }
+
+    @Override
+    public double getXAccel( int i ) {
+        return xAccel[i];
+    }
+
+    @Override
+    public double getYAccel( int i ) {
+        return yAccel[i];
+    }
+
+    @Override
+    public int getMaterialId( int i ) {
+        return material[i];
+    }
+
+    public double[] getXPosition() {
+        return xPosition;
+    }
+
+    public double[] getYPosition() {
+        return yPosition;
+    }
+
+    public double[] getXVelocity() {
+        return xVelocity;
+    }
+
+    public double[] getYVelocity() {
+        return yVelocity;
+    }
+
+    public int[] getMaterial() {
+        return material;
+    }
+}
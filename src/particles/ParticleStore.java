@@ -0,0 +1,72 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: interface for indexed storage of particle states shared by on-heap and off-heap stores
+ * Created: 10-19-2026
+ * Status: interface, finished
+ * Dependencies: Material, Particle
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+public interface ParticleStore {
+
+    //number of particle states in use
+    int size();
+
+    //resizes the store, keeping the states below the new size
+    void setSize( int size );
+
+    //replaces a particle state
+    void set( int i, Material m, double xPosition, double yPosition, double xVelocity, double yVelocity );
+
+    void setPosition( int i, double xPosition, double yPosition );
+
+    void setVelocity( int i, double xVelocity, double yVelocity );
+
+    double getXPosition( int i );
+
+    double getYPosition( int i );
+
+    double getXVelocity( int i );
+
+    double getYVelocity( int i );
+
+    int getMaterialId( int i );
+
+    //accumulated accelerations are scratch for the engines that simulate a store and are never copied or saved
+    double getXAccel( int i );
+
+    double getYAccel( int i );
+
+    void setAccel( int i, double xAccel, double yAccel );
+
+    //adds to the accumulated acceleration
+    void accelerate( int i, double xAccel, double yAccel );
+
+    //moves a particle state by its accumulated acceleration and clears it, the same integration as Particle.update
+    void update( int i, double timeStep );
+
+    //appends a particle state
+    default void add( Material m, double xPosition, double yPosition, double xVelocity, double yVelocity ) {
+        int i = size();
+        setSize( i + 1 );
+        set( i, m, xPosition, yPosition, xVelocity, yVelocity );
+    }
+
+    //creates particles for a range of the store
+    default void toParticles( Particle[] out, int from, int to ) {
+        for( int i = from; i < to; i++ ) {
+            out[i] = new Particle( Material.get( getMaterialId( i ) ),
+                    getXPosition( i ), getYPosition( i ), getXVelocity( i ), getYVelocity( i ) );
+        }
+    }
+
+    //serializes a single particle state in the same format as Particle.write
+    default void write( DataOutput out, int i ) throws IOException {
+        Particle.write( out, Material.get( getMaterialId( i ) ),
+                getXPosition( i ), getYPosition( i ), getXVelocity( i ), getYVelocity( i ) );
+    }
+}
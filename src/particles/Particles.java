@@ -19,21 +19,289 @@ package particles;
  * Description: main class of the particle simulation
  * Created: 3-25-2022
  * Status: main class, finished
- * Dependencies: Environment, SimulationGUI
+ * Dependencies: Checkpointer, ClumpFinder, ControlServer, DiskStatistics, Environment, FrameExporter, Generator, Material, Particle, ParticleArena, ParticleBuffer, ParticleStore, RscLoader, SimulationGUI, Simulator
  * Licensed under GNU v3, see src/particles/Particles.java for more details
  */
 
+import java.awt.GraphicsEnvironment;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
 public final class Particles {
     
+    //options of arena runs, the others need particle objects
+    private static final Set<String> ARENA_OPTIONS = Collections.unmodifiableSet( new HashSet<>( Arrays.asList( 
+            "-arena", "-open", "-save", "-engine", "-timestep", "-headless", "-ticks" ) ) );
+    
     //private constructor
     private Particles() {
         throw new AssertionError();
     }
     
     //main method
-    public static void main( String[] args ) {
-        Environment environment = new Environment();
+    public static void main( String[] args ) throws IOException, InterruptedException {
+        //an arena run is known before any other option, since the environment simulates the arena from the start
+        File arenaFile = null;
+        ParticleArena arena = null;
+        for( int i = 0; i + 1 < args.length; i++ ) {
+            if( args[i].equals( "-arena" ) ) {
+                arenaFile = new File( args[ i + 1 ] );
+                arena = new ParticleArena( arenaFile, ParticleArena.isArena( arenaFile ) );
+            }
+        }
+        Environment environment = new Environment( arena );
+        boolean headless = GraphicsEnvironment.isHeadless();
+        long ticks = -1;
+        File exportDirectory = null;
+        long exportInterval = 10;
+        int exportWidth = 1280, exportHeight = 720;
+        ClumpFinder clumps = null;
+        DiskStatistics disk = null;
+        ControlServer control = null;
+        File saveFile = null;
+        for( int i = 0; i < args.length; i++ ) {
+            if( arena != null && !ARENA_OPTIONS.contains( args[i] ) ) {
+                throw new IllegalArgumentException( "Option " + args[i] + " does not work with -arena" );
+            }
+            switch( args[i] ) {
+                //resumes from and keeps checkpointing to a directory for the whole session
+                case "-checkpoints" :
+                    File directory = new File( args[ ++i ] );
+                    Checkpointer.resume( environment, directory );
+                    new Checkpointer( environment, directory, 10000, 10, 3 ).start();
+                    break;
+                //streams catalogs of touching groups of particles to a file
+                case "-clumps" :
+                    clumps = new ClumpFinder( environment, new File( args[ ++i ] ), 100, 5 );
+                    clumps.start();
+                    break;
+                //streams annulus statistics of a disk around the heaviest particle to a file
+                case "-disk" :
+                    disk = new DiskStatistics( environment, new File( args[ ++i ] ), 100, 32, 0, Double.NaN, Double.NaN );
+                    disk.start();
+                    break;
+                //serves the control protocol on a loopback port or a unix domain socket path
+                case "-control" :
+                    control = new ControlServer( environment, ControlServer.address( args[ ++i ] ) );
+                    control.start();
+                    System.out.println( "Control server listening on " + control.getAddress() );
+                    break;
+                //loads a saved simulation, arenas saved by earlier runs are mapped and need no parsing
+                case "-open" :
+                    File openFile = new File( args[ ++i ] );
+                    if( arena != null ) {
+                        load( openFile, arena );
+                        break;
+                    }
+                    Particle[] particles;
+                    if( ParticleArena.isArena( openFile ) ) {
+                        try( ParticleArena saved = new ParticleArena( openFile, true ) ) {
+                            particles = Generator.toParticles( saved );
+                        }
+                    } else {
+                        particles = RscLoader.rsc().readParticles( openFile.getPath() );
+                    }
+                    environment.queueOperation( list -> list.addAll( Arrays.asList( particles ) ) );
+                    break;
+                //saves the particles once a headless run has finished its ticks
+                case "-save" :
+                    saveFile = new File( args[ ++i ] );
+                    break;
+                //simulates a mapped arena in place without particle objects, opened before the other options
+                case "-arena" :
+                    i++;
+                    break;
+                case "-engine" :
+                    Simulator sim = Simulator.ENGINES.get( args[ ++i ] );
+                    if( sim == null ) {
+                        throw new IllegalArgumentException( "Unknown engine " + args[i] + ", expected one of " + Simulator.ENGINES.keySet() );
+                    }
+                    environment.setSimManager( sim );
+                    break;
+                //exports png frames to a directory
+                case "-export" :
+                    exportDirectory = new File( args[ ++i ] );
+                    break;
+                case "-every" :
+                    exportInterval = Long.parseLong( args[ ++i ] );
+                    break;
+                case "-size" :
+                    String[] size = args[ ++i ].split( "x" );
+                    exportWidth = Integer.parseInt( size[0] );
+                    exportHeight = Integer.parseInt( size[1] );
+                    break;
+                case "-zoom" :
+                    environment.setZoom( Double.parseDouble( args[ ++i ] ) );
+                    break;
+                case "-timestep" :
+                    environment.setTimeStep( Double.parseDouble( args[ ++i ] ) );
+                    break;
+                //lets the time step follow the drift of the conserved quantities
+                case "-autostep" :
+                    environment.getStepController().setTolerance( Double.parseDouble( args[ ++i ] ) );
+                    break;
+                //runs a number of ticks as fast as possible without a window, then exits
+                case "-headless" :
+                    headless = true;
+                    break;
+                case "-ticks" :
+                    ticks = Long.parseLong( args[ ++i ] );
+                    break;
+                default :
+                    throw new IllegalArgumentException( "Unknown option " + args[i] );
+            }
+        }
+        if( arena != null && ( !headless || ticks < 0 ) ) {
+            throw new IllegalArgumentException( "Arena runs need -headless and -ticks" );
+        }
+        FrameExporter exporter = null;
+        if( exportDirectory != null ) {
+            int threads = Math.max( Runtime.getRuntime().availableProcessors() / 2, 1 );
+            exporter = new FrameExporter( environment, exportDirectory, exportInterval, exportWidth, exportHeight, threads );
+            exporter.start();
+        }
         environment.getMainThread().start();
-        SimulationGUI.createGUI( environment, "0.3.0" ).setVisible( true );
+        if( !headless ) {
+            SimulationGUI.createGUI( environment, "0.3.0" ).setVisible( true );
+            return;
+        }
+        if( ticks < 0 ) {
+            if( control == null ) {
+                throw new IllegalArgumentException( "Headless runs need -ticks or -control" );
+            }
+            //runs until the process is killed, driven through the control socket
+            control.join();
+            return;
+        }
+        //stops the simulation on the main thread once enough ticks have run, counted from the start or resumed checkpoint
+        long end = ticks;
+        long[] ran = { 0 };
+        CountDownLatch done = new CountDownLatch( 1 );
+        environment.addTickListener( list -> {
+            if( ++ran[0] >= end ) {
+                environment.setActive( false );
+                done.countDown();
+            }
+        } );
+        environment.setTickLength( -1 );
+        environment.setActive( ticks > 0 );
+        if( ticks > 0 ) {
+            done.await();
+        }
+        if( clumps != null ) {
+            clumps.stop();
+        }
+        if( disk != null ) {
+            disk.stop();
+        }
+        if( exporter != null ) {
+            exporter.stop();
+            System.out.println( "Exported " + exporter.getWritten() + " frames to " + exporter.getDirectory() + 
+                    ", simulation waited " + exporter.getStallTime() + " ms on encoders" );
+        }
+        if( saveFile != null ) {
+            save( environment, saveFile );
+            System.out.println( "Saved particles to " + saveFile );
+        }
+        if( arena != null ) {
+            arena.close();
+            System.out.println( "Saved arena to " + arenaFile );
+        }
+    }
+    
+    //writes the particles to a file ending in .arena as a mapped arena, copied off the heap on the main thread,
+    //or to a psobj save otherwise
+    private static void save( Environment environment, File file ) throws IOException, InterruptedException {
+        boolean mapped = file.getName().endsWith( ".arena" );
+        //a simulated store is only written by ticks, which have stopped, so it is read in place
+        ParticleStore simulated = environment.getStore();
+        if( simulated != null ) {
+            if( mapped ) {
+                try( ParticleArena copy = new ParticleArena( file ) ) {
+                    copy( simulated, copy );
+                }
+            } else {
+                try( DataOutputStream stream = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) ) ) {
+                    RscLoader.rsc().writeParticles( simulated, stream );
+                }
+            }
+            return;
+        }
+        ParticleStore store = mapped ? new ParticleArena( file ) : new ParticleBuffer();
+        CompletableFuture<Void> copied = new CompletableFuture<>();
+        environment.queueInPlace( list -> {
+            try {
+                copy( list, store );
+                copied.complete( null );
+            } catch( RuntimeException e ) {
+                copied.completeExceptionally( e );
+            }
+        } );
+        try {
+            copied.get();
+        } catch( ExecutionException e ) {
+            throw new IOException( "Failed to copy particles", e.getCause() );
+        } finally {
+            if( mapped ) {
+                ( (ParticleArena)store ).close();
+            }
+        }
+        if( !mapped ) {
+            try( DataOutputStream stream = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) ) ) {
+                RscLoader.rsc().writeParticles( store, stream );
+            }
+        }
+    }
+    
+    //appends a save or another arena to an arena without creating particle objects
+    private static void load( File file, ParticleArena arena ) throws IOException {
+        if( ParticleArena.isArena( file ) ) {
+            try( ParticleArena saved = new ParticleArena( file, true ) ) {
+                int base = arena.size();
+                arena.setSize( base + saved.size() );
+                for( int i = 0; i < saved.size(); i++ ) {
+                    arena.set( base + i, Material.get( saved.getMaterialId( i ) ), saved.getXPosition( i ), 
+                            saved.getYPosition( i ), saved.getXVelocity( i ), saved.getYVelocity( i ) );
+                }
+            }
+        } else {
+            try( DataInputStream stream = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) ) ) {
+                RscLoader.rsc().readParticles( stream, arena );
+            }
+        }
+    }
+    
+    //copies the states of one store into another
+    private static void copy( ParticleStore from, ParticleStore to ) {
+        int size = from.size();
+        to.setSize( size );
+        for( int i = 0; i < size; i++ ) {
+            to.set( i, Material.get( from.getMaterialId( i ) ), from.getXPosition( i ), from.getYPosition( i ), 
+                    from.getXVelocity( i ), from.getYVelocity( i ) );
+        }
+    }
+    
+    //copies the states of a particle list into a store
+    private static void copy( List<Particle> particles, ParticleStore store ) {
+        int size = particles.size();
+        store.setSize( size );
+        for( int i = 0; i < size; i++ ) {
+            Particle p = particles.get( i );
+            store.set( i, p.getMaterial(), p.getXPosition(), p.getYPosition(), p.getXVelocity(), p.getYVelocity() );
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,405 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: main class which runs the built in experiments on every engine and compares them to golden trajectories of the simple engine
+ * Created: 10-19-2026
+ * Status: main class, finished
+ * Dependencies: Environment, MixedPrecisionFarField, Particle, ParticleBuffer, RscLoader, SimulationGUI, Simulator
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public final class RegressionHarness {
+
+    //header of golden trajectory files
+    public static final int GOLDEN_MAGIC = 0x5E6560D1;
+    //states stored per run, evenly spaced over the ticks
+    private static final int SAMPLES = 8;
+    //engines which evaluate the same pairs in the same order as the simple engine, so they match it bit for bit
+    private static final Set<String> EXACT = Set.of( "simple", "tiled" );
+    //engines with the same forces and integrator summed in another order, their rounding differences grow chaotically
+    //in collisions, so only the conserved quantities are compared
+    private static final Set<String> REORDERED = Set.of( "multi-thread" );
+    //default position, energy and momentum tolerances of exact, reordered and approximate engines. approximate engines
+    //change the integrator or the physics, so they are only checked for blow ups and for conserving momentum
+    private static final double[] EXACT_TOLERANCES = { 1e-3, 1e-3, 1e-3 };
+    private static final double[] REORDERED_TOLERANCES = { Double.POSITIVE_INFINITY, 1e-3, 1e-3 };
+    private static final double[] APPROXIMATE_TOLERANCES = { Double.POSITIVE_INFINITY, 0.25, 1e-3 };
+
+
+    //private constructor
+    private RegressionHarness() {
+        throw new AssertionError();
+    }
+
+    //main method
+    public static void main( String[] args ) throws IOException, InterruptedException {
+        File goldenDirectory = new File( "golden" );
+        boolean record = false, mixed = false, approximate = false;
+        int ticks = 200;
+        //tolerances given on the command line replace the defaults of every engine
+        double positionTolerance = Double.NaN, energyTolerance = Double.NaN, momentumTolerance = Double.NaN;
+        List<String> experimentNames = new ArrayList<>();
+        Map<String,String> engines = new LinkedHashMap<>();
+        for( int i = 0; i < args.length; i++ ) {
+            switch( args[i] ) {
+                //directory the golden trajectories are read from and recorded to
+                case "-golden" :
+                    goldenDirectory = new File( args[ ++i ] );
+                    break;
+                //records the golden trajectories again from the simple engine
+                case "-record" :
+                    record = true;
+                    break;
+                //engines that sum gravity apart from contact forces use the mixed precision far field
+                case "-mixed" :
+                    mixed = true;
+                    break;
+                //also runs the approximate engines when no engine is named
+                case "-approximate" :
+                    approximate = true;
+                    break;
+                case "-ticks" :
+                    ticks = Integer.parseInt( args[ ++i ] );
+                    break;
+                //largest rms position error relative to the rms radius of the system
+                case "-position" :
+                    positionTolerance = Double.parseDouble( args[ ++i ] );
+                    break;
+                //largest total energy error relative to the kinetic plus the absolute potential energy
+                case "-energy" :
+                    energyTolerance = Double.parseDouble( args[ ++i ] );
+                    break;
+                //largest linear momentum error relative to the summed absolute momenta
+                case "-momentum" :
+                    momentumTolerance = Double.parseDouble( args[ ++i ] );
+                    break;
+                //limits the run to some experiments, by their menu names in lower case with dashes for spaces
+                case "-experiment" :
+                    experimentNames.add( args[ ++i ] );
+                    break;
+                //limits the run to some built in engines
+                case "-engine" :
+                    String name = args[ ++i ];
+                    if( !Simulator.ENGINES.containsKey( name ) ) {
+                        throw new IllegalArgumentException( "Unknown engine " + name + ", expected one of " + Simulator.ENGINES.keySet() );
+                    }
+                    engines.put( name, null );
+                    break;
+                //adds an external engine class file, loaded the same way as the simulators menu loads it
+                case "-load" :
+                    String path = args[ ++i ];
+                    engines.put( new File( path ).getName(), path );
+                    break;
+                default :
+                    throw new IllegalArgumentException( "Unknown option " + args[i] );
+            }
+        }
+        if( ticks < SAMPLES ) {
+            throw new IllegalArgumentException( "Runs need at least " + SAMPLES + " ticks" );
+        }
+        if( engines.isEmpty() || engines.values().stream().allMatch( path -> path != null ) ) {
+            for( String name : Simulator.ENGINES.keySet() ) {
+                if( approximate || EXACT.contains( name ) || REORDERED.contains( name ) ) {
+                    engines.putIfAbsent( name, null );
+                }
+            }
+        }
+        //the simple engine always runs first, it records the golden trajectories and is the speed baseline
+        engines.remove( "simple" );
+        List<SimulationGUI.Experiment> experiments = new ArrayList<>();
+        for( SimulationGUI.Experiment experiment : SimulationGUI.EXPERIMENTS ) {
+            if( experimentNames.isEmpty() || experimentNames.contains( key( experiment ) ) ) {
+                experiments.add( experiment );
+            }
+        }
+        if( experiments.size() < new HashSet<>( experimentNames ).size() ) {
+            throw new IllegalArgumentException( "Unknown experiment in " + experimentNames );
+        }
+        goldenDirectory.mkdirs();
+
+        Environment environment = new Environment();
+        environment.setTickLength( -1 );
+        if( mixed ) {
+            environment.setFarField( new MixedPrecisionFarField() );
+        }
+        environment.getMainThread().start();
+        System.out.println( String.format( "%-24s %-20s %10s %9s %12s %12s %12s  %s",
+                "Experiment", "Engine", "Time (ms)", "Speedup", "Position", "Energy", "Momentum", "Result" ) );
+        int runs = 0, failures = 0;
+        for( SimulationGUI.Experiment experiment : experiments ) {
+            ParticleBuffer initial = new ParticleBuffer();
+            experiment.generate( initial );
+            File goldenFile = new File( goldenDirectory, key( experiment ) + ".golden" );
+            Trajectory simple = run( environment, experiment, initial, ticks, Simulator.DEFAULT, null );
+            Trajectory golden;
+            if( record || !goldenFile.exists() ) {
+                simple.write( goldenFile );
+                golden = simple;
+                System.out.println( "Recorded golden trajectory " + goldenFile );
+            } else {
+                golden = Trajectory.read( goldenFile );
+                if( golden.ticks != ticks || golden.timeStep != experiment.getTimeStep() || golden.count != initial.size() ) {
+                    throw new IllegalArgumentException( "Golden trajectory " + goldenFile + " was recorded with other settings, run with -record" );
+                }
+            }
+            List<String> names = new ArrayList<>();
+            List<Trajectory> results = new ArrayList<>();
+            names.add( "simple" );
+            results.add( simple );
+            for( Map.Entry<String,String> engine : engines.entrySet() ) {
+                names.add( engine.getKey() );
+                results.add( run( environment, experiment, initial, ticks,
+                        Simulator.ENGINES.get( engine.getKey() ), engine.getValue() ) );
+            }
+            for( int i = 0; i < results.size(); i++ ) {
+                Trajectory result = results.get( i );
+                double[] tolerances = tolerances( names.get( i ), engines.get( names.get( i ) ) != null );
+                double positionLimit = Double.isNaN( positionTolerance ) ? tolerances[0] : positionTolerance;
+                double energyLimit = Double.isNaN( energyTolerance ) ? tolerances[1] : energyTolerance;
+                double momentumLimit = Double.isNaN( momentumTolerance ) ? tolerances[2] : momentumTolerance;
+                double position = 0, energy = 0, momentum = 0;
+                for( int s = 0; s < SAMPLES; s++ ) {
+                    position = max( position, result.positionError( golden, s ) );
+                    energy = max( energy, relative( result.energy[s] - golden.energy[s], golden.energyScale[s] ) );
+                    momentum = max( momentum, relative( Math.hypot( result.momentumX[s] - golden.momentumX[s],
+                            result.momentumY[s] - golden.momentumY[s] ), golden.momentumScale[s] ) );
+                }
+                //nan errors from engines that blew up fail every comparison
+                boolean passed = position <= positionLimit && energy <= energyLimit && momentum <= momentumLimit;
+                runs++;
+                if( !passed ) {
+                    failures++;
+                }
+                System.out.println( String.format( "%-24s %-20s %10.1f %8.2fx %12.3e %12.3e %12.3e  %s",
+                        experiment.getName(), names.get( i ), result.nanos / 1e6, (double)simple.nanos / result.nanos,
+                        position, energy, momentum, passed ? "PASS" : "FAIL" ) );
+            }
+        }
+        System.out.println( ( runs - failures ) + " of " + runs + " runs within tolerance" );
+        System.exit( failures == 0 ? 0 : 1 );
+    }
+
+
+    //private utility methods
+    //runs an experiment for a number of ticks on a built in or external engine, sampling the state without timing it
+    private static Trajectory run( Environment environment, SimulationGUI.Experiment experiment, ParticleBuffer initial,
+            int ticks, Simulator sim, String externalPath ) throws IOException, InterruptedException {
+        Particle[] particles = initial.toParticles();
+        environment.queueOperation( list -> {
+            list.clear();
+            list.addAll( Arrays.asList( particles ) );
+        } );
+        environment.setTimeStep( experiment.getTimeStep() );
+        environment.setTimePassed( 0 );
+        if( externalPath == null ) {
+            environment.setSimManager( sim );
+        } else {
+            RscLoader.rsc().loadSimulator( environment, externalPath );
+        }
+        CountDownLatch ready = new CountDownLatch( 1 );
+        environment.queueInOrder( list -> ready.countDown() );
+        await( environment, ready );
+
+        Trajectory trajectory = new Trajectory( ticks, experiment.getTimeStep(), particles.length );
+        CountDownLatch done = new CountDownLatch( 1 );
+        long[] last = { 0 };
+        int[] count = { 0 };
+        Consumer<List<Particle>> listener = list -> {
+            long now = System.nanoTime();
+            trajectory.nanos += now - last[0];
+            int tick = ++count[0];
+            if( tick * SAMPLES % ticks < SAMPLES ) {
+                int sample = tick * SAMPLES / ticks - 1;
+                if( sample >= 0 && sample < SAMPLES ) {
+                    trajectory.states[sample].capture( list );
+                }
+            }
+            if( tick >= ticks ) {
+                environment.setActive( false );
+                done.countDown();
+            }
+            last[0] = System.nanoTime();
+        };
+        environment.addTickListener( listener );
+        last[0] = System.nanoTime();
+        environment.setActive( true );
+        await( environment, done );
+        environment.removeTickListener( listener );
+        trajectory.measure();
+        return trajectory;
+    }
+
+    //waits for the main thread, failing instead of hanging if an engine killed it
+    private static void await( Environment environment, CountDownLatch latch ) throws InterruptedException {
+        while( !latch.await( 1, TimeUnit.SECONDS ) ) {
+            if( !environment.getMainThread().isAlive() ) {
+                throw new IllegalStateException( "Simulation thread died running " + environment.getSimulator().getClass().getName() );
+            }
+        }
+    }
+
+    //default tolerances of an engine by how closely it follows the simple engine, external engines are held to the exact ones
+    private static double[] tolerances( String name, boolean external ) {
+        if( external || EXACT.contains( name ) ) {
+            return EXACT_TOLERANCES;
+        }
+        return REORDERED.contains( name ) ? REORDERED_TOLERANCES : APPROXIMATE_TOLERANCES;
+    }
+
+    //experiments are named by their menu names in lower case with dashes for spaces
+    private static String key( SimulationGUI.Experiment experiment ) {
+        return experiment.getName().toLowerCase().replace( ' ', '-' );
+    }
+
+    private static double relative( double difference, double scale ) {
+        return scale > 0 ? Math.abs( difference ) / scale : Math.abs( difference );
+    }
+
+    //keeps nan errors, which math.max also does but without hiding them behind later samples
+    private static double max( double a, double b ) {
+        return Double.isNaN( a ) || Double.isNaN( b ) ? Double.NaN : Math.max( a, b );
+    }
+
+
+    //sampled states of one run with their conserved quantities
+    private static final class Trajectory {
+
+        final int ticks;
+        final double timeStep;
+        final int count;
+        final ParticleBuffer[] states;
+        final double[] energy, energyScale, momentumX, momentumY, momentumScale, radius;
+        long nanos;
+
+
+        Trajectory( int ticks, double timeStep, int count ) {
+            this.ticks = ticks;
+            this.timeStep = timeStep;
+            this.count = count;
+            states = new ParticleBuffer[ SAMPLES ];
+            for( int i = 0; i < SAMPLES; i++ ) {
+                states[i] = new ParticleBuffer( count );
+            }
+            energy = new double[ SAMPLES ];
+            energyScale = new double[ SAMPLES ];
+            momentumX = new double[ SAMPLES ];
+            momentumY = new double[ SAMPLES ];
+            momentumScale = new double[ SAMPLES ];
+            radius = new double[ SAMPLES ];
+            nanos = 0;
+        }
+
+        //sums energy and momentum of every sample with the same pair terms the engines use, on copies of the particles
+        void measure() {
+            for( int s = 0; s < SAMPLES; s++ ) {
+                Particle[] particles = states[s].toParticles();
+                int size = particles.length;
+                double kinetic = 0, potential = 0, px = 0, py = 0, pSum = 0, cx = 0, cy = 0, mass = 0;
+                for( int i = 0; i < size; i++ ) {
+                    Particle p = particles[i];
+                    for( int j = i + 1; j < size; j++ ) {
+                        p.interact( particles[j] );
+                    }
+                    double m = p.getMass();
+                    double vx = p.getXVelocity(), vy = p.getYVelocity();
+                    kinetic += m * ( vx * vx + vy * vy ) / 2;
+                    potential += m * p.getPotential();
+                    px += m * vx;
+                    py += m * vy;
+                    pSum += m * Math.hypot( vx, vy );
+                    cx += m * p.getXPosition();
+                    cy += m * p.getYPosition();
+                    mass += m;
+                }
+                energy[s] = kinetic + potential;
+                energyScale[s] = kinetic + Math.abs( potential );
+                momentumX[s] = px;
+                momentumY[s] = py;
+                momentumScale[s] = pSum;
+                //rms distance from the center of mass, the scale of the position errors
+                cx /= mass;
+                cy /= mass;
+                double spread = 0;
+                for( Particle p : particles ) {
+                    double dx = p.getXPosition() - cx, dy = p.getYPosition() - cy;
+                    spread += dx * dx + dy * dy;
+                }
+                radius[s] = Math.sqrt( spread / size );
+            }
+        }
+
+        //rms distance between the particles of a sample and the same particles of the golden sample, relative to its radius
+        double positionError( Trajectory golden, int s ) {
+            ParticleBuffer a = states[s], b = golden.states[s];
+            int size = a.size();
+            if( size != b.size() ) {
+                return Double.NaN;
+            }
+            double sum = 0;
+            for( int i = 0; i < size; i++ ) {
+                double dx = a.getXPosition( i ) - b.getXPosition( i );
+                double dy = a.getYPosition( i ) - b.getYPosition( i );
+                sum += dx * dx + dy * dy;
+            }
+            return relative( Math.sqrt( sum / size ), golden.radius[s] );
+        }
+
+        //writes the run settings, then every sample as its particles in the save file record layout
+        void write( File file ) throws IOException {
+            try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) ) ) {
+                out.writeInt( GOLDEN_MAGIC );
+                out.writeInt( ticks );
+                out.writeDouble( timeStep );
+                out.writeInt( count );
+                out.writeInt( SAMPLES );
+                for( ParticleBuffer state : states ) {
+                    for( int i = 0; i < count; i++ ) {
+                        state.write( out, i );
+                    }
+                }
+            }
+        }
+
+        static Trajectory read( File file ) throws IOException {
+            try( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) ) ) {
+                if( in.readInt() != GOLDEN_MAGIC ) {
+                    throw new IOException( "Not a golden trajectory file: " + file );
+                }
+                int ticks = in.readInt();
+                double timeStep = in.readDouble();
+                int count = in.readInt();
+                if( in.readInt() != SAMPLES ) {
+                    throw new IOException( "Golden trajectory " + file + " has another sample count, run with -record" );
+                }
+                Trajectory trajectory = new Trajectory( ticks, timeStep, count );
+                for( ParticleBuffer state : trajectory.states ) {
+                    state.setSize( count );
+                    for( int i = 0; i < count; i++ ) {
+                        Particle.read( in, RscLoader.CURRENT_PSOBJ_VERSION, state, i );
+                    }
+                }
+                trajectory.measure();
+                return trajectory;
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for choosing how often to repaint so a target share of time is spent simulating
+ * Created: 10-19-2026
+ * Status: utility class, finished
+ * Dependencies: None
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+public final class RenderGovernor {
+
+    //weight of the newest measurement in the averaged costs
+    private static final double COST_WEIGHT = 0.1;
+    //longest interval between frames while adapting, in milliseconds
+    private static final long MAX_INTERVAL = 2000;
+    //length of the window the measured rates are taken over, in milliseconds
+    private static final long WINDOW = 1000;
+
+
+    //settings
+    private volatile double targetShare;//share of time spent simulating, adaptation is disabled if not positive
+    private volatile boolean onDemand;//if frames are only rendered when requested
+    private volatile boolean requested;
+    //averaged costs in milliseconds, the render cost is written by the event thread
+    private volatile double renderCost;
+    private double tickCost;
+    private long interval;
+    //measured rates of the last window
+    private long windowStart, windowTicks, windowNanos, windowFrames;
+    private volatile double simShare, tickRate, frameRate;
+
+
+    //constructor
+    public RenderGovernor() {
+        targetShare = 0.95;
+        onDemand = false;
+        requested = true;
+        renderCost = tickCost = 0;
+        interval = 0;
+        windowStart = System.currentTimeMillis();
+        windowTicks = windowNanos = windowFrames = 0;
+        simShare = tickRate = frameRate = 0;
+    }
+
+
+    //returns if a frame is due, ticks running back to back adapt the interval to the target share
+    public boolean shouldRender( long sinceLast, long frameLength, boolean unthrottled ) {
+        double share = targetShare;
+        if( unthrottled && share > 0 && share < 1 ) {
+            //the frame holds the particle lock for its render cost, so the simulation needs cost * share / ( 1 - share ) between frames
+            interval = Math.min( Math.max( (long)( renderCost * share / ( 1 - share ) ), frameLength ), MAX_INTERVAL );
+        } else {
+            interval = frameLength;
+        }
+        if( requested || ( !onDemand && sinceLast > interval ) ) {
+            requested = false;
+            windowFrames++;
+            return true;
+        }
+        return false;
+    }
+
+    //asks for a frame as soon as possible, used for camera movement and on demand rendering
+    public void requestRender() {
+        requested = true;
+    }
+
+    //records the cost of a rendered frame
+    public void recordRender( long nanos ) {
+        renderCost += ( nanos / 1e6 - renderCost ) * COST_WEIGHT;
+    }
+
+    //records the cost of a simulated tick and updates the measured rates
+    public void recordTick( long nanos, long currentTime ) {
+        tickCost += ( nanos / 1e6 - tickCost ) * COST_WEIGHT;
+        windowTicks++;
+        windowNanos += nanos;
+        long elapsed = currentTime - windowStart;
+        if( elapsed >= WINDOW ) {
+            simShare = windowNanos / ( elapsed * 1e6 );
+            tickRate = windowTicks * 1000.0 / elapsed;
+            frameRate = windowFrames * 1000.0 / elapsed;
+            windowStart = currentTime;
+            windowTicks = windowNanos = windowFrames = 0;
+        }
+    }
+
+    //clears the measured rates when the simulation is stopped
+    public void reset( long currentTime ) {
+        windowStart = currentTime;
+        windowTicks = windowNanos = windowFrames = 0;
+        simShare = tickRate = frameRate = 0;
+    }
+
+    //mutator methods
+    public void setTargetShare( double targetShare ) {
+        this.targetShare = targetShare;
+    }
+
+    public void setOnDemand( boolean onDemand ) {
+        this.onDemand = onDemand;
+        requested = true;
+    }
+
+
+    //accessor methods
+    public double getTargetShare() {
+        return targetShare;
+    }
+
+    public boolean getOnDemand() {
+        return onDemand;
+    }
+
+    public double getRenderCost() {
+        return renderCost;
+    }
+
+    public double getTickCost() {
+        return tickCost;
+    }
+
+    public String getStatus() {
+        String render = onDemand ? "On Demand" : interval + " ms";
+        return String.format( "Render Interval: %s --- Simulating: %.1f%% --- Ticks: %.1f/s --- Frames: %.1f/s",
+                render, simShare * 100, tickRate, frameRate );
+    }
+}
@@ -4,12 +4,16 @@ package particles;
  * Description: class for loading system resources and external config items
  * Created: 5-15-2022
  * Status: singleton class, finished
- * Dependencies: Environment, SimulationGUI, Simulator
+ * Dependencies: Environment, Particle, ParticleBuffer, ParticleStore, ScriptContext, SimulationGUI, Simulator
  * Licensed under GNU v3, see src/particles/Particles.java for more details
  */
 
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
 import java.io.DataInputStream;
+import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -27,7 +31,8 @@ public final class RscLoader extends ClassLoader {
     
     //constants
     public static final int PSOBJ_MAGIC = 0x5E65BEAD;
-    public static final int CURRENT_PSOBJ_VERSION = 0x01-0000-00;
+    public static final int LEGACY_PSOBJ_VERSION = 0x01-0000-00;
+    public static final int CURRENT_PSOBJ_VERSION = 0x02-0000-00;
     public static final String PSOBJ_EXTENSION = ".psobj";
     
     
@@ -72,14 +77,24 @@ public final class RscLoader extends ClassLoader {
                 Environment.class, SimulationGUI.CreationTemplate.class ) ).invoke( env, temp );
     }
     
-    //loads a generic script
+    //loads a generic script, scripts with a scriptMain method are given a context for the environment
     public void loadScript( Environment env, String filePath ) 
             throws IOException, NoSuchMethodException, IllegalAccessException {
         Class<?> cls = loadExternal( filePath );
-        MethodHandle main = lookup.findStatic( cls, "main", MethodType.methodType( void.class, String[].class ) );
+        MethodHandle main;
+        Object arg;
+        try {
+            main = lookup.findStatic( cls, "scriptMain", MethodType.methodType( void.class, ScriptContext.class ) );
+            arg = new ScriptContext( env );
+        } catch( NoSuchMethodException e ) {
+            main = lookup.findStatic( cls, "main", MethodType.methodType( void.class, String[].class ) );
+            arg = new String[0];
+        }
+        MethodHandle script = main;
+        Object scriptArg = arg;
         Thread thread = new Thread( () -> {
             try {
-                main.invoke( new String[0] );
+                script.invoke( scriptArg );
             } catch( Throwable t ) { 
                 throw new RuntimeException( t );
             }
@@ -99,33 +114,60 @@ public final class RscLoader extends ClassLoader {
     
     //read particles from a file
     public Particle[] readParticles( String fileName ) throws IOException {
-        DataInputStream stream = new DataInputStream( new FileInputStream( fileName ) );
+        try( DataInputStream stream = new DataInputStream( new BufferedInputStream( new FileInputStream( fileName ) ) ) ) {
+            return readParticles( stream );
+        }
+    }
+    
+    //read particles from a stream positioned before the psobj header
+    public Particle[] readParticles( DataInput stream ) throws IOException {
+        ParticleBuffer buffer = new ParticleBuffer();
+        readParticles( stream, buffer );
+        return buffer.toParticles();
+    }
+    
+    //read particles from a stream straight into a store, appending them without creating particle objects
+    public int readParticles( DataInput stream, ParticleStore store ) throws IOException {
         while( stream.readInt() != PSOBJ_MAGIC ) { }
-        switch( stream.readInt() ) {
+        int version = stream.readInt();
+        switch( version ) {
+            case LEGACY_PSOBJ_VERSION :
             case CURRENT_PSOBJ_VERSION :
                 int len = stream.readInt();
-                Particle[] particles = new Particle[len];
+                if( len < 0 ) {
+                    throw new IllegalArgumentException( "Invalid length" );
+                }
+                int base = store.size();
+                store.setSize( base + len );
                 for( int i = 0; i < len; i++ ) {
-                    Particle particle = new Particle();
-                    particle.read( stream );
-                    particles[i] = particle;
+                    Particle.read( stream, version, store, base + i );
                 }
-                stream.close();
-                return particles;
+                return len;
             default :
-                stream.close();
                 throw new IllegalArgumentException( "Invalid version" );
         }
     }
     
     //write particles to a file
     public void writeParticles( Particle[] particles, String fileName ) throws IOException {
-        DataOutputStream stream = new DataOutputStream( new FileOutputStream( fileName ) );
+        try( DataOutputStream stream = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( fileName ) ) ) ) {
+            stream.writeInt( PSOBJ_MAGIC );
+            stream.writeInt( CURRENT_PSOBJ_VERSION );
+            stream.writeInt( particles.length );
+            for( Particle particle : particles ) {
+                particle.write( stream );
+            }
+        }
+    }
+    
+    //write a packed particle snapshot or off-heap store to a stream
+    public void writeParticles( ParticleStore buffer, DataOutput stream ) throws IOException {
+        int len = buffer.size();
         stream.writeInt( PSOBJ_MAGIC );
         stream.writeInt( CURRENT_PSOBJ_VERSION );
-        stream.writeInt( particles.length );
-        for( Particle particle : particles ) {
-            particle.write( stream );
+        stream.writeInt( len );
+        for( int i = 0; i < len; i++ ) {
+            buffer.write( stream, i );
         }
     }
     
@@ -160,6 +202,8 @@ public final class RscLoader extends ClassLoader {
                 stream.read( bytes );
             }
             load = super.defineClass( null, bytes, 0, bytes.length );
+            //a class can only be defined once per loader, so loading the same file again reuses it
+            starterClasses.put( path, load );
             path = path.substring( 0, path.lastIndexOf( load.getName().replace( '.', '/' ) ) );
             filePaths.add( path );
         }
@@ -0,0 +1,308 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class giving scripts column reads, batched edits and per-tick callbacks on a running simulation
+ * Created: 10-19-2026
+ * Status: generic class, finished
+ * Dependencies: Environment, Material, Particle, ParticleBuffer
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public final class ScriptContext {
+
+    //functional interface for scripts called on the main thread after every tick
+    public interface TickCallback {
+        void onTick( View view );
+    }
+
+
+    //environment the script runs against
+    private final Environment environment;
+    //tick listeners registered for each callback
+    private final Map<TickCallback,Consumer<List<Particle>>> callbacks;
+
+
+    //constructor
+    public ScriptContext( Environment env ) {
+        this.environment = env;
+        callbacks = Collections.synchronizedMap( new IdentityHashMap<>() );
+    }
+
+
+    //captures the particle columns at the next tick boundary into a reusable buffer, returns the structure version
+    public long snapshot( ParticleBuffer buffer ) throws InterruptedException {
+        try {
+            return snapshotAsync( buffer ).get();
+        } catch( ExecutionException e ) {
+            throw new IllegalStateException( e.getCause() );
+        }
+    }
+
+    //captures the particle columns at the next tick boundary without waiting for it
+    public CompletableFuture<Long> snapshotAsync( ParticleBuffer buffer ) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        environment.queueInPlace( list -> {
+            buffer.capture( list );
+            future.complete( environment.getStructure() );
+        } );
+        return future;
+    }
+
+    //starts a batch whose indices refer to a snapshot with the given structure version
+    public Batch batch( long structure ) {
+        return new Batch( structure );
+    }
+
+    //starts a batch without indexed edits
+    public Batch batch() {
+        return new Batch( -1 );
+    }
+
+    //calls a callback on the main thread after every tick
+    public void onTick( TickCallback callback ) {
+        View view = new View();
+        Consumer<List<Particle>> listener = list -> {
+            view.particles = list;
+            callback.onTick( view );
+        };
+        if( callbacks.putIfAbsent( callback, listener ) == null ) {
+            environment.addTickListener( listener );
+        }
+    }
+
+    public void removeTickCallback( TickCallback callback ) {
+        Consumer<List<Particle>> listener = callbacks.remove( callback );
+        if( listener != null ) {
+            environment.removeTickListener( listener );
+        }
+    }
+
+
+    //index based view of the live particles, only valid inside a tick callback
+    public static final class View {
+
+        private List<Particle> particles;
+
+        private View() {
+            particles = Collections.emptyList();
+        }
+
+        public int size() {
+            return particles.size();
+        }
+
+        public double x( int i ) {
+            return particles.get( i ).getXPosition();
+        }
+
+        public double y( int i ) {
+            return particles.get( i ).getYPosition();
+        }
+
+        public double vx( int i ) {
+            return particles.get( i ).getXVelocity();
+        }
+
+        public double vy( int i ) {
+            return particles.get( i ).getYVelocity();
+        }
+
+        public double mass( int i ) {
+            return particles.get( i ).getMass();
+        }
+
+        //changes the velocity of a particle immediately
+        public void kick( int i, double xVeloc, double yVeloc ) {
+            Particle p = particles.get( i );
+            p.setXVelocity( p.getXVelocity() + xVeloc );
+            p.setYVelocity( p.getYVelocity() + yVeloc );
+        }
+
+        //captures the live particles into a reusable buffer
+        public void capture( ParticleBuffer buffer ) {
+            buffer.capture( particles );
+        }
+    }
+
+    //edits collected on the script thread and applied together at one tick boundary
+    public final class Batch {
+
+        private final long structure;
+        //indexed edits, only allowed when the batch has a structure version
+        private int[] kickIndex;
+        private double[] kickX, kickY;
+        private int kickCount;
+        private int[] removeIndex;
+        private int removeCount;
+        //unindexed edits
+        private double[] allX, allY;
+        private final List<Predicate<Particle>> removeIf;
+        private final List<Particle> spawned;
+        private boolean committed;
+
+        private Batch( long structure ) {
+            this.structure = structure;
+            kickIndex = removeIndex = new int[0];
+            kickX = kickY = new double[0];
+            kickCount = removeCount = 0;
+            removeIf = new ArrayList<>();
+            spawned = new ArrayList<>();
+            committed = false;
+        }
+
+        //adds to the velocity of a particle
+        public Batch kick( int i, double xVeloc, double yVeloc ) {
+            checkIndexed();
+            if( kickCount == kickIndex.length ) {
+                int len = Math.max( 16, kickCount * 2 );
+                kickIndex = Arrays.copyOf( kickIndex, len );
+                kickX = Arrays.copyOf( kickX, len );
+                kickY = Arrays.copyOf( kickY, len );
+            }
+            kickIndex[kickCount] = i;
+            kickX[kickCount] = xVeloc;
+            kickY[kickCount] = yVeloc;
+            kickCount++;
+            return this;
+        }
+
+        //adds to the velocity of every particle, the arrays are indexed like the snapshot
+        public Batch kick( double[] xVeloc, double[] yVeloc ) {
+            checkIndexed();
+            if( xVeloc.length != yVeloc.length ) {
+                throw new IllegalArgumentException( "Mismatched kick columns" );
+            }
+            allX = xVeloc.clone();
+            allY = yVeloc.clone();
+            return this;
+        }
+
+        //removes a particle
+        public Batch remove( int i ) {
+            checkIndexed();
+            if( removeCount == removeIndex.length ) {
+                removeIndex = Arrays.copyOf( removeIndex, Math.max( 16, removeCount * 2 ) );
+            }
+            removeIndex[ removeCount++ ] = i;
+            return this;
+        }
+
+        //removes every particle matching a predicate, tested on the main thread
+        public Batch removeIf( Predicate<Particle> predicate ) {
+            checkOpen();
+            removeIf.add( predicate );
+            return this;
+        }
+
+        //adds every particle in a buffer
+        public Batch spawn( ParticleBuffer buffer ) {
+            checkOpen();
+            Collections.addAll( spawned, buffer.toParticles() );
+            return this;
+        }
+
+        //adds a single particle
+        public Batch spawn( Material m, double xPosition, double yPosition, double xVelocity, double yVelocity ) {
+            checkOpen();
+            spawned.add( new Particle( m, xPosition, yPosition, xVelocity, yVelocity ) );
+            return this;
+        }
+
+        //applies every edit at the next tick boundary, or none of them if the particle list changed since the snapshot
+        public CompletableFuture<Void> commit() {
+            checkOpen();
+            committed = true;
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            Consumer<List<Particle>> operation = list -> {
+                try {
+                    apply( list );
+                    future.complete( null );
+                } catch( RuntimeException e ) {
+                    future.completeExceptionally( e );
+                }
+            };
+            //kicks alone keep the engine state, everything else has to be accepted again
+            if( removeCount == 0 && removeIf.isEmpty() && spawned.isEmpty() ) {
+                environment.queueInPlace( operation );
+            } else {
+                environment.queueOperation( operation );
+            }
+            return future;
+        }
+
+        //validates every index before changing anything
+        private void apply( List<Particle> list ) {
+            int size = list.size();
+            boolean indexed = kickCount > 0 || removeCount > 0 || allX != null;
+            if( indexed && structure != environment.getStructure() ) {
+                throw new IllegalStateException( "Particle list changed since the snapshot" );
+            }
+            if( allX != null && allX.length != size ) {
+                throw new IllegalStateException( "Kick columns do not match the particle count" );
+            }
+            for( int k = 0; k < kickCount; k++ ) {
+                Objects.checkIndex( kickIndex[k], size );
+            }
+            for( int k = 0; k < removeCount; k++ ) {
+                Objects.checkIndex( removeIndex[k], size );
+            }
+            //tests the predicates before changing anything so a failing predicate leaves the list untouched
+            Set<Particle> removed = Collections.newSetFromMap( new IdentityHashMap<>() );
+            for( int k = 0; k < removeCount; k++ ) {
+                removed.add( list.get( removeIndex[k] ) );
+            }
+            if( !removeIf.isEmpty() ) {
+                for( Particle p : list ) {
+                    for( Predicate<Particle> predicate : removeIf ) {
+                        if( predicate.test( p ) ) {
+                            removed.add( p );
+                            break;
+                        }
+                    }
+                }
+            }
+            if( allX != null ) {
+                for( int i = 0; i < size; i++ ) {
+                    Particle p = list.get( i );
+                    p.setXVelocity( p.getXVelocity() + allX[i] );
+                    p.setYVelocity( p.getYVelocity() + allY[i] );
+                }
+            }
+            for( int k = 0; k < kickCount; k++ ) {
+                Particle p = list.get( kickIndex[k] );
+                p.setXVelocity( p.getXVelocity() + kickX[k] );
+                p.setYVelocity( p.getYVelocity() + kickY[k] );
+            }
+            if( !removed.isEmpty() ) {
+                list.removeIf( removed::contains );
+            }
+            list.addAll( spawned );
+        }
+
+        private void checkIndexed() {
+            checkOpen();
+            if( structure < 0 ) {
+                throw new IllegalStateException( "Indexed edits need a snapshot structure version" );
+            }
+        }
+
+        private void checkOpen() {
+            if( committed ) {
+                throw new IllegalStateException( "Batch already committed" );
+            }
+        }
+    }
+}
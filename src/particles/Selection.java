@@ -0,0 +1,374 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for selecting particles by rectangle, lasso or pick and editing the selection in queued batches
+ * Created: 10-19-2026
+ * Status: utility class, finished
+ * Dependencies: Environment, KdTree, Material, Particle, ParticleBuffer
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+public final class Selection implements Environment.Overlay {
+
+    //selected particles outlined individually up to this count, larger selections only show their bounds
+    private static final int MAX_OUTLINES = 20000;
+    //pixels around a particle that still pick it
+    private static final double PICK_PIXELS = 4;
+    //a running simulation moves particles every frame, so the index is only rebuilt this often
+    private static final long REBUILD_MILLIS = 250;
+    //and at most once per this many times its build took, so large simulations keep the event thread responsive
+    private static final long REBUILD_RATIO = 10;
+    private static final Color OUTLINE = new Color( 255, 255, 0, 160 );
+
+
+    //functional interface for a batch operation on the selected particles
+    private interface Batch {
+        void apply( List<Particle> list, int[] indices );
+    }
+
+
+    //environment the selection edits
+    private final Environment environment;
+    //index over the last frame, only used on the event thread
+    private final KdTree tree;
+    private ParticleBuffer frame;
+    private long frameStructure, treeStructure;
+    private long builtAt, buildMillis;
+    private boolean stale;
+    //selected indices into the particle list, only valid while its structure is unchanged
+    private int[] selected;
+    private int count;
+    private long selectedStructure;
+    //gesture being drawn in world coordinates
+    private double[] pathX, pathY;
+    private int pathLength;
+    private boolean lasso;
+    //particle under the cursor and the cursor position on screen
+    private int hover;
+    private int hoverX, hoverY;
+
+
+    //constructor
+    public Selection( Environment env ) {
+        environment = env;
+        tree = new KdTree();
+        frame = new ParticleBuffer();
+        frameStructure = treeStructure = selectedStructure = -1;
+        builtAt = buildMillis = 0;
+        stale = true;
+        selected = new int[16];
+        count = 0;
+        pathX = new double[16];
+        pathY = new double[16];
+        pathLength = 0;
+        lasso = false;
+        hover = -1;
+    }
+
+
+    //keeps the frame the index is built from and draws the selection, the gesture and the hovered particle
+    @Override
+    public void paint( Graphics g, ParticleBuffer frame, long structure ) {
+        this.frame = frame;
+        frameStructure = structure;
+        stale = true;
+        if( structure != selectedStructure ) {
+            count = 0;
+        }
+        if( structure != treeStructure ) {
+            hover = -1;
+        }
+        int width = environment.getWidth(), height = environment.getHeight();
+        double posX = environment.getPosX(), posY = environment.getPosY(), zoom = environment.getZoom();
+        g.setColor( OUTLINE );
+        if( count > 0 ) {
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for( int k = 0; k < count; k++ ) {
+                int i = selected[k];
+                double x = frame.getXPosition( i ), y = frame.getYPosition( i );
+                double r = Material.get( frame.getMaterialId( i ) ).getRadius();
+                minX = Math.min( minX, x - r );
+                minY = Math.min( minY, y - r );
+                maxX = Math.max( maxX, x + r );
+                maxY = Math.max( maxY, y + r );
+                if( count <= MAX_OUTLINES ) {
+                    int s = Math.max( (int)( r * 2 * zoom ), 3 );
+                    g.drawOval( (int)( ( x - r - posX ) * zoom ) + width / 2, (int)( ( posY - y - r ) * zoom ) + height / 2, s, s );
+                }
+            }
+            g.drawRect( (int)( ( minX - posX ) * zoom ) + width / 2, (int)( ( posY - maxY ) * zoom ) + height / 2,
+                    (int)( ( maxX - minX ) * zoom ), (int)( ( maxY - minY ) * zoom ) );
+            g.drawString( "Selected: " + count + " particles", 0, height - 4 );
+        }
+        //the gesture being drawn, a lasso is closed back to its start
+        if( pathLength > 0 ) {
+            int[] xs = new int[ lasso ? pathLength : 4 ];
+            int[] ys = new int[ xs.length ];
+            if( lasso ) {
+                for( int k = 0; k < pathLength; k++ ) {
+                    xs[k] = (int)( ( pathX[k] - posX ) * zoom ) + width / 2;
+                    ys[k] = (int)( ( posY - pathY[k] ) * zoom ) + height / 2;
+                }
+            } else {
+                int x0 = (int)( ( pathX[0] - posX ) * zoom ) + width / 2, y0 = (int)( ( posY - pathY[0] ) * zoom ) + height / 2;
+                int x1 = (int)( ( pathX[1] - posX ) * zoom ) + width / 2, y1 = (int)( ( posY - pathY[1] ) * zoom ) + height / 2;
+                xs = new int[]{ x0, x1, x1, x0 };
+                ys = new int[]{ y0, y0, y1, y1 };
+            }
+            g.drawPolygon( xs, ys, xs.length );
+        }
+        if( hover >= 0 && hover < frame.size() ) {
+            Material m = Material.get( frame.getMaterialId( hover ) );
+            String[] lines = {
+                    "Particle " + hover + " --- Material " + m.getId(),
+                    String.format( "Position: ( %.4g, %.4g )", frame.getXPosition( hover ), frame.getYPosition( hover ) ),
+                    String.format( "Velocity: ( %.4g, %.4g )", frame.getXVelocity( hover ), frame.getYVelocity( hover ) ),
+                    String.format( "Mass: %.4g --- Radius: %.4g", m.getMass(), m.getRadius() ),
+                    String.format( "Spring: %.4g --- Drag: %.4g --- Flags: %d", 1 / m.getInvSpring(), m.getDrag(), m.getFlags() ) };
+            g.setColor( Color.WHITE );
+            for( int k = 0; k < lines.length; k++ ) {
+                g.drawString( lines[k], hoverX + 12, hoverY + 12 * ( k + 1 ) );
+            }
+        }
+    }
+
+    //picks the particle under a point, returns whether the hovered particle changed
+    public boolean hover( double x, double y, int screenX, int screenY ) {
+        hoverX = screenX;
+        hoverY = screenY;
+        int picked = pick( x, y );
+        if( picked == hover ) {
+            return false;
+        }
+        hover = picked;
+        return true;
+    }
+
+    //starts a rectangle or lasso gesture at a world point
+    public void begin( double x, double y, boolean lasso ) {
+        this.lasso = lasso;
+        pathLength = 0;
+        extend( x, y );
+        if( !lasso ) {
+            extend( x, y );
+        }
+    }
+
+    //moves the corner of a rectangle or adds a point to a lasso
+    public void extend( double x, double y ) {
+        if( !lasso && pathLength == 2 ) {
+            pathX[1] = x;
+            pathY[1] = y;
+            return;
+        }
+        if( pathLength == pathX.length ) {
+            pathX = Arrays.copyOf( pathX, pathLength * 2 );
+            pathY = Arrays.copyOf( pathY, pathLength * 2 );
+        }
+        pathX[pathLength] = x;
+        pathY[pathLength] = y;
+        pathLength++;
+    }
+
+    //selects the particles inside the gesture, adding them to the current selection or replacing it
+    public void finish( boolean add ) {
+        if( pathLength == 0 ) {
+            return;
+        }
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for( int k = 0; k < pathLength; k++ ) {
+            minX = Math.min( minX, pathX[k] );
+            minY = Math.min( minY, pathY[k] );
+            maxX = Math.max( maxX, pathX[k] );
+            maxY = Math.max( maxY, pathY[k] );
+        }
+        boolean[] inside = start( add );
+        //the tree narrows a lasso to its bounds, so only the particles there are tested against the polygon
+        tree().forEachInRect( minX, minY, maxX, maxY, i -> {
+            if( !inside[i] && ( !lasso || contains( frame.getXPosition( i ), frame.getYPosition( i ) ) ) ) {
+                inside[i] = true;
+                push( i );
+            }
+        } );
+        pathLength = 0;
+    }
+
+    //adds the particle under a point to the selection, or removes it if it was selected
+    public void toggle( double x, double y ) {
+        int picked = pick( x, y );
+        if( picked < 0 ) {
+            return;
+        }
+        boolean[] inside = start( true );
+        if( inside[picked] ) {
+            int k = 0;
+            while( selected[k] != picked ) {
+                k++;
+            }
+            selected[k] = selected[ --count ];
+        } else {
+            push( picked );
+        }
+    }
+
+    public void clear() {
+        count = 0;
+        pathLength = 0;
+    }
+
+    //queues removing the selected particles as one operation
+    public void delete() {
+        queue( ( list, indices ) -> {
+            boolean[] remove = new boolean[ list.size() ];
+            for( int i : indices ) {
+                remove[i] = true;
+            }
+            int kept = 0;
+            for( int i = 0; i < remove.length; i++ ) {
+                if( !remove[i] ) {
+                    list.set( kept++, list.get( i ) );
+                }
+            }
+            list.subList( kept, list.size() ).clear();
+        }, true );
+        count = 0;
+    }
+
+    //queues moving the selected particles by an offset as one operation
+    public void translate( double xOffset, double yOffset ) {
+        queue( ( list, indices ) -> {
+            for( int i : indices ) {
+                Particle p = list.get( i );
+                p.setXPosition( p.getXPosition() + xOffset );
+                p.setYPosition( p.getYPosition() + yOffset );
+            }
+        }, false );
+    }
+
+    //queues adding a velocity to the selected particles as one operation
+    public void addVelocity( double xVelocity, double yVelocity ) {
+        queue( ( list, indices ) -> {
+            for( int i : indices ) {
+                Particle p = list.get( i );
+                p.setXVelocity( p.getXVelocity() + xVelocity );
+                p.setYVelocity( p.getYVelocity() + yVelocity );
+            }
+        }, false );
+    }
+
+    //queues giving the selected particles a color as one operation, keeping the rest of their materials
+    public void recolor( Color color ) {
+        queue( ( list, indices ) -> {
+            HashMap<Material,Material> recolored = new HashMap<>();
+            for( int i : indices ) {
+                Particle p = list.get( i );
+                p.setMaterial( recolored.computeIfAbsent( p.getMaterial(), m -> m.withColor( color ) ) );
+            }
+        }, false );
+    }
+
+    //copies the current states of the selected particles on the main thread and passes them to a consumer there
+    public void capture( Consumer<ParticleBuffer> action ) {
+        queue( ( list, indices ) -> {
+            ParticleBuffer snapshot = new ParticleBuffer( indices.length );
+            for( int i : indices ) {
+                Particle p = list.get( i );
+                snapshot.add( p.getMaterial(), p.getXPosition(), p.getYPosition(), p.getXVelocity(), p.getYVelocity() );
+            }
+            action.accept( snapshot );
+        }, false );
+    }
+
+
+    //accessor methods
+    public int getCount() {
+        return count;
+    }
+
+
+    //private utility methods
+    //queues a batch with a copy of the selection, skipped if particles were added or removed since selecting
+    private void queue( Batch batch, boolean structural ) {
+        if( count == 0 ) {
+            return;
+        }
+        int[] indices = Arrays.copyOf( selected, count );
+        long structure = selectedStructure;
+        Consumer<List<Particle>> operation = list -> {
+            if( environment.getStructure() == structure ) {
+                batch.apply( list, indices );
+            }
+        };
+        if( structural ) {
+            environment.queueOperation( operation );
+        } else {
+            environment.queueInPlace( operation );
+        }
+        environment.getGovernor().requestRender();
+    }
+
+    //returns the particle under a point within its radius plus a few pixels, or -1
+    private int pick( double x, double y ) {
+        int i = tree().nearest( x, y );
+        if( i < 0 || i >= frame.size() ) {
+            return -1;
+        }
+        double reach = Material.get( frame.getMaterialId( i ) ).getRadius() + PICK_PIXELS / environment.getZoom();
+        return Math.hypot( frame.getXPosition( i ) - x, frame.getYPosition( i ) - y ) <= reach ? i : -1;
+    }
+
+    //rebuilds the index from the last frame when particles were added or removed, or when it is old
+    private KdTree tree() {
+        long now = System.currentTimeMillis();
+        if( stale && ( treeStructure != frameStructure || now - builtAt > Math.max( REBUILD_MILLIS, buildMillis * REBUILD_RATIO ) ) ) {
+            tree.build( frame, Particle.HIDDEN );
+            treeStructure = frameStructure;
+            builtAt = System.currentTimeMillis();
+            buildMillis = builtAt - now;
+            stale = false;
+        }
+        return tree;
+    }
+
+    //prepares the selection for the frame the tree was built from and marks the already selected particles
+    private boolean[] start( boolean add ) {
+        tree();
+        if( !add || selectedStructure != treeStructure ) {
+            count = 0;
+        }
+        selectedStructure = treeStructure;
+        boolean[] inside = new boolean[ frame.size() ];
+        for( int k = 0; k < count; k++ ) {
+            inside[ selected[k] ] = true;
+        }
+        return inside;
+    }
+
+    private void push( int i ) {
+        if( count == selected.length ) {
+            selected = Arrays.copyOf( selected, count * 2 );
+        }
+        selected[ count++ ] = i;
+    }
+
+    //even-odd test of a point against the lasso
+    private boolean contains( double x, double y ) {
+        boolean inside = false;
+        for( int k = 0, j = pathLength - 1; k < pathLength; j = k++ ) {
+            if( ( pathY[k] > y ) != ( pathY[j] > y )
+                    && x < ( pathX[j] - pathX[k] ) * ( y - pathY[k] ) / ( pathY[j] - pathY[k] ) + pathX[k] ) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
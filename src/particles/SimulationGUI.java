@@ -4,7 +4,7 @@ package particles;
  * Description: gui and display frame manager
  * Created: 5-11-2022
  * Status: factory class, finished
- * Dependencies: Environment, Particle, RscLoader, Simulator
+ * Dependencies: Checkpointer, ClumpFinder, ControlServer, CostProfiler, DiskStatistics, Environment, Generator, Material, Particle, ParticleBuffer, RscLoader, Selection, Simulator, StepController
  * Licensed under GNU v3, see src/particles/Particles.java for more details
  */
 
@@ -32,12 +32,18 @@ import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.SplittableRandom;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import javax.swing.JColorChooser;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
@@ -68,6 +74,19 @@ public final class SimulationGUI extends Container implements LayoutManager,
             300, new Color( 255, 0, 0, 75 ), 1, 1.15, 2, 0.1, 250, 0, 0, 0.00441 );
     public static final CreationTemplate PROTOPLANETARY_DISK = new CreationTemplate( 
             300, new Color( 255, 0, 0, 75 ), 1, 1.15, 2, 0.1, 250, 0, 0, 0 );
+    //experiments of the experiment menu in order, with the time steps they start at
+    public static final List<Experiment> EXPERIMENTS = List.of( 
+            new Experiment( "Ring Formation", RING_FORMATION, 0.05, SimulationGUI::ringFormation ), 
+            new Experiment( "Black Hole", BLACK_HOLE, 1, SimulationGUI::blackHole ), 
+            new Experiment( "Direct Collision", DIRECT_COLLISION, 1, SimulationGUI::directCollision ), 
+            new Experiment( "Penetration Collision", PENETRATION_COLLISION, 0.1, SimulationGUI::penetrationCollision ), 
+            new Experiment( "Hit and Run Collision", HIT_AND_RUN_COLLISION, 1, SimulationGUI::hitAndRunCollision ), 
+            new Experiment( "Cosmological Sponge", COSMOLOGICAL_SPONGE, 0.05, SimulationGUI::cosmologicalSponge ), 
+            new Experiment( "Moon-Creating Collision", MOON_CREATING_COLLISION, 0.3, SimulationGUI::moonCreatingCollision ), 
+            new Experiment( "Mantle Differentiation", MANTLE_DIFFERENTIATION, 0.3, SimulationGUI::mantleDifferentiation ), 
+            new Experiment( "Angular Momentum", ANGULAR_MOMENTUM, 1, SimulationGUI::angularMomentum ), 
+            new Experiment( "Accretion Disk", ACCRETION_DISK, 0.05, SimulationGUI::accretionDisk ), 
+            new Experiment( "Protoplanetary Disk", PROTOPLANETARY_DISK, 0.05, SimulationGUI::protoplanetaryDisk ) );
     
     
     //height of each editpane component
@@ -85,10 +104,18 @@ public final class SimulationGUI extends Container implements LayoutManager,
     private final TextField xVelocityField;
     private final TextField yVelocityField;
     private final TextField angVelocityField;
+    private final TextField seedField;
     //fields for storing internal states
     private final CreationTemplate fieldStates;
     private MouseEvent lastDrag;
     private boolean reflectExp;
+    private Checkpointer checkpointer;
+    private ClumpFinder clumpFinder;
+    private DiskStatistics diskStatistics;
+    private ControlServer controlServer;
+    private CostProfiler costProfiler;
+    private final Selection selection;
+    private boolean selecting;
     
     //constructor
     private SimulationGUI( Environment env ) {
@@ -96,6 +123,14 @@ public final class SimulationGUI extends Container implements LayoutManager,
         fieldStates = new CreationTemplate( 0, new Color( 255, 255, 255, 50 ), 0, 0, 0, 0, 0, 0, 0, 0 );
         lastDrag = null;
         reflectExp = false;
+        checkpointer = null;
+        clumpFinder = null;
+        diskStatistics = null;
+        controlServer = null;
+        costProfiler = null;
+        selection = new Selection( env );
+        selecting = false;
+        env.addOverlay( selection );
         super.add( new Label( "Object Creation Options" ) );
         Button colorSelection = new Button( "Choose Color" );
         colorSelection.setBackground( fieldStates.color );
@@ -116,6 +151,7 @@ public final class SimulationGUI extends Container implements LayoutManager,
         xVelocityField = addField( "Velocity X-Component", "0" );
         yVelocityField = addField( "Velocity Y-Component", "0" );
         angVelocityField = addField( "Angular Velocity","0" );
+        seedField = addField( "Seed", "0" );
     }
     
     
@@ -146,12 +182,18 @@ public final class SimulationGUI extends Container implements LayoutManager,
     //listener for when the environment component is clicked
     @Override
     public void mouseClicked( MouseEvent m ) {
+        //shift or control clicks pick particles into the selection instead of spawning a planet
+        if( m.isShiftDown() || m.isControlDown() ) {
+            selection.toggle( worldX( m ), worldY( m ) );
+            environment.getGovernor().requestRender();
+            return;
+        }
         try {
             updateFields();
-            double zoom = environment.getZoom();
-            double x = environment.getPosX() + ( m.getX() - environment.getWidth() / 2 ) / zoom;
-            double y = environment.getPosY() + ( environment.getHeight() / 2 - m.getY() ) / zoom;
-            environment.queueOperation( list -> addParticles( list, fieldStates, x, y ) );
+            double x = worldX( m );
+            double y = worldY( m );
+            CreationTemplate temp = fieldStates.clone();
+            generateParticles( buffer -> addParticles( buffer, temp, x, y ), false );
             environment.requestFocus();
         } catch( NumberFormatException e ) {
             errorMessage( "Invalid options fields format", e );
@@ -162,11 +204,30 @@ public final class SimulationGUI extends Container implements LayoutManager,
     @Override
     public void mouseReleased( MouseEvent m ) {
         lastDrag = null;
+        if( selecting ) {
+            selecting = false;
+            selection.finish( false );
+            environment.getGovernor().requestRender();
+        }
+    }
+    
+    //listener for mouse presses, shift starts a rectangle selection and control a lasso selection
+    @Override
+    public void mousePressed( MouseEvent m ) {
+        if( m.isShiftDown() || m.isControlDown() ) {
+            selecting = true;
+            selection.begin( worldX( m ), worldY( m ), m.isControlDown() );
+        }
     }
     
-    //listener for mouse drag events in environment component to move camera
+    //listener for mouse drag events in environment component to move camera or draw a selection
     @Override
     public void mouseDragged( MouseEvent m ) {
+        if( selecting ) {
+            selection.extend( worldX( m ), worldY( m ) );
+            environment.getGovernor().requestRender();
+            return;
+        }
         if( lastDrag != null ) {
             double zoom = environment.getZoom();
             environment.setPosX( environment.getPosX() - ( m.getX() - lastDrag.getX() ) / zoom );
@@ -175,6 +236,14 @@ public final class SimulationGUI extends Container implements LayoutManager,
         lastDrag = m;
     }
 
+    //listener for mouse moves to show the properties of the particle under the cursor
+    @Override
+    public void mouseMoved( MouseEvent m ) {
+        if( selection.hover( worldX( m ), worldY( m ), m.getX(), m.getY() ) ) {
+            environment.getGovernor().requestRender();
+        }
+    }
+    
     //listener for mouse wheel events to in environment component to adjust the zoom of the camera
     @Override
     public void mouseWheelMoved( MouseWheelEvent m ) {
@@ -227,14 +296,10 @@ public final class SimulationGUI extends Container implements LayoutManager,
     @Override
     public void windowDeactivated( WindowEvent w ) { }
     @Override
-    public void mousePressed( MouseEvent m ) { }
-    @Override
     public void mouseEntered( MouseEvent m ) { }
     @Override
     public void mouseExited( MouseEvent m ) { }
     @Override
-    public void mouseMoved( MouseEvent m ) { }
-    @Override
     public void addLayoutComponent( String s, Component c ) { }
     @Override
     public void removeLayoutComponent( Component c ) { }
@@ -249,6 +314,15 @@ public final class SimulationGUI extends Container implements LayoutManager,
         return field;
     }
     
+    //converts the position of a mouse event on the environment to simulation coordinates
+    private double worldX( MouseEvent m ) {
+        return environment.getPosX() + ( m.getX() - environment.getWidth() / 2 ) / environment.getZoom();
+    }
+    
+    private double worldY( MouseEvent m ) {
+        return environment.getPosY() + ( environment.getHeight() / 2 - m.getY() ) / environment.getZoom();
+    }
+    
     //updates default creation template with fields from the options component
     private void updateFields() {
         int res = Integer.parseInt( resolutionField.getText() );
@@ -262,11 +336,12 @@ public final class SimulationGUI extends Container implements LayoutManager,
         fieldStates.xVelocity = Double.parseDouble( xVelocityField.getText() );
         fieldStates.yVelocity = Double.parseDouble( yVelocityField.getText() );
         fieldStates.angVelocity = Double.parseDouble( angVelocityField.getText() );
+        fieldStates.seed = Long.parseLong( seedField.getText() );
     }
     
     //invoke an experiment from the experiment menu
-    private void applyExperiment( CreationTemplate temp, double timeStep, 
-            BiConsumer<CreationTemplate,List<Particle>> toAct ) {
+    private void applyExperiment( Experiment experiment ) {
+        CreationTemplate temp = experiment.template;
         if( reflectExp ) {
             try {
                 updateFields();
@@ -276,17 +351,53 @@ public final class SimulationGUI extends Container implements LayoutManager,
             }
             temp = fieldStates;
         } else {
-            environment.setTimeStep( timeStep );
+            environment.setTimeStep( experiment.timeStep );
             environment.setTimePassed( 0 );
             environment.setZoom( 1 );
         }
         environment.setPosX( 0 );
         environment.setPosY( 0 );
-        CreationTemplate toUse = temp;
-        environment.queueOperation( list -> {
-            list.clear();
-            toAct.accept( toUse, list );
-        } );
+        CreationTemplate toUse = temp == fieldStates ? temp.clone() : temp;
+        generateParticles( buffer -> experiment.generator.accept( toUse, buffer ), true );
+    }
+    
+    //generates particles on a background thread so only adding them holds the particle lock
+    private void generateParticles( Consumer<ParticleBuffer> generator, boolean replace ) {
+        Thread thread = new Thread( () -> {
+            try {
+                ParticleBuffer buffer = new ParticleBuffer();
+                generator.accept( buffer );
+                Particle[] particles = Generator.toParticles( buffer );
+                environment.queueOperation( list -> {
+                    if( replace ) {
+                        list.clear();
+                    }
+                    list.addAll( Arrays.asList( particles ) );
+                } );
+            } catch( RuntimeException|OutOfMemoryError e ) {
+                EventQueue.invokeLater( () -> errorMessage( "Failed to generate particles", e ) );
+            }
+        }, "Experiment-Generator" );
+        thread.start();
+    }
+    
+    //asks for a file and writes particle states to it on a background thread so large saves do not block the gui
+    private static void saveParticles( FileDialog selector, ParticleBuffer snapshot ) {
+        selector.setMode( FileDialog.SAVE );
+        selector.setVisible( true );
+        String fileName = selector.getFile();
+        if( fileName != null ) {
+            String name = fileName.endsWith( RscLoader.PSOBJ_EXTENSION ) ? fileName : fileName + RscLoader.PSOBJ_EXTENSION;
+            Thread thread = new Thread( () -> {
+                try( DataOutputStream stream = new DataOutputStream( 
+                        new BufferedOutputStream( new FileOutputStream( name ) ) ) ) {
+                    RscLoader.rsc().writeParticles( snapshot, stream );
+                } catch( IOException e ) {
+                    EventQueue.invokeLater( () -> errorMessage( "Failed to save file", e ) );
+                }
+            }, "Save-Writer" );
+            thread.start();
+        }
     }
     
     //display a error message with exception data
@@ -324,176 +435,206 @@ public final class SimulationGUI extends Container implements LayoutManager,
         }
     }
     
-    //adds a planet with specific velocity, size, and modification parameters
-    private static void addPlanet( List<Particle> toAdd, CreationTemplate temp, int count,
-            double x, double y, double vx, double vy, BiConsumer<Particle,Double> actor ) {
+    //adds a planet in rings around its center with specific velocity, size, and layering of materials by distance
+    private static void addPlanet( ParticleBuffer toAdd, CreationTemplate temp, int count, long seed,
+            double x, double y, double vx, double vy, Layering layering ) {
+        //lays out the rings up front so every particle can be placed independently
+        double[] ringRadii = new double[16];
+        double[] ringAngDivs = new double[16];
+        int[] ringStarts = new int[17];
+        int rings = 0;
         double currRadii = 0;
-        double currAng = 0;
         double angDiv = CIRCLE + 0.1;
-        vx += temp.xVelocity;
-        vy += temp.yVelocity;
-        for( int i = 0; i < count; i++ ) {
-            double partX = Math.sin( currAng ) * currRadii;
-            double partY = Math.cos( currAng ) * currRadii;
-            Particle part = new Particle( temp.mass, temp.radius, temp.spring, temp.drag, temp.color, 
-                    partX + x, partY + y, -partY * temp.angVelocity + vx, partX * temp.angVelocity + vy );
-            toAdd.add( part );
-            actor.accept( part, currRadii );
-            if( ( currAng += angDiv ) > CIRCLE - angDiv ) {
-                currRadii += temp.distances * 2;
-                currAng = 0;
-                angDiv = CIRCLE * temp.distances / ( currRadii * Math.PI );
+        for( int placed = 0; placed < count; rings++ ) {
+            if( rings == ringRadii.length ) {
+                ringRadii = Arrays.copyOf( ringRadii, rings * 2 );
+                ringAngDivs = Arrays.copyOf( ringAngDivs, rings * 2 );
+                ringStarts = Arrays.copyOf( ringStarts, rings * 2 + 1 );
+            }
+            int n = 1;
+            while( ( n + 1 ) * angDiv <= CIRCLE ) {
+                n++;
             }
+            ringRadii[rings] = currRadii;
+            ringAngDivs[rings] = angDiv;
+            ringStarts[rings] = placed;
+            placed += n;
+            currRadii += temp.distances * 2;
+            angDiv = CIRCLE * temp.distances / ( currRadii * Math.PI );
         }
+        ringStarts[rings] = count;
+        int[] starts = ringStarts;
+        double[] radii = ringRadii, angDivs = ringAngDivs;
+        int ringCount = rings;
+        int base = toAdd.size();
+        double xVeloc = vx + temp.xVelocity;
+        double yVeloc = vy + temp.yVelocity;
+        Material material = temp.material();
+        Generator.generate( toAdd, count, seed, ( i, random, out ) -> {
+            int index = i - base;
+            int ring = Arrays.binarySearch( starts, 0, ringCount, index );
+            ring = ring < 0 ? -ring - 2 : ring;
+            double dist = radii[ring];
+            double angle = ( index - starts[ring] ) * angDivs[ring];
+            double partX = Math.sin( angle ) * dist;
+            double partY = Math.cos( angle ) * dist;
+            out.set( i, layering == null ? material : layering.pick( dist, random ), partX + x, partY + y, 
+                    -partY * temp.angVelocity + xVeloc, partX * temp.angVelocity + yVeloc );
+        } );
     }
     
     
-    //miscellaneous particle factory methods
-    public static void addParticles( List<Particle> toAdd, CreationTemplate temp, double x, double y ) {
-        addPlanet( toAdd, temp, temp.count, x, y, 0, 0, ( p, d ) -> {} );
+    //functional interface for choosing the material of a planet particle from its distance to the center
+    private interface Layering {
+        Material pick( double dist, SplittableRandom random );
     }
     
-    public static void ringFormation( CreationTemplate temp, List<Particle> toAdd ) {
+    
+    //miscellaneous particle factory methods, every random draw comes from the seed of the template
+    public static void addParticles( ParticleBuffer toAdd, CreationTemplate temp, double x, double y ) {
+        addPlanet( toAdd, temp, temp.count, temp.seed, x, y, 0, 0, null );
+    }
+    
+    public static void ringFormation( CreationTemplate temp, ParticleBuffer toAdd ) {
         double mainMass = temp.mass * temp.count * 50;
         double radius = temp.distances * Math.sqrt( temp.count ) * 4;
         addParticles( toAdd, temp, radius * 2.5, 0 );
-        toAdd.add( new Particle( mainMass, radius, temp.spring, temp.drag, Color.YELLOW, 0, 0, 
-                temp.xVelocity * -0.02, temp.yVelocity * -0.02 ) );
+        toAdd.add( Material.of( mainMass, radius, temp.spring, temp.drag, Color.YELLOW, 0 ), 0, 0, 
+                temp.xVelocity * -0.02, temp.yVelocity * -0.02 );
     }
     
-    public static void blackHole( CreationTemplate temp, List<Particle> toAdd ) {
+    public static void blackHole( CreationTemplate temp, ParticleBuffer toAdd ) {
         double mainMass = temp.mass * temp.count * 2;
         double radius = temp.distances * Math.sqrt( temp.count ) * 0.1;
         addParticles( toAdd, temp, radius * 30, 0 );
-        toAdd.add( new Particle( mainMass, radius, temp.spring, temp.drag, Color.DARK_GRAY, 0, 0, 
-                temp.xVelocity * -0.5, temp.yVelocity * -0.5 ) );
+        toAdd.add( Material.of( mainMass, radius, temp.spring, temp.drag, Color.DARK_GRAY, 0 ), 0, 0, 
+                temp.xVelocity * -0.5, temp.yVelocity * -0.5 );
     }
     
-    public static void directCollision( CreationTemplate temp, List<Particle> toAdd ) {
+    public static void directCollision( CreationTemplate temp, ParticleBuffer toAdd ) {
         int indCount = temp.count / 2;
         double max = temp.distances * Math.sqrt( indCount );
-        Color c1i = new Color( 255, 255, 0, 128 ), c1m = new Color( 255, 0, 0, 128 ), c1c = new Color( 144, 144, 144, 192 );
-        addPlanet( toAdd, temp, indCount, max * 2, 0, 0, 0, 
-                ( p, d ) -> p.setColor( d / max < 0.5 ? c1i : d / max < 0.95 ? c1m : c1c  ) );
-        Color c2i = new Color( 128, 255, 0, 128 ), c2m = new Color( 128, 128, 0, 128 ), c2c = new Color( 112, 112, 112, 192 );
-        addPlanet( toAdd, temp, indCount, -max * 2, 0, -2 * temp.xVelocity, -2 * temp.yVelocity, 
-                ( p, d ) -> p.setColor(  d / max < 0.5 ? c2i : d / max < 0.95 ? c2m : c2c ) );
+        Material base = temp.material();
+        Material c1i = base.withColor( new Color( 255, 255, 0, 128 ) ), c1m = base.withColor( new Color( 255, 0, 0, 128 ) ), 
+                c1c = base.withColor( new Color( 144, 144, 144, 192 ) );
+        addPlanet( toAdd, temp, indCount, temp.seed, max * 2, 0, 0, 0, 
+                ( d, r ) -> d / max < 0.5 ? c1i : d / max < 0.95 ? c1m : c1c );
+        Material c2i = base.withColor( new Color( 128, 255, 0, 128 ) ), c2m = base.withColor( new Color( 128, 128, 0, 128 ) ), 
+                c2c = base.withColor( new Color( 112, 112, 112, 192 ) );
+        addPlanet( toAdd, temp, indCount, temp.seed + 1, -max * 2, 0, -2 * temp.xVelocity, -2 * temp.yVelocity, 
+                ( d, r ) -> d / max < 0.5 ? c2i : d / max < 0.95 ? c2m : c2c );
     }
     
-    public static void penetrationCollision( CreationTemplate temp, List<Particle> toAdd ) {
+    public static void penetrationCollision( CreationTemplate temp, ParticleBuffer toAdd ) {
         int side = (int)Math.sqrt( temp.count * 0.75 ) * 5 + 5;
-        Color cloud = new Color( 255, 255, 255, 50 );
-        for( int x = -side; x < side; x += 10 ) {
-            for( int y = -side; y < side; y += 10 ) {
-                toAdd.add( new Particle( 0.2, 5, 0.2, 0.001, cloud, x, y, 0, 0 ) );
-            }
-        }
-        addPlanet( toAdd, temp, temp.count / 4, -side * 2, 0, 0, 0, ( p, d ) -> {} );
+        int cells = ( 2 * side + 9 ) / 10;
+        Material cloud = Material.of( 0.2, 5, 0.2, 0.001, new Color( 255, 255, 255, 50 ), 0 );
+        int base = toAdd.size();
+        Generator.generate( toAdd, cells * cells, temp.seed, ( i, random, out ) -> {
+            int index = i - base;
+            out.set( i, cloud, -side + index / cells * 10, -side + index % cells * 10, 0, 0 );
+        } );
+        addPlanet( toAdd, temp, temp.count / 4, temp.seed + 1, -side * 2, 0, 0, 0, null );
     }
     
-    public static void hitAndRunCollision( CreationTemplate temp, List<Particle> toAdd ) {
+    public static void hitAndRunCollision( CreationTemplate temp, ParticleBuffer toAdd ) {
         int indCount1 = temp.count * 2 / 3, indCount2 = temp.count / 3;
         double max1 = temp.distances * Math.sqrt( indCount1 ), max2 = temp.distances * Math.sqrt( indCount2 );
-        Color c1i = new Color( 255, 255, 0, 128 ), c1m = new Color( 255, 0, 0, 128 ), c1c = new Color( 144, 144, 144, 192 );
-        addPlanet( toAdd, temp, indCount1, 0, 0, -temp.xVelocity, 0, ( p, d ) -> {
+        Material base = temp.material();
+        Material c1i = base.withColor( new Color( 255, 255, 0, 128 ) ).withMass( base.getMass() * 1.2 ), 
+                c1m = base.withColor( new Color( 255, 0, 0, 128 ) ), 
+                c1c = base.withColor( new Color( 144, 144, 144, 192 ) ).withMass( base.getMass() * 0.8 );
+        addPlanet( toAdd, temp, indCount1, temp.seed, 0, 0, -temp.xVelocity, 0, ( d, r ) -> {
             double rat = d / max1;
-            double mass = p.getMass();
-            if( rat < 0.5 ) {
-                p.setColor( c1i );
-                p.setMass( mass * 1.2 );
-            } else if( rat < 0.95 ) {
-                p.setColor( c1m );
-            } else {
-                p.setColor( c1c );
-                p.setMass( mass * 0.8 );
-            }
+            return rat < 0.5 ? c1i : rat < 0.95 ? c1m : c1c;
         } );
-        Color c2i = new Color( 128, 255, 0, 128 ), c2m = new Color( 128, 128, 0, 128 ), c2c = new Color( 112, 112, 112, 192 );
-        addPlanet( toAdd, temp, indCount2, -max1 * 3, max1 * 1.8, 0, 0, ( p, d ) -> {
+        Material c2i = base.withColor( new Color( 128, 255, 0, 128 ) ).withMass( base.getMass() * 1.2 ), 
+                c2m = base.withColor( new Color( 128, 128, 0, 128 ) ), 
+                c2c = base.withColor( new Color( 112, 112, 112, 192 ) ).withMass( base.getMass() * 0.8 );
+        addPlanet( toAdd, temp, indCount2, temp.seed + 1, -max1 * 3, max1 * 1.8, 0, 0, ( d, r ) -> {
             double rat = d / max2;
-             double mass = p.getMass();
-            if( rat < 0.5 ) {
-                p.setColor( c2i );
-                p.setMass( mass * 1.2 );
-            } else if( rat < 0.95 ) {
-                p.setColor( c2m );
-            } else {
-                p.setColor( c2c );
-                p.setMass( mass * 0.8 );
-            }
+            return rat < 0.5 ? c2i : rat < 0.95 ? c2m : c2c;
         } );
     }
     
-    public static void cosmologicalSponge( CreationTemplate temp, List<Particle> toAdd ) {
+    public static void cosmologicalSponge( CreationTemplate temp, ParticleBuffer toAdd ) {
         double darkSize = temp.distances / Math.sqrt( temp.count / 4 );
-        Color darkColor = new Color( 255, 255, 255, 0 );
+        Material dark = Material.of( temp.mass * 4, darkSize / 2, 0, 0, new Color( 255, 255, 255, 0 ), 
+                Particle.COLLISIONLESS | Particle.HIDDEN );
+        int cells = 0;
         for( double x = -temp.distances; x < temp.distances; x += darkSize ) {
-            for( double y = -temp.distances; y < temp.distances; y += darkSize ) {
-                toAdd.add( new Particle( temp.mass * 4, darkSize / 2, 0, 0, darkColor, x, y, 
-                        temp.mass * 0.2 * x, temp.mass * 0.2 * y ) );
-            }
-        }
-        for( int i = 0; i < temp.count * 3 / 4; i++ ) {
-            double x = ( Math.random() * 2 - 1 ) * temp.distances;
-            double y = ( Math.random() * 2 - 1 ) * temp.distances;
-            toAdd.add( new Particle( temp.mass, temp.radius, temp.spring, temp.drag, temp.color, 
-                    x, y, temp.mass * 0.2 * x, temp.mass * 0.2 * y ) );
+            cells++;
         }
+        int side = cells;
+        int darkBase = toAdd.size();
+        Generator.generate( toAdd, side * side, temp.seed, ( i, random, out ) -> {
+            int index = i - darkBase;
+            double x = -temp.distances + index / side * darkSize;
+            double y = -temp.distances + index % side * darkSize;
+            out.set( i, dark, x, y, temp.mass * 0.2 * x, temp.mass * 0.2 * y );
+        } );
+        Material material = temp.material();
+        Generator.generate( toAdd, temp.count * 3 / 4, temp.seed + 1, ( i, random, out ) -> {
+            double x = ( random.nextDouble() * 2 - 1 ) * temp.distances;
+            double y = ( random.nextDouble() * 2 - 1 ) * temp.distances;
+            out.set( i, material, x, y, temp.mass * 0.2 * x, temp.mass * 0.2 * y );
+        } );
     }
     
-    public static void moonCreatingCollision( CreationTemplate temp, List<Particle> toAdd ) {
+    public static void moonCreatingCollision( CreationTemplate temp, ParticleBuffer toAdd ) {
         int indCount = temp.count * 2 / 3;
         double max = temp.distances * Math.sqrt( indCount );
         double vaddX = temp.xVelocity / 3;
         double vaddY = temp.yVelocity / 3;
-        addPlanet( toAdd, temp, indCount, max * 3, max * 0.7, -vaddX, -vaddY, ( p, d ) -> {} );
-        addPlanet( toAdd, temp, temp.count / 3, -max * 3, -max * 0.7, 
-                -2 * temp.xVelocity - vaddX, -2 * temp.yVelocity - vaddY, ( p, d ) -> {} );
+        addPlanet( toAdd, temp, indCount, temp.seed, max * 3, max * 0.7, -vaddX, -vaddY, null );
+        addPlanet( toAdd, temp, temp.count / 3, temp.seed + 1, -max * 3, -max * 0.7, 
+                -2 * temp.xVelocity - vaddX, -2 * temp.yVelocity - vaddY, null );
     }
     
-    public static void mantleDifferentiation( CreationTemplate temp, List<Particle> toAdd ) {
+    public static void mantleDifferentiation( CreationTemplate temp, ParticleBuffer toAdd ) {
         Color colors[] = { new Color( 128, 128, 128, 128 ), new Color( 255, 0, 0, 128 ), 
             new Color( 255, 255, 0, 128 ), new Color( 255, 255, 255, 128 ) };
         double weights[] = { 0.8, 1.6, 2.4, 3.2 };
-        addPlanet( toAdd, temp, temp.count, 0, 0, 0, 0, 
-            ( p, d ) -> {
-                int num = (int)( Math.random() * 4 );
-                p.setMass( p.getMass() * weights[num] );
-                p.setColor( colors[num] );
-            } );
+        Material base = temp.material();
+        Material layers[] = new Material[ colors.length ];
+        for( int i = 0; i < layers.length; i++ ) {
+            layers[i] = base.withMass( base.getMass() * weights[i] ).withColor( colors[i] );
+        }
+        addPlanet( toAdd, temp, temp.count, temp.seed, 0, 0, 0, 0, 
+            ( d, r ) -> layers[ r.nextInt( layers.length ) ] );
     }
     
-    public static void angularMomentum( CreationTemplate temp, List<Particle> toAdd ) {
+    public static void angularMomentum( CreationTemplate temp, ParticleBuffer toAdd ) {
         addParticles( toAdd, temp, 0, 0 );
     }
     
-    public static void accretionDisk( CreationTemplate temp, List<Particle> toAdd ) {
-        for( int i = 0; i < temp.count; i++ ) {
-            double angle = Math.random() * CIRCLE;
-            double dist = Math.random();
+    public static void accretionDisk( CreationTemplate temp, ParticleBuffer toAdd ) {
+        Material material = temp.material();
+        Generator.generate( toAdd, temp.count, temp.seed, ( i, random, out ) -> {
+            double angle = random.nextDouble() * CIRCLE;
+            double dist = random.nextDouble();
             double posMult = temp.distances * dist;
             double velMult = temp.angVelocity * posMult;
             double x = Math.sin( angle );
             double y = Math.cos( angle );
-            toAdd.add( new Particle( temp.mass, temp.radius, temp.spring, temp.drag, temp.color, 
-                    x * posMult, y * posMult, y * velMult, -x * velMult ) );
-        }
+            out.set( i, material, x * posMult, y * posMult, y * velMult, -x * velMult );
+        } );
     }
     
-    public static void protoplanetaryDisk( CreationTemplate temp, List<Particle> toAdd ) {
+    public static void protoplanetaryDisk( CreationTemplate temp, ParticleBuffer toAdd ) {
         double mainMass = temp.mass * temp.count * 10;
-        toAdd.add( new Particle( mainMass, temp.distances * 0.03, temp.spring, temp.drag, 
-                new Color( temp.color.getRed(), temp.color.getBlue(), temp.color.getGreen(), 255 ), 0, 0, 0, 0 ) );
-        for( int i = 0; i < temp.count; i++ ) {
-            double angle = Math.random() * CIRCLE;
-            double dist = Math.random() * 0.8 + 0.2;
+        toAdd.add( Material.of( mainMass, temp.distances * 0.03, temp.spring, temp.drag, 
+                new Color( temp.color.getRed(), temp.color.getBlue(), temp.color.getGreen(), 255 ), 0 ), 0, 0, 0, 0 );
+        Material material = temp.material();
+        Generator.generate( toAdd, temp.count, temp.seed, ( i, random, out ) -> {
+            double angle = random.nextDouble() * CIRCLE;
+            double dist = random.nextDouble() * 0.8 + 0.2;
             double posMult = temp.distances * dist;
             double velMult = Math.sqrt( mainMass / posMult );
             double x = Math.sin( angle );
             double y = Math.cos( angle );
-            toAdd.add( new Particle( temp.mass, temp.radius, temp.spring, temp.drag, temp.color, 
-                    x * posMult, y * posMult, y * velMult, -x * velMult ) );
-        }
+            out.set( i, material, x * posMult, y * posMult, y * velMult, -x * velMult );
+        } );
     }
     
     
@@ -530,15 +671,44 @@ public final class SimulationGUI extends Container implements LayoutManager,
             return i == -1 ? false : name.substring( i + 1 ).toLowerCase().equals( "psobj" );
         } );
         
+        //experiment menu items follow the experiment list, with loading an external experiment last
+        int experimentCount = EXPERIMENTS.size();
+        String[] experimentNames = new String[ experimentCount + 1 ];
+        ActionListener[] experimentListeners = new ActionListener[ experimentCount + 1 ];
+        for( int i = 0; i < experimentCount; i++ ) {
+            Experiment experiment = EXPERIMENTS.get( i );
+            experimentNames[i] = experiment.name;
+            experimentListeners[i] = a -> gui.applyExperiment( experiment );
+        }
+        experimentNames[ experimentCount ] = "Other...";
+        experimentListeners[ experimentCount ] = a -> {
+            selector.setMode( FileDialog.LOAD );
+            selector.setVisible( true );
+            String fileName = selector.getFile();
+            if( fileName != null ) {
+                try {
+                    gui.updateFields();
+                    env.setPosX( 0 );
+                    env.setPosY( 0 );
+                    RscLoader.rsc().loadExperiment( env, gui.fieldStates, fileName );
+                    updateEngineMenu( a.getSource() );
+                } catch( Throwable t ) {
+                    errorMessage( "Failed to load simulation experiment", t );
+                }
+            }
+        };
+        
         //initiate title and label string array for menu bar
-        String[] menuNames = { "File", "Simulation", "View", "Simulators", "Experiments", "About" };
-        String[][] itemNames = { { "New", "Open", "Save", "Import", "- Reflect Experiments", "Scripts", "Exit" },
-                { "Start", "Stop", "Step", "Time Step", "Tick Length", "Reset Simulation Counter" },
-                { "Zoom In", "Zoom Out", "Default Zoom", "X Edit Pane", "Frame Length" },
-                { "X Simple", "- Anti-Singularity", "- Tree Optimizer", "- Multi-Thread", "- Other..." },
-                { "Ring Formation", "Black Hole", "Direct Collision", "Penetration Collision", "Hit and Run Collision", 
-                "Cosmological Sponge", "Moon-Creating Collision", "Mantle Differentiation", "Angular Momentum", 
-                "Accretion Disk", "Protoplanetary Disk", "Other..." },
+        String[] menuNames = { "File", "Simulation", "View", "Selection", "Simulators", "Experiments", "About" };
+        String[][] itemNames = { { "New", "Open", "Save", "Import", "- Reflect Experiments", "Scripts", 
+                "Checkpoints", "Resume Checkpoint", "Clump Catalog", "Disk Statistics", "Control Server", "Exit" },
+                { "Start", "Stop", "Step", "Time Step", "Tick Length", "Sub-Step Ratio", "Verlet Skin", "Sleep Speed", 
+                "Auto Time Step", "- Mixed Precision Gravity", "Test Particle Ratio", "Reset Simulation Counter" },
+                { "Zoom In", "Zoom Out", "Default Zoom", "X Edit Pane", "Frame Length", "Detail Radius", "Render Share", 
+                "- Max Throughput", "- Cost Profiler", "Export Cost Profile" },
+                { "Delete", "Move", "Add Velocity", "Recolor", "Export", "Clear" },
+                { "X Simple", "- Anti-Singularity", "- Tree Optimizer", "- Multi-Thread", "- Tiled", "- Multi-Step", "- SPH", "- Continuous Collision", "- Auto", "- Other..." },
+                experimentNames,
                 { "Information", "Help", "GitHub" } };
         //listeners for menu bar
         ActionListener[][] listeners = { { 
@@ -560,22 +730,9 @@ public final class SimulationGUI extends Container implements LayoutManager,
                     }
                 }, 
                 a -> env.queueOperation( list -> {
-                    Particle[] particles = list.toArray( new Particle[ list.size() ] );
-                    EventQueue.invokeLater( () -> {
-                        selector.setMode( FileDialog.SAVE );
-                        selector.setVisible( true );
-                        String fileName = selector.getFile();
-                        if( fileName != null ) {
-                            if( !fileName.endsWith( RscLoader.PSOBJ_EXTENSION ) ) {
-                                fileName += RscLoader.PSOBJ_EXTENSION;
-                            }
-                            try {
-                                RscLoader.rsc().writeParticles( particles, fileName );
-                            } catch( IOException e ) {
-                                errorMessage( "Failed to save file", e );
-                            }
-                        }
-                    } );
+                    ParticleBuffer snapshot = new ParticleBuffer( list.size() );
+                    snapshot.capture( list );
+                    EventQueue.invokeLater( () -> saveParticles( selector, snapshot ) );
                 } ), 
                 a -> {
                     selector.setMode( FileDialog.LOAD );
@@ -601,12 +758,118 @@ public final class SimulationGUI extends Container implements LayoutManager,
                     String fileName = selector.getFile();
                     if( fileName != null ) {
                         try {
-                            RscLoader.rsc().loadScript( env, version );
+                            RscLoader.rsc().loadScript( env, fileName );
                         } catch( IOException|IllegalAccessException|NoSuchMethodException|RuntimeException|Error e ) {
                             errorMessage( "Failed to load simulation script", e );
                         }
                     }
                 },
+                a -> {
+                    try {
+                        String dir = JOptionPane.showInputDialog( "Checkpoint Directory", 
+                                gui.checkpointer == null ? "checkpoints" : gui.checkpointer.getDirectory().getPath() );
+                        if( dir != null ) {
+                            long ticks = (long)parseCheck( "Ticks Between Checkpoints (0 to disable)", 10000, 0, Long.MAX_VALUE );
+                            double minutes = parseCheck( "Minutes Between Checkpoints (0 to disable)", 10, 0, Double.POSITIVE_INFINITY );
+                            int keep = (int)parseCheck( "Checkpoints Kept", 3, 1, 1000.5 );
+                            if( gui.checkpointer != null ) {
+                                gui.checkpointer.stop();
+                                gui.checkpointer = null;
+                            }
+                            if( ticks > 0 || minutes > 0 ) {
+                                gui.checkpointer = new Checkpointer( env, new File( dir ), ticks, minutes, keep );
+                                gui.checkpointer.start();
+                            }
+                        }
+                    } catch( IllegalArgumentException e ) {
+                        errorMessage( "Invalid text format", e );
+                    }
+                },
+                a -> {
+                    String dir = JOptionPane.showInputDialog( "Checkpoint Directory", 
+                            gui.checkpointer == null ? "checkpoints" : gui.checkpointer.getDirectory().getPath() );
+                    if( dir != null && !Checkpointer.resume( env, new File( dir ) ) ) {
+                        errorMessage( "Failed to resume checkpoint", new IOException( "No valid checkpoint in " + dir ) );
+                    }
+                },
+                a -> {
+                    try {
+                        String name = JOptionPane.showInputDialog( "Clump Catalog File", 
+                                gui.clumpFinder == null ? "clumps.csv" : gui.clumpFinder.getFile().getPath() );
+                        if( name != null ) {
+                            long ticks = (long)parseCheck( "Ticks Between Catalogs (0 to disable)", 100, 0, Long.MAX_VALUE );
+                            int members = (int)parseCheck( "Minimum Members of a Group", 5, 1, Integer.MAX_VALUE );
+                            if( gui.clumpFinder != null ) {
+                                gui.clumpFinder.stop();
+                                gui.clumpFinder = null;
+                            }
+                            if( ticks > 0 ) {
+                                ClumpFinder finder = new ClumpFinder( env, new File( name ), ticks, members );
+                                finder.start();
+                                gui.clumpFinder = finder;
+                            }
+                        }
+                    } catch( IllegalArgumentException|IOException e ) {
+                        errorMessage( "Failed to start clump catalog", e );
+                    } catch( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                    }
+                },
+                a -> {
+                    try {
+                        String name = JOptionPane.showInputDialog( "Disk Statistics File", 
+                                gui.diskStatistics == null ? "disk.csv" : gui.diskStatistics.getFile().getPath() );
+                        if( name != null ) {
+                            long ticks = (long)parseCheck( "Ticks Between Samples (0 to disable)", 100, 0, Long.MAX_VALUE );
+                            int annuli = (int)parseCheck( "Number of Annuli", 32, 1, 1 << 20 );
+                            double outer = parseCheck( "Outer Radius (0 for the farthest particle of the first sample)", 0, 0, Double.POSITIVE_INFINITY );
+                            String center = JOptionPane.showInputDialog( "Center as x, y (empty follows the heaviest particle)", "" );
+                            double cx = Double.NaN, cy = Double.NaN;
+                            if( center != null && !center.isBlank() ) {
+                                String[] parts = center.split( "," );
+                                if( parts.length != 2 ) {
+                                    throw new IllegalArgumentException( "center must be given as x, y" );
+                                }
+                                cx = Double.parseDouble( parts[0].trim() );
+                                cy = Double.parseDouble( parts[1].trim() );
+                            }
+                            if( gui.diskStatistics != null ) {
+                                gui.diskStatistics.stop();
+                                gui.diskStatistics = null;
+                            }
+                            if( ticks > 0 ) {
+                                DiskStatistics stats = new DiskStatistics( env, new File( name ), ticks, annuli, outer, cx, cy );
+                                stats.start();
+                                gui.diskStatistics = stats;
+                            }
+                        }
+                    } catch( IllegalArgumentException|IOException e ) {
+                        errorMessage( "Failed to start disk statistics", e );
+                    } catch( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                    }
+                },
+                a -> {
+                    try {
+                        String spec = JOptionPane.showInputDialog( "Loopback Port or Socket Path (empty to disable)", "7878" );
+                        if( spec != null ) {
+                            if( gui.controlServer != null ) {
+                                gui.controlServer.stop();
+                                gui.controlServer = null;
+                            }
+                            if( !spec.isBlank() ) {
+                                ControlServer server = new ControlServer( env, ControlServer.address( spec.trim() ) );
+                                server.start();
+                                gui.controlServer = server;
+                                JOptionPane.showMessageDialog( null, "Control server listening on " + server.getAddress() );
+                            }
+                        }
+                    } catch( IllegalArgumentException|IOException e ) {
+                        errorMessage( "Failed to start control server", e );
+                    } catch( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                    }
+                },
                 a -> frame.dispose()
             }, { 
                 a -> env.setActive( true ), 
@@ -614,7 +877,7 @@ public final class SimulationGUI extends Container implements LayoutManager,
                 a -> {
                     if( !env.getActive() ) {
                         env.setActive( true );
-                        env.queueOperation( list -> env.setActive( false ) );
+                        env.queueInOrder( list -> env.setActive( false ) );
                     }
                 }, 
                 a -> {
@@ -631,6 +894,64 @@ public final class SimulationGUI extends Container implements LayoutManager,
                         errorMessage( "Invalid text format", e );
                     }
                 }, 
+                a -> {
+                    try {
+                        env.setSubSteps( (int)parseCheck( "Sub-Step Ratio", env.getSubSteps(), 1, 1000.5 ) );
+                    } catch( IllegalArgumentException e ) {
+                        errorMessage( "Invalid text format", e );
+                    }
+                }, 
+                a -> {
+                    try {
+                        env.setSkinRatio( parseCheck( "Verlet Skin (multiple of mean radius)", env.getSkinRatio(), 0, 100 ) );
+                    } catch( IllegalArgumentException e ) {
+                        errorMessage( "Invalid text format", e );
+                    }
+                }, 
+                a -> {
+                    try {
+                        env.setSleepSpeed( parseCheck( "Sleep Speed (0 to disable)", env.getSleepSpeed(), 0, Double.POSITIVE_INFINITY ) );
+                    } catch( IllegalArgumentException e ) {
+                        errorMessage( "Invalid text format", e );
+                    }
+                }, 
+                a -> {
+                    try {
+                        StepController controller = env.getStepController();
+                        controller.setTolerance( parseCheck( "Drift Tolerance per 16 Ticks (0 to disable)", 
+                                controller.getTolerance(), 0, 1 ) );
+                    } catch( IllegalArgumentException e ) {
+                        errorMessage( "Invalid text format", e );
+                    }
+                }, 
+                a -> {
+                    boolean mixed = !( env.getFarField() instanceof MixedPrecisionFarField );
+                    env.setFarField( mixed ? new MixedPrecisionFarField() : FarField.DIRECT );
+                    MenuItem item = (MenuItem)a.getSource();
+                    item.setLabel( ( mixed ? 'X' : '-' ) + item.getLabel().substring( 1 ) );
+                }, 
+                a -> {
+                    try {
+                        FarField current = env.getFarField();
+                        double ratio = parseCheck( "Test Particle Mass Ratio to the Heaviest Body (0 to disable)", 
+                                current instanceof TestParticleFarField ? ( (TestParticleFarField)current ).getRatio() : 0, 0, 1 );
+                        if( ratio > 0 ) {
+                            env.setFarField( new TestParticleFarField( ratio ) );
+                            //the test particle far field replaces mixed precision gravity
+                            Menu parent = (Menu)( (MenuItem)a.getSource() ).getParent();
+                            for( int i = 0; i < parent.getItemCount(); i++ ) {
+                                MenuItem item = parent.getItem( i );
+                                if( item.getLabel().equals( "X Mixed Precision Gravity" ) ) {
+                                    item.setLabel( "- Mixed Precision Gravity" );
+                                }
+                            }
+                        } else if( current instanceof TestParticleFarField ) {
+                            env.setFarField( FarField.DIRECT );
+                        }
+                    } catch( IllegalArgumentException e ) {
+                        errorMessage( "Invalid text format", e );
+                    }
+                }, 
                 a -> env.setTimePassed( 0 )
             }, { 
                 a -> env.setZoom( env.getZoom() * 1.1 ), 
@@ -649,6 +970,86 @@ public final class SimulationGUI extends Container implements LayoutManager,
                     } catch( IllegalArgumentException e ) {
                         errorMessage( "Invalid text format", e );
                     }
+                },
+                a -> {
+                    try {
+                        env.setDetailRadius( parseCheck( "Detail Radius (pixels, 0 to always draw every particle)", 
+                                env.getDetailRadius(), 0, 100 ) );
+                    } catch( IllegalArgumentException e ) {
+                        errorMessage( "Invalid text format", e );
+                    }
+                },
+                a -> {
+                    try {
+                        env.getGovernor().setTargetShare( parseCheck( "Share of Time Simulating (0 to use the frame length)", 
+                                env.getGovernor().getTargetShare(), 0, 0.999 ) );
+                    } catch( IllegalArgumentException e ) {
+                        errorMessage( "Invalid text format", e );
+                    }
+                },
+                a -> {
+                    boolean curr = !env.getGovernor().getOnDemand();
+                    env.getGovernor().setOnDemand( curr );
+                    MenuItem item = (MenuItem)a.getSource();
+                    item.setLabel( ( curr ? 'X' : '-' ) + item.getLabel().substring( 1 ) );
+                }, 
+                a -> {
+                    boolean curr = gui.costProfiler == null;
+                    if( curr ) {
+                        gui.costProfiler = new CostProfiler( env );
+                        gui.costProfiler.start();
+                    } else {
+                        gui.costProfiler.stop();
+                        gui.costProfiler = null;
+                    }
+                    env.getGovernor().requestRender();
+                    MenuItem item = (MenuItem)a.getSource();
+                    item.setLabel( ( curr ? 'X' : '-' ) + item.getLabel().substring( 1 ) );
+                }, 
+                a -> {
+                    if( gui.costProfiler == null || gui.costProfiler.getTicks() == 0 ) {
+                        errorMessage( "No cost profile to export", new IllegalStateException( "Enable View >> Cost Profiler and run some ticks first" ) );
+                        return;
+                    }
+                    String name = JOptionPane.showInputDialog( "Cost Profile File", "cost.csv" );
+                    if( name != null ) {
+                        try {
+                            gui.costProfiler.export( new File( name ) );
+                        } catch( IOException e ) {
+                            errorMessage( "Failed to export cost profile", e );
+                        }
+                    }
+                }
+            }, {
+                a -> gui.selection.delete(), 
+                a -> {
+                    try {
+                        double x = parseCheck( "X Offset", 0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY );
+                        double y = parseCheck( "Y Offset", 0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY );
+                        gui.selection.translate( x, y );
+                    } catch( IllegalArgumentException e ) {
+                        errorMessage( "Invalid text format", e );
+                    }
+                }, 
+                a -> {
+                    try {
+                        double x = parseCheck( "X Velocity Added", 0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY );
+                        double y = parseCheck( "Y Velocity Added", 0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY );
+                        gui.selection.addVelocity( x, y );
+                    } catch( IllegalArgumentException e ) {
+                        errorMessage( "Invalid text format", e );
+                    }
+                }, 
+                a -> {
+                    Color color = JColorChooser.showDialog( null, "Selection Color", Color.WHITE );
+                    if( color != null ) {
+                        gui.selection.recolor( color );
+                    }
+                }, 
+                a -> gui.selection.capture( snapshot -> EventQueue.invokeLater( () -> saveParticles( selector, snapshot ) ) ), 
+                a -> {
+                    gui.selection.clear();
+                    env.getGovernor().requestRender();
                 }
             }, {
                 a -> {
@@ -674,6 +1075,26 @@ public final class SimulationGUI extends Container implements LayoutManager,
                     env.setSimManager( Simulator.MULTI_THREAD );
                     updateEngineMenu( a.getSource() );
                 },
+                a -> {
+                    env.setSimManager( Simulator.TILED );
+                    updateEngineMenu( a.getSource() );
+                },
+                a -> {
+                    env.setSimManager( Simulator.MULTI_STEP );
+                    updateEngineMenu( a.getSource() );
+                },
+                a -> {
+                    env.setSimManager( Simulator.SPH );
+                    updateEngineMenu( a.getSource() );
+                },
+                a -> {
+                    env.setSimManager( Simulator.CONTINUOUS );
+                    updateEngineMenu( a.getSource() );
+                },
+                a -> {
+                    env.setSimManager( Simulator.AUTO );
+                    updateEngineMenu( a.getSource() );
+                },
                 a -> {
                     selector.setMode( FileDialog.LOAD );
                     selector.setVisible( true );
@@ -687,35 +1108,7 @@ public final class SimulationGUI extends Container implements LayoutManager,
                         }
                     }
                 }
-            }, { 
-                a -> gui.applyExperiment( RING_FORMATION, 0.05, SimulationGUI::ringFormation ), 
-                a -> gui.applyExperiment( BLACK_HOLE, 1, SimulationGUI::blackHole ), 
-                a -> gui.applyExperiment( DIRECT_COLLISION, 1, SimulationGUI::directCollision ), 
-                a -> gui.applyExperiment( PENETRATION_COLLISION, 0.1, SimulationGUI::penetrationCollision ), 
-                a -> gui.applyExperiment( HIT_AND_RUN_COLLISION, 1, SimulationGUI::hitAndRunCollision ), 
-                a -> gui.applyExperiment( COSMOLOGICAL_SPONGE, 0.05, SimulationGUI::cosmologicalSponge ), 
-                a -> gui.applyExperiment( MOON_CREATING_COLLISION, 0.3, SimulationGUI::moonCreatingCollision ), 
-                a -> gui.applyExperiment( MANTLE_DIFFERENTIATION, 0.3, SimulationGUI::mantleDifferentiation ), 
-                a -> gui.applyExperiment( ANGULAR_MOMENTUM, 1, SimulationGUI::angularMomentum ),
-                a -> gui.applyExperiment( ACCRETION_DISK, 0.05, SimulationGUI::accretionDisk ),
-                a -> gui.applyExperiment( PROTOPLANETARY_DISK, 0.05, SimulationGUI::protoplanetaryDisk ),
-                a -> {
-                    selector.setMode( FileDialog.LOAD );
-                    selector.setVisible( true );
-                    String fileName = selector.getFile();
-                    if( fileName != null ) {
-                        try {
-                            gui.updateFields();
-                            env.setPosX( 0 );
-                            env.setPosY( 0 );
-                            RscLoader.rsc().loadExperiment( env, gui.fieldStates, fileName );
-                            updateEngineMenu( a.getSource() );
-                        } catch( Throwable t ) {
-                            errorMessage( "Failed to load simulation experiment", t );
-                        }
-                    }
-                }
-            }, { 
+            }, experimentListeners, { 
                 a -> JOptionPane.showMessageDialog( null, 
                         "Program: Particle Simulator\n" + 
                         "Author:  Kent Fukuda\n" + 
@@ -763,6 +1156,7 @@ public final class SimulationGUI extends Container implements LayoutManager,
         private double xVelocity;
         private double yVelocity;
         private double angVelocity;
+        private long seed;
         
         
         public CreationTemplate( int count, Color color, double mass, double radius, 
@@ -778,6 +1172,57 @@ public final class SimulationGUI extends Container implements LayoutManager,
             this.xVelocity = xVelocity;
             this.yVelocity = yVelocity;
             this.angVelocity = angVelocity;
+            this.seed = 0;
+        }
+        
+        //copies the template so generators running in the background are not affected by later edits
+        @Override
+        public CreationTemplate clone() {
+            try {
+                return (CreationTemplate)super.clone();
+            } catch( CloneNotSupportedException e ) {
+                throw new AssertionError( e );
+            }
+        }
+        
+        //returns the registered material described by the template, templates without a color are recolored by their experiment
+        public Material material() {
+            return Material.of( mass, radius, spring, drag, color == null ? Color.WHITE : color, 0 );
+        }
+    }
+    
+    //a built in experiment, the template and generator it creates particles with and the time step it runs at
+    public static final class Experiment {
+        
+        private final String name;
+        private final CreationTemplate template;
+        private final double timeStep;
+        private final BiConsumer<CreationTemplate,ParticleBuffer> generator;
+        
+        
+        public Experiment( String name, CreationTemplate template, double timeStep, 
+                BiConsumer<CreationTemplate,ParticleBuffer> generator ) {
+            this.name = name;
+            this.template = template;
+            this.timeStep = timeStep;
+            this.generator = generator;
+        }
+        
+        //fills a buffer with the particles of the experiment, the same particles every call since the template is seeded
+        public void generate( ParticleBuffer out ) {
+            generator.accept( template, out );
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public CreationTemplate getTemplate() {
+            return template;
+        }
+        
+        public double getTimeStep() {
+            return timeStep;
         }
     }
 }
\ No newline at end of file
@@ -4,14 +4,17 @@ package particles;
  * Description: class for implementing physics engines for the simulation
  * Created: 5-18-2022
  * Status: singleton class, wip
- * Dependencies: Environment, Particle
+ * Dependencies: AutoSimulator, ContinuousSimulator, Environment, MultiStepSimulator, Particle, ParticleStore, SphSimulator, StepController, TiledSimulator
  * Licensed under GNU v3, see src/particles/Particles.java for more details
  */
 
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public abstract class Simulator {
     
@@ -23,16 +26,34 @@ public abstract class Simulator {
     public static final Simulator DEFAULT = new Simulator() {
         @Override
         protected void simulate( double timeStep ) {
+            ParticleStore store = environment.getStore();
+            if( store != null ) {
+                int size = store.size();
+                for( int i = 0; i < size; i++ ) {
+                    Particle.interact( store, i, i + 1, size );
+                    store.update( i, timeStep );
+                }
+                return;
+            }
             List<Particle> particles = environment.particles;
             int size = particles.size();
+            int sources = environment.sources;
+            //the energy sums are only needed by the step controller
+            boolean diagnose = environment.getStepController().isMeasuring();
             for( int i = 0; i < size; i++ ) {
                 Particle obj = particles.get( i );
-                for( int j = i + 1; j < size; j++ ) {
-                    obj.interact( particles.get( j ) );
+                int end = i < sources ? size : 0;
+                for( int j = i + 1; j < end; j++ ) {
+                    obj.interact( particles.get( j ), diagnose );
                 }
                 obj.update( timeStep );
             }
         }
+        
+        @Override
+        protected boolean simulatesStores() {
+            return true;
+        }
     };
     
     //implementation which prevents singularities from small distances between objects from occuring
@@ -42,26 +63,39 @@ public abstract class Simulator {
         protected void simulate( double timeStep ) {
             List<Particle> particles = environment.particles;
             int size = particles.size();
+            int sources = environment.sources;
             double threshHold = environment.getRatioThresh();
             double localTime = timeStep;
+            //only the first pass sums the diagnostics, at the start of the tick like the other engines
+            boolean diagnose = environment.getStepController().isMeasuring();
             while( localTime > 0 ) {
                 double maxStepSq = localTime * localTime;
+                //pair that shortened the sub-step, counted by the cost profiler
+                Particle limit1 = null, limit2 = null;
                 for( int i = 0; i < size; i++ ) {
                     Particle p1 = particles.get( i );
-                    for( int j = i + 1; j < size; j++ ) {
+                    int end = i < sources ? size : 0;
+                    for( int j = i + 1; j < end; j++ ) {
                         Particle p2 = particles.get( j );
-                        double stepSq = threshHold * p1.interact( p2 ) / p1.velocDiff( p2 );
+                        double stepSq = threshHold * p1.interact( p2, diagnose ) / p1.velocDiff( p2 );
                         if( maxStepSq > stepSq ) {
                             maxStepSq = stepSq;
+                            limit1 = p1;
+                            limit2 = p2;
                         }
                     }
                 }
+                if( limit1 != null ) {
+                    limit1.countForcedStep();
+                    limit2.countForcedStep();
+                }
                 double maxStep = Math.sqrt( maxStepSq );
                 for( int i = 0; i < size; i++ ) {
                     Particle p = particles.get( i );
                     p.update( maxStep );
                 }
                 localTime -= maxStep;
+                diagnose = false;
             }
         }
     };
@@ -97,6 +131,7 @@ public abstract class Simulator {
         private volatile int interactors = 0;
         private volatile int updators = 0;
         private volatile int numActive = 1;
+        private volatile boolean diagnose = false;
         
         
         @Override
@@ -126,6 +161,8 @@ public abstract class Simulator {
                 while( numActive < threadCount ) {  }
             }
             int size = environment.particles.size();
+            //published to the workers by the write of the interactor count
+            diagnose = environment.getStepController().isMeasuring();
             interactors = size * size / 4;
             workInteract();
             updators = size;
@@ -189,19 +226,42 @@ public abstract class Simulator {
         }
         
         private void interact( int x, int y ) {
+            //pairs of tracers do not interact
+            if( x >= environment.sources ) {
+                return;
+            }
             List<Particle> particles = environment.particles;
             Particle p1 = particles.get( x );
             Particle p2 = particles.get( y );
             //double synchronization is ok because x < y always
             synchronized( p1 ) {
                 synchronized( p2 ) {
-                    p1.interact( p2 );
+                    p1.interact( p2, diagnose );
                 }
             }
         }
     };
     
     
+    //implementation that walks the pairs of the simple engine in cache sized tiles, in parallel and with the same results
+    public static final Simulator TILED = new TiledSimulator();
+    
+    //implementation that steps contact forces on sub-steps of the long range gravity step
+    public static final Simulator MULTI_STEP = new MultiStepSimulator();
+    
+    //implementation that treats touching particles as a smoothed particle hydrodynamics fluid
+    public static final Simulator SPH = new SphSimulator();
+    
+    //implementation that splits ticks at predicted contacts so fast impacts do not tunnel
+    public static final Simulator CONTINUOUS = new ContinuousSimulator();
+    
+    //implementation that times the engines above on the running simulation and uses the fastest
+    public static final Simulator AUTO = new AutoSimulator();
+    
+    //built in engines by the short names of the control protocol and the regression harness, in menu order
+    public static final Map<String,Simulator> ENGINES = engines();
+    
+    
     //stores environment class to simulate on
     protected Environment environment;
     
@@ -222,8 +282,29 @@ public abstract class Simulator {
     protected abstract void simulate( double timeStep );//simulate environment
     protected void acceptEnv() { }//accept a new environment instance
     protected void disposeEnv() { }//dispose a environment
+    protected boolean simulatesStores() { return false; }//if the engine can simulate a particle store in place of particles
     
     
+    //returns engine statistics to show in the status line, empty if there are none
+    public String getStatus() {
+        return "";
+    }
+    
+    
+    //names the engines that work, the tree optimizer is left out until it simulates anything
+    private static Map<String,Simulator> engines() {
+        Map<String,Simulator> engines = new LinkedHashMap<>();
+        engines.put( "simple", DEFAULT );
+        engines.put( "anti-singularity", ANTI_SINGLE );
+        engines.put( "multi-thread", MULTI_THREAD );
+        engines.put( "tiled", TILED );
+        engines.put( "multi-step", MULTI_STEP );
+        engines.put( "sph", SPH );
+        engines.put( "continuous", CONTINUOUS );
+        engines.put( "auto", AUTO );
+        return Collections.unmodifiableMap( engines );
+    }
+    
     //returns the simulator instance for a given class
     public static final Simulator getSimulator( Class<?> cls ) {
         Simulator sim = SIMULATORS.get( cls );
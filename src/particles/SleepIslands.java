@@ -0,0 +1,309 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for putting settled groups of touching particles to sleep so they move as rigid bodies without contact forces
+ * Created: 10-19-2026
+ * Status: utility class, finished
+ * Dependencies: NeighborList, Particle, UnionFind
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+public final class SleepIslands {
+
+    //ticks every particle of an island must have stayed quiet before the island sleeps
+    private static final int SLEEP_TICKS = 30;
+    //smallest island put to sleep, loose particles and small clumps are cheap to keep awake
+    private static final int MIN_ISLAND = 8;
+
+
+    //touching awake particles, rebuilt every tick
+    private final UnionFind sets;
+    //sleeping island of each particle, the index of its lowest member, or -1 when awake
+    private int[] island;
+    //ticks in a row the island of each particle stayed below the speed
+    private int[] quiet;
+    //deviation of each sleeping particle's gravity from its island mean when it fell asleep, a change is tidal stress
+    private double[] refX, refY;
+    //position of each sleeping particle relative to the lowest member of its island and its material when it fell asleep,
+    //a change is an edit that moved or changed it in place
+    private double[] offsetX, offsetY;
+    private int[] material;
+    //sums by island index, the shared velocity of sleeping islands, and islands to wake after the contact pass
+    private double[] mass, sumX, sumY, velX, velY, spread;
+    private int[] count;
+    private boolean[] wake;
+    private boolean anyWake;
+    private int size;
+    //relative speed below which islands settle and above which contacts wake them, 0 keeps everything awake
+    private double speed;
+    //statistics
+    private volatile int sleepingParticles, sleepingIslands;
+
+
+    //constructor
+    public SleepIslands() {
+        sets = new UnionFind();
+        island = quiet = count = material = new int[0];
+        refX = refY = offsetX = offsetY = mass = sumX = sumY = velX = velY = spread = new double[0];
+        wake = new boolean[0];
+        anyWake = false;
+        size = 0;
+        speed = 0;
+        sleepingParticles = sleepingIslands = 0;
+    }
+
+
+    //starts a tick, waking everything when the particle list changed or sleeping was disabled
+    public void begin( int size, double speed ) {
+        this.speed = speed;
+        if( size != this.size || speed <= 0 ) {
+            reset( size );
+        }
+    }
+
+    //wakes every particle, used when the particle list is changed
+    public void reset( int size ) {
+        if( island.length < size ) {
+            int len = Math.max( size, island.length * 2 );
+            island = new int[len];
+            quiet = new int[len];
+            count = new int[len];
+            refX = new double[len];
+            refY = new double[len];
+            offsetX = new double[len];
+            offsetY = new double[len];
+            material = new int[len];
+            mass = new double[len];
+            sumX = new double[len];
+            sumY = new double[len];
+            velX = new double[len];
+            velY = new double[len];
+            spread = new double[len];
+            wake = new boolean[len];
+        }
+        Arrays.fill( island, 0, size, -1 );
+        Arrays.fill( quiet, 0, size, 0 );
+        this.size = size;
+        sleepingParticles = sleepingIslands = 0;
+    }
+
+    public boolean asleep( int i ) {
+        return island[i] >= 0;
+    }
+
+    /*kicks the sleeping islands with the mass weighted mean of their members' gravity, so they keep moving rigidly. an
+    island wakes if a member's velocity, position or material was edited or if the gravity across it changed by enough to
+    shear it apart at the speed within the tick. woken particles get the gravity kick awake particles already got*/
+    public void kick( List<Particle> particles, double[] gravityX, double[] gravityY, double half, double timeStep ) {
+        if( sleepingParticles == 0 ) {
+            return;
+        }
+        for( int i = 0; i < size; i++ ) {
+            int s = island[i];
+            if( s >= 0 ) {
+                mass[s] = sumX[s] = sumY[s] = 0;
+            }
+        }
+        for( int i = 0; i < size; i++ ) {
+            int s = island[i];
+            if( s >= 0 ) {
+                double m = particles.get( i ).getMass();
+                mass[s] += m;
+                sumX[s] += m * gravityX[i];
+                sumY[s] += m * gravityY[i];
+            }
+        }
+        double limitSq = speed * speed / ( timeStep * timeStep );
+        //members move with one velocity, so their offsets only drift by rounding, far less than quiet particles move in a tick
+        double moveSq = speed * speed * timeStep * timeStep;
+        for( int i = 0; i < size; i++ ) {
+            int s = island[i];
+            if( s >= 0 && !wake[s] ) {
+                Particle p = particles.get( i ), root = particles.get( s );
+                double xDiff = gravityX[i] - sumX[s] / mass[s] - refX[i];
+                double yDiff = gravityY[i] - sumY[s] / mass[s] - refY[i];
+                double xMove = p.getXPosition() - root.getXPosition() - offsetX[i];
+                double yMove = p.getYPosition() - root.getYPosition() - offsetY[i];
+                if( p.getXVelocity() != velX[s] || p.getYVelocity() != velY[s] || xDiff * xDiff + yDiff * yDiff > limitSq
+                        || !( xMove * xMove + yMove * yMove <= moveSq ) || p.getMaterialId() != material[i] ) {
+                    wake[s] = anyWake = true;
+                }
+            }
+        }
+        for( int i = 0; i < size; i++ ) {
+            int s = island[i];
+            if( s == i && !wake[s] ) {
+                velX[s] += sumX[s] / mass[s] * half;
+                velY[s] += sumY[s] / mass[s] * half;
+            }
+        }
+        for( int i = 0; i < size; i++ ) {
+            int s = island[i];
+            if( s >= 0 ) {
+                Particle p = particles.get( i );
+                if( wake[s] ) {
+                    p.accelerate( gravityX[i], gravityY[i] );
+                    p.kick( half );
+                } else {
+                    p.setXVelocity( velX[s] );
+                    p.setYVelocity( velY[s] );
+                }
+            }
+        }
+        wakeMarked();
+    }
+
+    /*applies the contact forces of a neighbor pair unless both sleep in the same island, marking islands hit too fast to
+    wake. a diagnosing pass still evaluates pairs inside sleeping islands so their spring energy is summed, the forces are
+    dropped with the rest of the forces on sleeping particles*/
+    public void contact( List<Particle> particles, int i, int j, boolean diagnose ) {
+        int si = island[i], sj = island[j];
+        if( si >= 0 && si == sj ) {
+            if( diagnose ) {
+                particles.get( i ).contact( particles.get( j ), true );
+            }
+            return;
+        }
+        Particle pi = particles.get( i ), pj = particles.get( j );
+        double dist = pi.contact( pj, diagnose );
+        if( si != sj && dist <= pi.getRadius() + pj.getRadius() && pi.velocDiff( pj ) > speed * speed ) {
+            if( si >= 0 ) {
+                wake[si] = anyWake = true;
+            }
+            if( sj >= 0 ) {
+                wake[sj] = anyWake = true;
+            }
+        }
+    }
+
+    //wakes the islands marked since the last call
+    public void wakeMarked() {
+        if( !anyWake ) {
+            return;
+        }
+        int particles = 0;
+        for( int i = 0; i < size; i++ ) {
+            int s = island[i];
+            if( s >= 0 && wake[s] ) {
+                island[i] = -1;
+                quiet[i] = 0;
+            } else if( s >= 0 ) {
+                particles++;
+            }
+        }
+        for( int i = 0; i < size; i++ ) {
+            if( wake[i] ) {
+                wake[i] = false;
+                sleepingIslands--;
+            }
+        }
+        sleepingParticles = particles;
+        anyWake = false;
+    }
+
+    //groups the touching awake particles and puts islands to sleep once all their members stayed quiet for long enough
+    public void settle( List<Particle> particles, NeighborList neighbors, double[] gravityX, double[] gravityY ) {
+        if( speed <= 0 ) {
+            return;
+        }
+        sets.reset( size );
+        neighbors.forEachPair( ( i, j ) -> {
+            if( island[i] < 0 && island[j] < 0 ) {
+                Particle pi = particles.get( i ), pj = particles.get( j );
+                double xDiff = pi.getXPosition() - pj.getXPosition();
+                double yDiff = pi.getYPosition() - pj.getYPosition();
+                double totRad = pi.getRadius() + pj.getRadius();
+                if( xDiff * xDiff + yDiff * yDiff <= totRad * totRad ) {
+                    sets.union( i, j );
+                }
+            }
+        } );
+        for( int i = 0; i < size; i++ ) {
+            mass[i] = sumX[i] = sumY[i] = spread[i] = 0;
+            count[i] = 0;
+        }
+        for( int i = 0; i < size; i++ ) {
+            if( island[i] < 0 ) {
+                int r = sets.find( i );
+                Particle p = particles.get( i );
+                double m = p.getMass();
+                mass[r] += m;
+                sumX[r] += m * p.getXVelocity();
+                sumY[r] += m * p.getYVelocity();
+                count[r]++;
+            }
+        }
+        //largest speed of a member relative to its island
+        for( int i = 0; i < size; i++ ) {
+            if( island[i] < 0 ) {
+                int r = sets.find( i );
+                Particle p = particles.get( i );
+                double xDiff = p.getXVelocity() - sumX[r] / mass[r];
+                double yDiff = p.getYVelocity() - sumY[r] / mass[r];
+                spread[r] = Math.max( spread[r], xDiff * xDiff + yDiff * yDiff );
+            }
+        }
+        for( int i = 0; i < size; i++ ) {
+            if( island[i] < 0 ) {
+                int r = sets.find( i );
+                quiet[i] = count[r] >= MIN_ISLAND && spread[r] < speed * speed ? quiet[i] + 1 : 0;
+            }
+        }
+        //islands with a member that has not been quiet for long enough are marked by a count of -1
+        for( int i = 0; i < size; i++ ) {
+            if( island[i] < 0 && quiet[i] < SLEEP_TICKS ) {
+                count[ sets.find( i ) ] = -1;
+            }
+        }
+        //roots come first in their islands, so each root turns its momentum sum into the shared velocity before the
+        //sums are reused for the mass weighted gravity of the island
+        for( int i = 0; i < size; i++ ) {
+            int r = island[i] < 0 ? sets.find( i ) : -1;
+            if( r >= 0 && count[r] > 0 ) {
+                if( r == i ) {
+                    velX[r] = sumX[r] / mass[r];
+                    velY[r] = sumY[r] / mass[r];
+                    sumX[r] = sumY[r] = 0;
+                }
+                double m = particles.get( i ).getMass();
+                sumX[r] += m * gravityX[i];
+                sumY[r] += m * gravityY[i];
+            }
+        }
+        int particlesAsleep = sleepingParticles, islandsAsleep = sleepingIslands;
+        for( int i = 0; i < size; i++ ) {
+            int r = island[i] < 0 ? sets.find( i ) : -1;
+            if( r >= 0 && count[r] > 0 ) {
+                island[i] = r;
+                refX[i] = gravityX[i] - sumX[r] / mass[r];
+                refY[i] = gravityY[i] - sumY[r] / mass[r];
+                //the shared velocity keeps the momentum of the island and drops its internal motion
+                Particle p = particles.get( i ), root = particles.get( r );
+                offsetX[i] = p.getXPosition() - root.getXPosition();
+                offsetY[i] = p.getYPosition() - root.getYPosition();
+                material[i] = p.getMaterialId();
+                p.setXVelocity( velX[r] );
+                p.setYVelocity( velY[r] );
+                particlesAsleep++;
+                if( r == i ) {
+                    islandsAsleep++;
+                }
+            }
+        }
+        sleepingParticles = particlesAsleep;
+        sleepingIslands = islandsAsleep;
+    }
+
+
+    //accessor methods
+    public int getSleepingParticles() {
+        return sleepingParticles;
+    }
+
+    public int getSleepingIslands() {
+        return sleepingIslands;
+    }
+}
@@ -0,0 +1,271 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for binning particles into a hashed uniform grid to find nearby pairs
+ * Created: 10-19-2026
+ * Status: utility class, finished
+ * Dependencies: Material, Particle, ParticleStore
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+public final class SpatialGrid {
+
+    //outlier particles larger than this multiple of the mean radius are paired by brute force instead of growing the cells
+    private static final double OVERSIZED_RATIO = 4;
+    //bucket markers for particles that are not binned
+    private static final int EXCLUDED = -1, OVERSIZED = -2;
+
+
+    //functional interface for receiving candidate pairs
+    public interface PairAction {
+        void accept( int i, int j );
+    }
+
+
+    //binned state of the last build
+    private int[] order;//particle indices sorted by bucket
+    private int[] start;//offset into order of the first particle of each bucket
+    private int[] bucket;//bucket of each particle or one of the markers
+    private int[] cellX, cellY;//cell coordinates of each particle
+    private int[] oversized;//indices of the oversized particles
+    private double[] xPosition, yPosition, radius;//loaded columns, excluded particles have a negative radius
+    private int oversizedCount;
+    private int size;
+    private int mask;
+    private double cellSize;
+
+
+    //constructor
+    public SpatialGrid() {
+        order = bucket = cellX = cellY = oversized = new int[0];
+        xPosition = yPosition = radius = new double[0];
+        start = new int[1];
+        oversizedCount = size = mask = 0;
+        cellSize = 1;
+    }
+
+
+    //bins the particles with cells wide enough for any contact between them plus a margin
+    public void build( List<Particle> particles, double margin, int excludeFlags ) {
+        buildScaled( particles, 1, margin, excludeFlags );
+    }
+
+    //bins the particles with cells wide enough for a multiple of the contact distance between them plus a margin
+    public void buildScaled( List<Particle> particles, double scale, double margin, int excludeFlags ) {
+        int size = particles.size();
+        load( size );
+        for( int i = 0; i < size; i++ ) {
+            Particle p = particles.get( i );
+            xPosition[i] = p.getXPosition();
+            yPosition[i] = p.getYPosition();
+            radius[i] = ( p.getFlags() & excludeFlags ) == 0 ? p.getRadius() * scale : -1;
+        }
+        build( margin );
+    }
+
+    //bins the particle states of a store, used for snapshots analyzed off the main thread
+    public void build( ParticleStore store, double margin, int excludeFlags ) {
+        int size = store.size();
+        load( size );
+        for( int i = 0; i < size; i++ ) {
+            Material m = Material.get( store.getMaterialId( i ) );
+            xPosition[i] = store.getXPosition( i );
+            yPosition[i] = store.getYPosition( i );
+            radius[i] = ( m.getFlags() & excludeFlags ) == 0 ? m.getRadius() : -1;
+        }
+        build( margin );
+    }
+
+    //bins the particles with a given cell size, particles with a radius above maxRadius are paired by brute force
+    public void build( List<Particle> particles, double cellSize, double maxRadius, int excludeFlags ) {
+        int size = particles.size();
+        load( size );
+        for( int i = 0; i < size; i++ ) {
+            Particle p = particles.get( i );
+            xPosition[i] = p.getXPosition();
+            yPosition[i] = p.getYPosition();
+            radius[i] = ( p.getFlags() & excludeFlags ) == 0 ? p.getRadius() : -1;
+        }
+        bin( cellSize, maxRadius );
+    }
+
+    //passes every pair of binned particles in neighboring cells, and every pair with an oversized particle, exactly once
+    public void forEachPair( PairAction action ) {
+        forEachPair( 0, size, action );
+    }
+
+    //passes the pairs whose lower binned or oversized particle is in a range, so ranges can be run in parallel
+    public void forEachPair( int from, int to, PairAction action ) {
+        int[] near = new int[9];
+        for( int i = from; i < to; i++ ) {
+            if( bucket[i] < 0 ) {
+                continue;
+            }
+            int n = neighborBuckets( cellX[i], cellY[i], near );
+            for( int k = 0; k < n; k++ ) {
+                int b = near[k];
+                for( int s = start[b], e = start[ b + 1 ]; s < e; s++ ) {
+                    int j = order[s];
+                    if( j > i ) {
+                        action.accept( i, j );
+                    }
+                }
+            }
+        }
+        for( int k = 0; k < oversizedCount; k++ ) {
+            int o = oversized[k];
+            if( o < from || o >= to ) {
+                continue;
+            }
+            for( int j = 0; j < size; j++ ) {
+                int b = bucket[j];
+                if( b >= 0 || ( b == OVERSIZED && j > o ) ) {
+                    action.accept( o, j );
+                }
+            }
+        }
+    }
+
+    //passes every binned particle in the cells around a point and every oversized particle
+    public void forEachNear( double x, double y, IntConsumer action ) {
+        int[] near = new int[9];
+        int n = neighborBuckets( (int)Math.floor( x / cellSize ), (int)Math.floor( y / cellSize ), near );
+        for( int k = 0; k < n; k++ ) {
+            int b = near[k];
+            for( int s = start[b], e = start[ b + 1 ]; s < e; s++ ) {
+                action.accept( order[s] );
+            }
+        }
+        for( int k = 0; k < oversizedCount; k++ ) {
+            action.accept( oversized[k] );
+        }
+    }
+
+
+    //accessor methods
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getOversizedCount() {
+        return oversizedCount;
+    }
+
+
+    //private utility methods
+    //grows the loaded columns to hold a number of particles
+    private void load( int size ) {
+        this.size = size;
+        if( bucket.length < size ) {
+            int len = Math.max( size, bucket.length * 2 );
+            order = new int[len];
+            bucket = new int[len];
+            cellX = new int[len];
+            cellY = new int[len];
+            oversized = new int[len];
+            xPosition = new double[len];
+            yPosition = new double[len];
+            radius = new double[len];
+        }
+    }
+
+    //bins the loaded particles with cells sized from the largest radius that is not an outlier
+    private void build( double margin ) {
+        double total = 0;
+        int count = 0;
+        for( int i = 0; i < size; i++ ) {
+            if( radius[i] >= 0 ) {
+                total += radius[i];
+                count++;
+            }
+        }
+        double limit = count == 0 ? 0 : total / count * OVERSIZED_RATIO;
+        double maxRadius = 0;
+        for( int i = 0; i < size; i++ ) {
+            double r = radius[i];
+            if( r <= limit && r > maxRadius ) {
+                maxRadius = r;
+            }
+        }
+        double cell = maxRadius * 2 + margin;
+        bin( cell > 0 ? cell : 1, limit );
+    }
+
+    //bins the loaded particles with a given cell size, excluded particles have a negative radius
+    private void bin( double cellSize, double maxRadius ) {
+        this.cellSize = cellSize;
+        double invCell = 1 / cellSize;
+        int buckets = Integer.highestOneBit( Math.max( size, 1 ) ) << 2;
+        mask = buckets - 1;
+        if( start.length < buckets + 1 ) {
+            start = new int[ buckets + 1 ];
+        } else {
+            Arrays.fill( start, 0, buckets + 1, 0 );
+        }
+        //counts particles per bucket
+        oversizedCount = 0;
+        for( int i = 0; i < size; i++ ) {
+            double r = radius[i];
+            if( r < 0 ) {
+                bucket[i] = EXCLUDED;
+            } else if( r > maxRadius ) {
+                bucket[i] = OVERSIZED;
+                oversized[ oversizedCount++ ] = i;
+            } else {
+                int cx = (int)Math.floor( xPosition[i] * invCell );
+                int cy = (int)Math.floor( yPosition[i] * invCell );
+                int b = hash( cx, cy );
+                cellX[i] = cx;
+                cellY[i] = cy;
+                bucket[i] = b;
+                start[ b + 1 ]++;
+            }
+        }
+        //counting sort of the particle indices by bucket
+        for( int b = 0; b < buckets; b++ ) {
+            start[ b + 1 ] += start[b];
+        }
+        for( int i = 0; i < size; i++ ) {
+            int b = bucket[i];
+            if( b >= 0 ) {
+                order[ start[b]++ ] = i;
+            }
+        }
+        for( int b = buckets; b > 0; b-- ) {
+            start[b] = start[ b - 1 ];
+        }
+        start[0] = 0;
+    }
+
+    //collects the distinct buckets of the cells around a cell and returns how many there are
+    private int neighborBuckets( int cx, int cy, int[] near ) {
+        int n = 0;
+        for( int dx = -1; dx <= 1; dx++ ) {
+            for( int dy = -1; dy <= 1; dy++ ) {
+                int b = hash( cx + dx, cy + dy );
+                boolean seen = false;
+                for( int k = 0; k < n; k++ ) {
+                    seen |= near[k] == b;
+                }
+                if( !seen ) {
+                    near[ n++ ] = b;
+                }
+            }
+        }
+        return n;
+    }
+
+    //hashes cell coordinates to a bucket
+    private int hash( int cx, int cy ) {
+        int h = cx * 0x9E3779B1 ^ cy * 0x85EBCA77;
+        return ( h ^ h >>> 15 ) & mask;
+    }
+}
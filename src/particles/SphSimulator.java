@@ -0,0 +1,248 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: simulation engine which models touching particles as a smoothed particle hydrodynamics fluid under far field gravity
+ * Created: 10-19-2026
+ * Status: engine class, finished
+ * Dependencies: Environment, FarField, Material, NeighborList, Particle, Simulator
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+public final class SphSimulator extends Simulator {
+
+    //flags of particles which only feel gravity
+    private static final int NO_CONTACT = Particle.COLLISIONLESS | Particle.TRACER;
+    //smoothing length as a multiple of the contact distance, so a particle sees about 20 neighbors when packed
+    private static final double SMOOTHING = 1.3;
+    //kernel support as a multiple of the contact distance
+    private static final double SUPPORT = SMOOTHING * 2;
+    //normalization of the 2d cubic spline kernel, divided by the smoothing length squared
+    private static final double SIGMA = 10 / ( 7 * Math.PI );
+    //monaghan artificial viscosity coefficients and the softening of its singularity
+    private static final double ALPHA = 1, BETA = 2, ETA_SQ = 0.01;
+    //summed kernel of a hexagonal packing of touching unit radius particles, scales rest number densities to the radius
+    private static final double PACKED_SUM = packedSum();
+
+
+    //pairs within the kernel support, reused across ticks until particles move past the skin
+    private final NeighborList neighbors;
+    //far field method for the gravity between all particles, the one of the environment when null
+    private volatile FarField farField;
+    //per material rest number density and sound speed, computed on first use since materials never change
+    private double[] restNumber, soundSpeed;
+    //columns loaded at the start of each tick
+    private double[] x, y, vx, vy, mass, h, number, pressure, sound;
+    private boolean[] fluid;
+    //statistics of the last tick
+    private volatile double maxCompression, courantStep;
+
+
+    //package private constructor - use Simulator.SPH
+    SphSimulator() {
+        neighbors = new NeighborList();
+        farField = null;
+        restNumber = new double[Material.DENSE_MATERIALS];
+        soundSpeed = new double[Material.DENSE_MATERIALS];
+        Arrays.fill( restNumber, Double.NaN );
+        x = y = vx = vy = mass = h = number = pressure = sound = new double[0];
+        fluid = new boolean[0];
+        maxCompression = courantStep = 0;
+    }
+
+
+    //number density summation, equation of state and pressure plus viscosity forces, then far field gravity and a euler update
+    //densities are summed as particle counts times the own mass, so layers of different materials do not push on each other
+    @Override
+    protected void simulate( double timeStep ) {
+        List<Particle> particles = environment.particles;
+        int size = particles.size();
+        double maxRadius = load( particles );
+        //the skin lets the lists last several ticks, the rebuild check keeps them exact
+        double skin = environment.getSkinRatio() * maxRadius;
+        neighbors.update( particles, SUPPORT, skin, NO_CONTACT );
+        //number density from the kernel sum including each particle itself
+        for( int i = 0; i < size; i++ ) {
+            number[i] = fluid[i] ? SIGMA / ( h[i] * h[i] ) : 0;
+        }
+        neighbors.forEachPair( ( i, j ) -> {
+            double hij = ( h[i] + h[j] ) / 2;
+            double xDiff = x[i] - x[j];
+            double yDiff = y[i] - y[j];
+            double w = kernel( Math.sqrt( xDiff * xDiff + yDiff * yDiff ) / hij ) / ( hij * hij );
+            number[i] += w;
+            number[j] += w;
+        } );
+        //stiff equation of state without tension, gravity holds bodies together
+        double compression = 0;
+        double fastest = 0;
+        for( int i = 0; i < size; i++ ) {
+            if( fluid[i] ) {
+                Particle p = particles.get( i );
+                int m = p.getMaterialId();
+                double rest = restNumber[m];
+                double c = soundSpeed[m];
+                sound[i] = c;
+                pressure[i] = Math.max( c * c * mass[i] * ( number[i] - rest ), 0 );
+                compression = Math.max( compression, number[i] / rest );
+                fastest = Math.max( fastest, ( c + Math.hypot( vx[i], vy[i] ) ) / h[i] );
+            }
+        }
+        maxCompression = compression;
+        courantStep = fastest > 0 ? 0.3 / fastest : 0;
+        //symmetric pressure gradient and artificial viscosity between approaching particles, as equal and opposite forces
+        neighbors.forEachPair( ( i, j ) -> {
+            double hij = ( h[i] + h[j] ) / 2;
+            double xDiff = x[i] - x[j];
+            double yDiff = y[i] - y[j];
+            double distSq = xDiff * xDiff + yDiff * yDiff;
+            double dist = Math.sqrt( distSq );
+            double q = dist / hij;
+            if( q >= 2 || dist == 0 ) {
+                return;
+            }
+            double grad = kernelSlope( q ) / ( hij * hij * hij * dist );
+            double term = pressure[i] / ( number[i] * number[i] ) + pressure[j] / ( number[j] * number[j] );
+            double approach = ( vx[i] - vx[j] ) * xDiff + ( vy[i] - vy[j] ) * yDiff;
+            if( approach < 0 ) {
+                double mu = hij * approach / ( distSq + ETA_SQ * hij * hij );
+                double viscosity = ( -ALPHA * ( sound[i] + sound[j] ) / 2 * mu + BETA * mu * mu ) 
+                        * 2 / ( mass[i] * number[i] + mass[j] * number[j] );
+                term += viscosity * mass[i] * mass[j];
+            }
+            double fx = term * grad * xDiff;
+            double fy = term * grad * yDiff;
+            particles.get( i ).accelerate( -fx / mass[i], -fy / mass[i] );
+            particles.get( j ).accelerate( fx / mass[j], fy / mass[j] );
+        } );
+        farField().gravitate( particles, environment.sources );
+        for( int i = 0; i < size; i++ ) {
+            particles.get( i ).update( timeStep );
+        }
+    }
+
+    @Override
+    protected void acceptEnv() {
+        neighbors.invalidate();
+    }
+
+    @Override
+    protected void disposeEnv() {
+        neighbors.invalidate();
+    }
+
+    @Override
+    public String getStatus() {
+        String status = String.format( "SPH Neighbors: %.1f --- Max Compression: %.3f --- Courant Step: %.3g",
+                neighbors.getAverageLength(), maxCompression, courantStep );
+        String far = environment == null ? "" : farField().getStatus();
+        return far.isEmpty() ? status : status + " --- " + far;
+    }
+
+
+    //mutator methods
+    //changes the gravity method, taking effect on the next tick, null follows the environment
+    public void setFarField( FarField farField ) {
+        this.farField = farField;
+    }
+
+
+    //accessor methods
+    public FarField getFarField() {
+        return farField;
+    }
+
+
+    //private utility methods
+    private FarField farField() {
+        FarField far = farField;
+        return far != null ? far : environment.getFarField();
+    }
+
+    //loads the particle columns and material constants, returns the largest fluid radius
+    private double load( List<Particle> particles ) {
+        int size = particles.size();
+        if( x.length < size ) {
+            int len = Math.max( size, x.length * 2 );
+            x = new double[len];
+            y = new double[len];
+            vx = new double[len];
+            vy = new double[len];
+            mass = new double[len];
+            h = new double[len];
+            number = new double[len];
+            pressure = new double[len];
+            sound = new double[len];
+            fluid = new boolean[len];
+        }
+        double maxRadius = 0;
+        for( int i = 0; i < size; i++ ) {
+            Particle p = particles.get( i );
+            Material m = p.getMaterial();
+            x[i] = p.getXPosition();
+            y[i] = p.getYPosition();
+            vx[i] = p.getXVelocity();
+            vy[i] = p.getYVelocity();
+            mass[i] = m.getMass();
+            h[i] = SMOOTHING * 2 * m.getRadius();
+            fluid[i] = ( m.getFlags() & NO_CONTACT ) == 0;
+            pressure[i] = 0;
+            if( fluid[i] ) {
+                maxRadius = Math.max( maxRadius, m.getRadius() );
+                if( m.getId() >= restNumber.length ) {
+                    //ids past the dense table grow the per material arrays
+                    int len = Math.max( m.getId() + 1, restNumber.length * 2 );
+                    int old = restNumber.length;
+                    restNumber = Arrays.copyOf( restNumber, len );
+                    soundSpeed = Arrays.copyOf( soundSpeed, len );
+                    Arrays.fill( restNumber, old, len, Double.NaN );
+                }
+                if( Double.isNaN( restNumber[ m.getId() ] ) ) {
+                    double r = m.getRadius();
+                    //a packed lattice of the material is at rest, and sound crosses it at the speed of its contact springs
+                    restNumber[ m.getId() ] = PACKED_SUM / ( r * r );
+                    soundSpeed[ m.getId() ] = 2 * r * Math.sqrt( 1 / ( 2 * m.getInvSpring() * m.getMass() ) );
+                }
+            }
+        }
+        return maxRadius;
+    }
+
+    //cubic spline kernel of the distance in smoothing lengths, without the 1 / h^2 factor
+    private static double kernel( double q ) {
+        if( q < 1 ) {
+            return SIGMA * ( 1 - 1.5 * q * q + 0.75 * q * q * q );
+        }
+        if( q < 2 ) {
+            double t = 2 - q;
+            return SIGMA * 0.25 * t * t * t;
+        }
+        return 0;
+    }
+
+    //derivative of the kernel by q, without the 1 / h^3 factor
+    private static double kernelSlope( double q ) {
+        if( q < 1 ) {
+            return SIGMA * ( -3 * q + 2.25 * q * q );
+        }
+        double t = 2 - q;
+        return SIGMA * -0.75 * t * t;
+    }
+
+    //sums the kernel over a hexagonal lattice of unit radius particles, including the center one
+    private static double packedSum() {
+        double hij = SMOOTHING * 2;
+        double sum = 0;
+        int reach = (int)Math.ceil( SUPPORT );
+        for( int row = -reach * 2; row <= reach * 2; row++ ) {
+            for( int col = -reach * 2; col <= reach * 2; col++ ) {
+                double px = 2 * col + ( row & 1 );
+                double py = row * Math.sqrt( 3 );
+                sum += kernel( Math.hypot( px, py ) / hij );
+            }
+        }
+        return sum / ( hij * hij );
+    }
+}
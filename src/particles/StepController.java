@@ -0,0 +1,193 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for choosing the largest time step that keeps energy and momentum drift within a tolerance
+ * Created: 10-19-2026
+ * Status: utility class, finished
+ * Dependencies: Environment, Particle, Simulator
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.List;
+import java.util.logging.Logger;
+
+public final class StepController {
+
+    //ticks the drift is measured over before the step is changed
+    private static final int WINDOW = 16;
+    //bounds of a single change of the time step
+    private static final double MIN_FACTOR = 0.5, MAX_FACTOR = 1.25;
+    //drift below this share of the tolerance lets the step grow
+    private static final double GROW_SHARE = 0.25;
+    //farthest the step may move from the one it was enabled with
+    private static final double RANGE = 1024;
+    private static final Logger LOGGER = Logger.getLogger( StepController.class.getName() );
+
+
+    //environment whose time step is controlled
+    private final Environment environment;
+    //settings, written by the event thread
+    private volatile double tolerance;//largest relative drift per window, disabled if not positive
+    private boolean enabled;
+    //bounds of the time step around the step it was enabled with
+    private double minStep, maxStep;
+    //state the drift is measured from, taken again after every change
+    private long structure;
+    private Simulator engine;
+    private double step;
+    private int windowTicks;
+    private boolean primed, referenced;
+    private double energy0, momentumX0, momentumY0, angular0;
+    private double energyScale, momentumScale, angularScale;
+    //energy and angular momentum lost to drag since the reference, drag is physical so it is not drift
+    private double dissipated, twisted;
+    //last measured drifts, read by the event thread
+    private volatile double energyDrift, momentumDrift, angularDrift;
+
+
+    //constructor
+    public StepController( Environment env ) {
+        environment = env;
+        tolerance = 0;
+        enabled = false;
+        structure = -1;
+        primed = referenced = false;
+        energyDrift = momentumDrift = angularDrift = 0;
+    }
+
+
+    //measures the conserved quantities after a tick and adjusts the step at the end of every window
+    public void recordTick( List<Particle> particles ) {
+        boolean on = tolerance > 0;
+        if( on != enabled ) {
+            enabled = on;
+            minStep = environment.getTimeStep() / RANGE;
+            maxStep = environment.getTimeStep() * RANGE;
+            primed = false;
+        }
+        if( !enabled ) {
+            return;
+        }
+        //the pair loop sums potentials every tick, so the first tick after a reset only clears them
+        if( !primed || structure != environment.getStructure() || step != environment.getTimeStep()
+                || engine != environment.getSimulator() ) {
+            for( Particle p : particles ) {
+                p.clearDiagnostics();
+            }
+            structure = environment.getStructure();
+            engine = environment.getSimulator();
+            step = environment.getTimeStep();
+            primed = true;
+            referenced = false;
+            dissipated = twisted = 0;
+            return;
+        }
+        //sums the energies and momenta of the gravity sources, tracers carry no mass of their own
+        double kinetic = 0, potential = 0, power = 0, torque = 0, momentumX = 0, momentumY = 0, angular = 0;
+        double momentumSum = 0, angularSum = 0;
+        for( Particle p : particles ) {
+            if( ( p.getFlags() & Particle.TRACER ) != 0 ) {
+                p.clearDiagnostics();
+                continue;
+            }
+            double m = p.getMass();
+            double vx = p.getXVelocity(), vy = p.getYVelocity();
+            double l = p.getXPosition() * vy - p.getYPosition() * vx;
+            kinetic += m * ( vx * vx + vy * vy ) / 2;
+            potential += m * p.getPotential();
+            power += m * p.getDissipation();
+            torque += m * p.getTorque();
+            momentumX += m * vx;
+            momentumY += m * vy;
+            angular += m * l;
+            momentumSum += m * Math.sqrt( vx * vx + vy * vy );
+            angularSum += m * Math.abs( l );
+            p.clearDiagnostics();
+        }
+        //the drag of the tick was summed from the velocities at its start
+        dissipated += power * step;
+        twisted += torque * step;
+        double energy = kinetic + potential + dissipated;
+        double total = angular - twisted;
+        if( !referenced ) {
+            energy0 = energy;
+            momentumX0 = momentumX;
+            momentumY0 = momentumY;
+            angular0 = total;
+            energyScale = kinetic + Math.abs( potential );
+            momentumScale = momentumSum;
+            angularScale = angularSum;
+            windowTicks = 0;
+            referenced = true;
+            return;
+        }
+        energyDrift = relative( energy - energy0, energyScale );
+        momentumDrift = relative( Math.hypot( momentumX - momentumX0, momentumY - momentumY0 ), momentumScale );
+        angularDrift = relative( total - angular0, angularScale );
+        if( ++windowTicks < WINDOW ) {
+            return;
+        }
+        //shrinks the step toward the tolerance assuming the drift grows with its square, grows slowly when well within it
+        double drift = Math.max( energyDrift, Math.max( momentumDrift, angularDrift ) );
+        double tol = tolerance;
+        double factor = 1;
+        if( drift > tol ) {
+            factor = Math.max( 0.9 * Math.sqrt( tol / drift ), MIN_FACTOR );
+        } else if( drift < tol * GROW_SHARE ) {
+            factor = MAX_FACTOR;
+        }
+        double next = Math.min( Math.max( step * factor, minStep ), maxStep );
+        if( next != step ) {
+            LOGGER.info( String.format( "Time step %.6g -> %.6g at tick %d (energy drift %.3g, momentum drift %.3g, angular drift %.3g)",
+                    step, next, environment.getTicks(), energyDrift, momentumDrift, angularDrift ) );
+            environment.adjustTimeStep( next );
+        }
+        //measures the next window from the current state
+        dissipated = twisted = 0;
+        energy0 = kinetic + potential;
+        momentumX0 = momentumX;
+        momentumY0 = momentumY;
+        angular0 = angular;
+        windowTicks = 0;
+    }
+
+
+    //mutator methods
+    public void setTolerance( double tolerance ) {
+        this.tolerance = tolerance;
+    }
+
+
+    //accessor methods
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    //if the engines sum the potential, drag power and torque of their pairs, read by each engine once per tick
+    public boolean isMeasuring() {
+        return tolerance > 0;
+    }
+
+    public double getEnergyDrift() {
+        return energyDrift;
+    }
+
+    public double getMomentumDrift() {
+        return momentumDrift;
+    }
+
+    public double getAngularDrift() {
+        return angularDrift;
+    }
+
+    public String getStatus() {
+        return String.format( "Auto Time Step: %.4g --- Energy Drift: %.2e --- Momentum Drift: %.2e --- Angular Drift: %.2e",
+                environment.getTimeStep(), energyDrift, momentumDrift, angularDrift );
+    }
+
+
+    //private utility methods
+    private static double relative( double difference, double scale ) {
+        return scale > 0 ? Math.abs( difference ) / scale : 0;
+    }
+}
@@ -0,0 +1,84 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: far field gravity method which treats particles much lighter than the heaviest one as massless test particles
+ * Created: 10-19-2026
+ * Status: utility class, finished
+ * Dependencies: FarField, Particle
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+public final class TestParticleFarField implements FarField {
+
+    //share of the heaviest source mass below which a particle only feels the heavy bodies
+    private final double ratio;
+    //list indices of the heavy bodies of the current tick
+    private int[] heavy;
+    private volatile int heavyCount, lightCount;
+
+
+    //constructor
+    public TestParticleFarField( double ratio ) {
+        if( !( ratio > 0 && ratio <= 1 ) ) {
+            throw new IllegalArgumentException( "Mass ratio must be in (0, 1]" );
+        }
+        this.ratio = ratio;
+        heavy = new int[0];
+        heavyCount = lightCount = 0;
+    }
+
+
+    //heavy bodies interact with each other and with every light particle, light particles never with each other
+    @Override
+    public void gravitate( List<Particle> particles, int sources ) {
+        int size = particles.size();
+        double maxMass = 0;
+        for( int i = 0; i < sources; i++ ) {
+            maxMass = Math.max( maxMass, particles.get( i ).getMass() );
+        }
+        double threshold = maxMass * ratio;
+        int count = 0;
+        for( int i = 0; i < sources; i++ ) {
+            if( particles.get( i ).getMass() >= threshold ) {
+                if( count == heavy.length ) {
+                    heavy = Arrays.copyOf( heavy, Math.max( 4, count * 2 ) );
+                }
+                heavy[ count++ ] = i;
+            }
+        }
+        //pairs of heavy bodies in list order, then each light particle against the heavy bodies, both o( heavy * n )
+        for( int h = 0; h < count; h++ ) {
+            Particle obj = particles.get( heavy[h] );
+            for( int k = h + 1; k < count; k++ ) {
+                obj.gravitate( particles.get( heavy[k] ) );
+            }
+        }
+        int next = 0;
+        for( int i = 0; i < size; i++ ) {
+            if( next < count && heavy[next] == i ) {
+                next++;
+                continue;
+            }
+            Particle light = particles.get( i );
+            for( int h = 0; h < count; h++ ) {
+                particles.get( heavy[h] ).gravitate( light );
+            }
+        }
+        heavyCount = count;
+        lightCount = size - count;
+    }
+
+    @Override
+    public String getStatus() {
+        return String.format( "Test Particles: %d light particles feel %d heavy bodies", lightCount, heavyCount );
+    }
+
+
+    //accessor methods
+    public double getRatio() {
+        return ratio;
+    }
+}
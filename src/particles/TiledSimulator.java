@@ -0,0 +1,137 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: simulation engine which walks the exact pair triangle in cache sized tiles, in parallel along its anti-diagonals
+ * Created: 10-19-2026
+ * Status: engine class, finished
+ * Dependencies: Environment, Particle, ParticleStore, Simulator, StepController
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+public final class TiledSimulator extends Simulator {
+
+    //particles per tile side, a column block of particles is revisited by every row of a tile while it is still cached
+    private static final int TILE = 256;
+    //tiles an anti-diagonal needs before it is split across threads
+    private static final int PARALLEL_TILES = 2;
+
+
+    //functional interface for interacting the pairs of one tile
+    private interface Tile {
+        void interact( int row, int col );
+    }
+
+    //particles of the tick in an array, so the tiles index them without going through the list
+    private Particle[] array;
+    //statistics
+    private volatile int blocks, diagonals;
+
+
+    //package private constructor - use Simulator.TILED
+    TiledSimulator() {
+        array = new Particle[0];
+        blocks = diagonals = 0;
+    }
+
+
+    /*tile ( row, col ) holds the pairs i < j with i in row block and j in col block. a particle of block b sees its pairs
+    in the same order as the simple engine when the tiles run by increasing row + col: tiles ( r, b ) by increasing r, then
+    ( b, b ), then ( b, c ) by increasing c. tiles with the same row + col share no block, so each anti-diagonal runs in
+    parallel without locks and the sums stay bit for bit those of the simple engine*/
+    @Override
+    protected void simulate( double timeStep ) {
+        ParticleStore store = environment.getStore();
+        if( store != null ) {
+            //the store kernel skips the pairs of tracers, so every particle starts a row
+            int size = store.size();
+            walk( size, size, ( row, col ) -> tile( store, size, row, col ), i -> store.update( i, timeStep ) );
+            return;
+        }
+        List<Particle> list = environment.particles;
+        int size = list.size();
+        if( array.length < size ) {
+            array = new Particle[ Math.max( size, array.length * 2 ) ];
+        }
+        Particle[] particles = list.toArray( array );
+        int sources = environment.sources;
+        boolean diagnose = environment.getStepController().isMeasuring();
+        walk( size, sources, ( row, col ) -> tile( particles, size, sources, row, col, diagnose ), i -> particles[i].update( timeStep ) );
+    }
+
+    @Override
+    protected void disposeEnv() {
+        array = new Particle[0];
+    }
+
+    @Override
+    protected boolean simulatesStores() {
+        return true;
+    }
+
+    @Override
+    public String getStatus() {
+        return String.format( "Tiles: %d blocks of %d --- %d anti-diagonals per tick", blocks, TILE, diagonals );
+    }
+
+
+    //private utility methods
+    //runs the tiles by anti-diagonal, then moves the particles
+    private void walk( int size, int sources, Tile tile, IntConsumer update ) {
+        int colBlocks = ( size + TILE - 1 ) / TILE;
+        int rowBlocks = ( sources + TILE - 1 ) / TILE;
+        int lastDiagonal = rowBlocks == 0 ? -1 : rowBlocks + colBlocks - 2;
+        for( int d = 0; d <= lastDiagonal; d++ ) {
+            int diagonal = d;
+            int first = Math.max( 0, diagonal - colBlocks + 1 );
+            int last = Math.min( diagonal / 2, rowBlocks - 1 );
+            if( last - first + 1 < PARALLEL_TILES ) {
+                for( int row = first; row <= last; row++ ) {
+                    tile.interact( row, diagonal - row );
+                }
+            } else {
+                IntStream.rangeClosed( first, last ).parallel().forEach( row -> tile.interact( row, diagonal - row ) );
+            }
+        }
+        //no pair touches a particle after its last tile, so moving them all afterwards matches the simple engine
+        if( colBlocks < PARALLEL_TILES ) {
+            for( int i = 0; i < size; i++ ) {
+                update.accept( i );
+            }
+        } else {
+            IntStream.range( 0, colBlocks ).parallel().forEach( b -> {
+                for( int i = b * TILE, end = Math.min( i + TILE, size ); i < end; i++ ) {
+                    update.accept( i );
+                }
+            } );
+        }
+        blocks = colBlocks;
+        diagonals = lastDiagonal + 1;
+    }
+
+    //interacts the pairs of one tile, rows in order and each row over the column block in order
+    private static void tile( Particle[] particles, int size, int sources, int row, int col, boolean diagnose ) {
+        int rowEnd = Math.min( ( row + 1 ) * TILE, sources );
+        int colStart = col * TILE;
+        int colEnd = Math.min( colStart + TILE, size );
+        for( int i = row * TILE; i < rowEnd; i++ ) {
+            Particle obj = particles[i];
+            for( int j = Math.max( i + 1, colStart ); j < colEnd; j++ ) {
+                obj.interact( particles[j], diagnose );
+            }
+        }
+    }
+
+    //interacts the pairs of one tile of a store, in the same order as the particle tiles
+    private static void tile( ParticleStore store, int size, int row, int col ) {
+        int rowEnd = Math.min( ( row + 1 ) * TILE, size );
+        int colStart = col * TILE;
+        int colEnd = Math.min( colStart + TILE, size );
+        for( int i = row * TILE; i < rowEnd; i++ ) {
+            Particle.interact( store, i, Math.max( i + 1, colStart ), colEnd );
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package particles;
+
+/* Author: Kent F.
+ * Description: class for a lock free disjoint set forest that many threads can union at once
+ * Created: 10-19-2026
+ * Status: utility class, finished
+ * Dependencies: None
+ * Licensed under GNU v3, see src/particles/Particles.java for more details
+ */
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public final class UnionFind {
+
+    //parent of each element, roots are their own parent and always have the lowest index of their set
+    private AtomicIntegerArray parent;
+    private int size;
+
+
+    //constructor
+    public UnionFind() {
+        parent = new AtomicIntegerArray( 0 );
+        size = 0;
+    }
+
+
+    //makes every element below size its own set
+    public void reset( int size ) {
+        if( parent.length() < size ) {
+            parent = new AtomicIntegerArray( Math.max( size, parent.length() * 2 ) );
+        }
+        for( int i = 0; i < size; i++ ) {
+            parent.lazySet( i, i );
+        }
+        this.size = size;
+    }
+
+    //returns the root of an element, halving the path on the way
+    public int find( int x ) {
+        while( true ) {
+            int p = parent.get( x );
+            if( p == x ) {
+                return x;
+            }
+            int gp = parent.get( p );
+            if( gp != p ) {
+                parent.compareAndSet( x, p, gp );
+            }
+            x = gp;
+        }
+    }
+
+    //joins the sets of two elements, the higher root is linked below the lower one so concurrent links cannot form cycles
+    public void union( int a, int b ) {
+        while( true ) {
+            a = find( a );
+            b = find( b );
+            if( a == b ) {
+                return;
+            }
+            if( a < b ) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            if( parent.compareAndSet( a, a, b ) ) {
+                return;
+            }
+        }
+    }
+
+    //if two elements are in the same set
+    public boolean connected( int a, int b ) {
+        while( true ) {
+            a = find( a );
+            b = find( b );
+            if( a == b ) {
+                return true;
+            }
+            //a root that is still its own parent was a root for the whole check
+            if( parent.get( a ) == a ) {
+                return false;
+            }
+        }
+    }
+
+
+    //accessor methods
+    public int size() {
+        return size;
+    }
+}